@@ -49,6 +49,7 @@ public class Main {
                 repository = new ItemRepositoryImpl();
             } else {
                 view.exibirSucesso("Conectado ao SQLite com sucesso!");
+                DatabaseConfig.verificarPragmas();
                 repository = new ItemRepositorySQLite();
             }
         } else {
@@ -1,11 +1,20 @@
 package com.biblioteca;
 
 import com.biblioteca.config.DatabaseConfig;
+import com.biblioteca.config.ConfigManager;
 import com.biblioteca.controller.BibliotecaController;
+import com.biblioteca.repository.CachingItemRepository;
+import com.biblioteca.repository.EmprestimoRepository;
+import com.biblioteca.repository.EmprestimoRepositoryImpl;
+import com.biblioteca.repository.EmprestimoRepositorySQLite;
 import com.biblioteca.repository.ItemRepository;
+import com.biblioteca.repository.ItemRepositoryJournal;
 import com.biblioteca.repository.ItemRepositorySQLite;
 import com.biblioteca.service.BibliotecaService;
 import com.biblioteca.web.BibliotecaServer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Classe Principal - Modo Web Server
@@ -18,22 +27,48 @@ public class MainWeb {
             System.out.println("  INICIANDO SERVIDOR WEB DA BIBLIOTECA");
             System.out.println("==============================================\n");
             
-            // Verificar conexao com banco
-            if (!DatabaseConfig.testarConexao()) {
-                System.err.println("ERRO: Nao foi possivel conectar ao banco de dados!");
-                System.err.println("Verifique se o arquivo biblioteca.db existe.");
-                return;
+            ItemRepository repository;
+            EmprestimoRepository emprestimoRepository;
+            Map<String, Supplier<Map<String, Object>>> estatisticas = new LinkedHashMap<>();
+            if ("journal".equalsIgnoreCase(ConfigManager.getInstance().get("repositorio.tipo", "sqlite"))) {
+                // Acervo em memoria, persistido no journal
+                ItemRepositoryJournal journal = new ItemRepositoryJournal();
+                Runtime.getRuntime().addShutdownHook(new Thread(journal::fechar));
+                System.out.println("[OK] Journal carregado: " + journal.getItensDoSnapshot() + " itens do snapshot, "
+                    + journal.getRegistrosReaplicados() + " registros reaplicados");
+                repository = journal;
+                estatisticas.put("journal", journal::estatisticas);
+                // Registros de emprestimo ficam so em memoria neste modo
+                emprestimoRepository = new EmprestimoRepositoryImpl();
+            } else {
+                // Verificar conexao com banco
+                if (!DatabaseConfig.testarConexao()) {
+                    System.err.println("ERRO: Nao foi possivel conectar ao banco de dados!");
+                    System.err.println("Verifique se o arquivo biblioteca.db existe.");
+                    return;
+                }
+                
+                System.out.println("[OK] Conectado ao SQLite");
+                DatabaseConfig.verificarPragmas();
+                
+                repository = new ItemRepositorySQLite();
+                estatisticas.put("pool", DatabaseConfig.getPool()::estatisticas);
+                estatisticas.put("escritor", DatabaseConfig.getEscritor()::estatisticas);
+                if (ConfigManager.getInstance().getBoolean("cache.itens.habilitado", true)) {
+                    CachingItemRepository cache = new CachingItemRepository(repository);
+                    estatisticas.put("cacheItens", cache::estatisticas);
+                    repository = cache;
+                }
+                emprestimoRepository = new EmprestimoRepositorySQLite();
             }
             
-            System.out.println("[OK] Conectado ao SQLite");
-            
             // Criar camada de servico e controller
-            ItemRepository repository = new ItemRepositorySQLite();
-            BibliotecaService service = new BibliotecaService(repository);
+            BibliotecaService service = new BibliotecaService(repository, emprestimoRepository);
             BibliotecaController controller = new BibliotecaController(service);
             
             // Iniciar servidor web
             BibliotecaServer server = new BibliotecaServer(controller, 8080);
+            estatisticas.forEach(server::registrarEstatisticas);
             server.iniciar();
             
             System.out.println("\nPressione CTRL+C para encerrar o servidor...");
@@ -0,0 +1,179 @@
+package com.biblioteca.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache LRU de PreparedStatements de uma conexao fisica, indexado pelo texto SQL
+ * Evita que o SQLite refaca parse e plano da mesma consulta a cada chamada.
+ *
+ * Os statements entregues sao proxies: close() apenas limpa parametros e batch
+ * pendente e devolve o statement ao cache. Nao e thread-safe; o pool garante
+ * que cada conexao fisica seja usada por uma thread de cada vez.
+ */
+class CacheStatements {
+
+    private final Connection fisica;
+    private final LongAdder acertos;
+    private final LongAdder falhas;
+    private final Map<String, Entrada> entradas;
+
+    /**
+     * @param fisica conexao dona dos statements
+     * @param capacidade numero maximo de statements mantidos
+     * @param acertos contador de acertos (compartilhado pelo pool)
+     * @param falhas contador de falhas (compartilhado pelo pool)
+     */
+    CacheStatements(Connection fisica, int capacidade, LongAdder acertos, LongAdder falhas) {
+        this.fisica = fisica;
+        this.acertos = acertos;
+        this.falhas = falhas;
+        this.entradas = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() > capacidade) {
+                    eldest.getValue().descartar();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retorna um statement ja compilado para o SQL, preparando-o se necessario
+     */
+    PreparedStatement preparar(String sql) throws SQLException {
+        Entrada entrada = entradas.get(sql);
+        if (entrada != null && !entrada.emUso) {
+            acertos.increment();
+            return entrada.emprestar();
+        }
+
+        falhas.increment();
+        PreparedStatement real = fisica.prepareStatement(sql);
+        if (entrada != null) {
+            // Mesmo SQL ja esta aberto nesta conexao: entrega um statement avulso
+            return real;
+        }
+
+        entrada = new Entrada(real);
+        entradas.put(sql, entrada);
+        return entrada.emprestar();
+    }
+
+    /**
+     * Fecha todos os statements mantidos pelo cache
+     */
+    void fecharTodos() {
+        for (Entrada entrada : new ArrayList<>(entradas.values())) {
+            entrada.descartar();
+        }
+        entradas.clear();
+    }
+
+    /**
+     * Statement compilado e seu estado de uso
+     */
+    private static class Entrada {
+        final PreparedStatement real;
+        boolean emUso;
+        boolean descartada;
+
+        Entrada(PreparedStatement real) {
+            this.real = real;
+        }
+
+        PreparedStatement emprestar() {
+            emUso = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                CacheStatements.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new StatementEmprestado(this)
+            );
+        }
+
+        void devolver() {
+            emUso = false;
+            if (descartada) {
+                fechar();
+                return;
+            }
+            try {
+                real.clearParameters();
+                real.clearBatch();
+            } catch (SQLException e) {
+                descartada = true;
+                fechar();
+            }
+        }
+
+        /**
+         * Remove do cache; se estiver em uso, fecha apenas quando for devolvido
+         */
+        void descartar() {
+            descartada = true;
+            if (!emUso) {
+                fechar();
+            }
+        }
+
+        private void fechar() {
+            try {
+                real.close();
+            } catch (SQLException e) {
+                // Statement ja invalido, nada a fazer
+            }
+        }
+    }
+
+    /**
+     * Intercepta close() para devolver o statement ao cache
+     */
+    private static class StatementEmprestado implements InvocationHandler {
+        private final Entrada entrada;
+        private boolean devolvido;
+
+        StatementEmprestado(Entrada entrada) {
+            this.entrada = entrada;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devolvido) {
+                        devolvido = true;
+                        entrada.devolver();
+                    }
+                    return null;
+                case "isClosed":
+                    return devolvido || entrada.real.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementEmCache[" + entrada.real + "]";
+                default:
+                    if (devolvido) {
+                        throw new SQLException("Statement ja foi devolvido ao cache");
+                    }
+            }
+            try {
+                return method.invoke(entrada.real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.biblioteca.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de conexoes JDBC limitado
+ * Reaproveita conexoes fisicas entre requisicoes para evitar abrir o arquivo
+ * do SQLite a cada operacao.
+ *
+ * As conexoes entregues sao proxies: chamar close() devolve a conexao ao pool
+ * em vez de fecha-la. Cada conexao fisica mantem um cache de PreparedStatements
+ * que sobrevive entre emprestimos.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final int tamanhoMaximo;
+    private final long timeoutAquisicaoMs;
+    private final boolean validarAoEmprestar;
+    private final long ociosoMaximoMs;
+    private final int tamanhoCacheStatements;
+    private final List<String> comandosInicializacao;
+
+    // Limita o total de conexoes (ativas + ociosas) ao tamanho maximo
+    private final Semaphore permissoes;
+    // Pilha LIFO: conexoes mais recentes no topo, mais antigas no fundo
+    private final Deque<ConexaoOciosa> ociosas = new ArrayDeque<>();
+    private final ScheduledExecutorService removedorOciosas;
+
+    private final AtomicInteger ativas = new AtomicInteger();
+    private final AtomicInteger aguardando = new AtomicInteger();
+    private final LongAdder totalAquisicoes = new LongAdder();
+    private final LongAdder tempoAquisicaoNanos = new LongAdder();
+    private final LongAdder conexoesCriadas = new LongAdder();
+    private final LongAdder acertosCacheStatements = new LongAdder();
+    private final LongAdder falhasCacheStatements = new LongAdder();
+
+    private volatile boolean fechado;
+
+    /**
+     * @param url URL JDBC do banco
+     * @param tamanhoMaximo numero maximo de conexoes abertas
+     * @param timeoutAquisicaoMs tempo maximo de espera por uma conexao livre
+     * @param validarAoEmprestar valida a conexao ociosa antes de entrega-la
+     * @param ociosoMaximoMs tempo que uma conexao pode ficar ociosa antes de ser fechada (0 desativa)
+     */
+    public ConnectionPool(String url, int tamanhoMaximo, long timeoutAquisicaoMs,
+                          boolean validarAoEmprestar, long ociosoMaximoMs) {
+        this(url, tamanhoMaximo, timeoutAquisicaoMs, validarAoEmprestar, ociosoMaximoMs, 0);
+    }
+
+    /**
+     * @param tamanhoCacheStatements statements mantidos em cache por conexao (0 desativa)
+     */
+    public ConnectionPool(String url, int tamanhoMaximo, long timeoutAquisicaoMs,
+                          boolean validarAoEmprestar, long ociosoMaximoMs, int tamanhoCacheStatements) {
+        this(url, tamanhoMaximo, timeoutAquisicaoMs, validarAoEmprestar, ociosoMaximoMs, tamanhoCacheStatements,
+             Collections.emptyList());
+    }
+
+    /**
+     * @param comandosInicializacao SQL executado em cada conexao fisica nova (ex.: PRAGMAs)
+     */
+    public ConnectionPool(String url, int tamanhoMaximo, long timeoutAquisicaoMs,
+                          boolean validarAoEmprestar, long ociosoMaximoMs, int tamanhoCacheStatements,
+                          List<String> comandosInicializacao) {
+        if (tamanhoMaximo <= 0) {
+            throw new IllegalArgumentException("Tamanho maximo do pool deve ser maior que zero");
+        }
+        this.url = url;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.timeoutAquisicaoMs = timeoutAquisicaoMs;
+        this.validarAoEmprestar = validarAoEmprestar;
+        this.ociosoMaximoMs = ociosoMaximoMs;
+        this.tamanhoCacheStatements = tamanhoCacheStatements;
+        this.comandosInicializacao = comandosInicializacao;
+        this.permissoes = new Semaphore(tamanhoMaximo, true);
+
+        if (ociosoMaximoMs > 0) {
+            removedorOciosas = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "pool-removedor-ociosas");
+                t.setDaemon(true);
+                return t;
+            });
+            long intervalo = Math.max(1000, ociosoMaximoMs / 2);
+            removedorOciosas.scheduleWithFixedDelay(this::removerOciosas, intervalo, intervalo, TimeUnit.MILLISECONDS);
+        } else {
+            removedorOciosas = null;
+        }
+    }
+
+    /**
+     * Obtem uma conexao do pool, aguardando ate o timeout configurado
+     * @throws SQLException se o timeout expirar ou a conexao nao puder ser aberta
+     */
+    public Connection obterConexao() throws SQLException {
+        if (fechado) {
+            throw new SQLException("Pool de conexoes esta fechado");
+        }
+
+        long inicio = System.nanoTime();
+        aguardando.incrementAndGet();
+        try {
+            if (!permissoes.tryAcquire(timeoutAquisicaoMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout ao obter conexao do pool apos " + timeoutAquisicaoMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido aguardando conexao do pool", e);
+        } finally {
+            aguardando.decrementAndGet();
+        }
+
+        ConexaoFisica fisica;
+        try {
+            fisica = retirarOciosa();
+            if (fisica == null) {
+                fisica = new ConexaoFisica(abrirConexao());
+                conexoesCriadas.increment();
+            }
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+
+        ativas.incrementAndGet();
+        totalAquisicoes.increment();
+        tempoAquisicaoNanos.add(System.nanoTime() - inicio);
+        return criarProxy(fisica);
+    }
+
+    /**
+     * Abre uma conexao fisica e aplica os comandos de inicializacao
+     */
+    private Connection abrirConexao() throws SQLException {
+        Connection conexao = DriverManager.getConnection(url);
+        try (Statement stmt = conexao.createStatement()) {
+            for (String comando : comandosInicializacao) {
+                stmt.execute(comando);
+            }
+        } catch (SQLException e) {
+            conexao.close();
+            throw e;
+        }
+        return conexao;
+    }
+
+    /**
+     * Retira a conexao ociosa mais recente, descartando as invalidas
+     */
+    private ConexaoFisica retirarOciosa() {
+        while (true) {
+            ConexaoOciosa ociosa;
+            synchronized (ociosas) {
+                ociosa = ociosas.pollFirst();
+            }
+            if (ociosa == null) {
+                return null;
+            }
+            if (!validarAoEmprestar || valida(ociosa.conexao.conexao)) {
+                return ociosa.conexao;
+            }
+            ociosa.conexao.fechar();
+        }
+    }
+
+    private boolean valida(Connection conexao) {
+        try {
+            return !conexao.isClosed() && conexao.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Recebe a conexao fisica de volta, restaurando o estado padrao
+     */
+    private void devolver(ConexaoFisica fisica) {
+        boolean reutilizar = !fechado;
+        try {
+            if (!fisica.conexao.getAutoCommit()) {
+                fisica.conexao.rollback();
+                fisica.conexao.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reutilizar = false;
+        }
+
+        if (reutilizar) {
+            synchronized (ociosas) {
+                ociosas.addFirst(new ConexaoOciosa(fisica, System.currentTimeMillis()));
+            }
+        } else {
+            fisica.fechar();
+        }
+
+        ativas.decrementAndGet();
+        permissoes.release();
+    }
+
+    /**
+     * Fecha conexoes ociosas ha mais tempo que o limite configurado
+     */
+    private void removerOciosas() {
+        long limite = System.currentTimeMillis() - ociosoMaximoMs;
+        synchronized (ociosas) {
+            Iterator<ConexaoOciosa> it = ociosas.descendingIterator();
+            while (it.hasNext()) {
+                ConexaoOciosa ociosa = it.next();
+                if (ociosa.desde > limite) {
+                    break;
+                }
+                it.remove();
+                ociosa.conexao.fechar();
+            }
+        }
+    }
+
+    /**
+     * Fecha o pool e todas as conexoes ociosas.
+     * Conexoes ativas sao fechadas quando devolvidas.
+     */
+    public void fechar() {
+        fechado = true;
+        if (removedorOciosas != null) {
+            removedorOciosas.shutdownNow();
+        }
+        synchronized (ociosas) {
+            for (ConexaoOciosa ociosa : ociosas) {
+                ociosa.conexao.fechar();
+            }
+            ociosas.clear();
+        }
+    }
+
+    private Connection criarProxy(ConexaoFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+            ConnectionPool.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new ConexaoEmprestada(fisica)
+        );
+    }
+
+    // Estatisticas
+
+    public int getAtivas() {
+        return ativas.get();
+    }
+
+    public int getOciosas() {
+        synchronized (ociosas) {
+            return ociosas.size();
+        }
+    }
+
+    public int getAguardando() {
+        return aguardando.get();
+    }
+
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    public long getTotalAquisicoes() {
+        return totalAquisicoes.sum();
+    }
+
+    public long getConexoesCriadas() {
+        return conexoesCriadas.sum();
+    }
+
+    public long getAcertosCacheStatements() {
+        return acertosCacheStatements.sum();
+    }
+
+    public long getFalhasCacheStatements() {
+        return falhasCacheStatements.sum();
+    }
+
+    /**
+     * Latencia media de aquisicao (espera + validacao/abertura) em milissegundos
+     */
+    public double getLatenciaMediaAquisicaoMs() {
+        long total = totalAquisicoes.sum();
+        return total == 0 ? 0.0 : tempoAquisicaoNanos.sum() / 1_000_000.0 / total;
+    }
+
+    /**
+     * Retorna um retrato das estatisticas atuais do pool
+     */
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("ativas", getAtivas());
+        dados.put("ociosas", getOciosas());
+        dados.put("aguardando", getAguardando());
+        dados.put("tamanhoMaximo", tamanhoMaximo);
+        dados.put("conexoesCriadas", getConexoesCriadas());
+        dados.put("totalAquisicoes", getTotalAquisicoes());
+        dados.put("latenciaMediaAquisicaoMs", String.format("%.3f", getLatenciaMediaAquisicaoMs()));
+        dados.put("cacheStatementsAcertos", getAcertosCacheStatements());
+        dados.put("cacheStatementsFalhas", getFalhasCacheStatements());
+        return dados;
+    }
+
+    /**
+     * Conexao JDBC real e o cache de statements associado a ela
+     */
+    private class ConexaoFisica {
+        final Connection conexao;
+        final CacheStatements cache;
+
+        ConexaoFisica(Connection conexao) {
+            this.conexao = conexao;
+            this.cache = tamanhoCacheStatements > 0
+                ? new CacheStatements(conexao, tamanhoCacheStatements, acertosCacheStatements, falhasCacheStatements)
+                : null;
+        }
+
+        void fechar() {
+            if (cache != null) {
+                cache.fecharTodos();
+            }
+            try {
+                conexao.close();
+            } catch (SQLException e) {
+                // Conexao ja descartada, nada a fazer
+            }
+        }
+    }
+
+    /**
+     * Conexao fisica parada no pool e o instante em que foi devolvida
+     */
+    private static class ConexaoOciosa {
+        final ConexaoFisica conexao;
+        final long desde;
+
+        ConexaoOciosa(ConexaoFisica conexao, long desde) {
+            this.conexao = conexao;
+            this.desde = desde;
+        }
+    }
+
+    /**
+     * Intercepta close() para devolver a conexao ao pool e prepareStatement(String)
+     * para usar o cache. Demais chamadas sao repassadas para a conexao fisica.
+     */
+    private class ConexaoEmprestada implements InvocationHandler {
+        private final ConexaoFisica fisica;
+        private boolean devolvida;
+
+        ConexaoEmprestada(ConexaoFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devolvida) {
+                        devolvida = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devolvida || fisica.conexao.isClosed();
+                case "unwrap":
+                case "isWrapperFor":
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexaoEmprestada[" + fisica.conexao + "]";
+                default:
+                    if (devolvida) {
+                        throw new SQLException("Conexao ja foi devolvida ao pool");
+                    }
+                    if (fisica.cache != null && "prepareStatement".equals(method.getName())
+                            && args.length == 1) {
+                        return fisica.cache.preparar((String) args[0]);
+                    }
+            }
+            try {
+                return method.invoke(fisica.conexao, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
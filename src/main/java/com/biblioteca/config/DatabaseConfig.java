@@ -1,18 +1,32 @@
 package com.biblioteca.config;
 
+import com.biblioteca.util.Logger;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
 /**
  * Classe de configuração do banco de dados SQLite
- * Gerencia conexões com o banco de dados local
+ * Gerencia conexões com o banco de dados local através de um pool limitado
  */
 public class DatabaseConfig {
+    private static final Logger logger = Logger.getLogger(DatabaseConfig.class);
+    private static final String PREFIXO_PRAGMA = "db.pragma.";
+    
     private static String DATABASE_URL;
+    private static ConnectionPool pool;
+    private static EscritorUnico escritor;
+    // PRAGMAs do perfil de desempenho, aplicados em toda conexao nova
+    private static Map<String, String> pragmas;
     
     static {
         try {
@@ -24,7 +38,8 @@ public class DatabaseConfig {
     
     private static void inicializarConfiguracao() throws IOException {
         Properties props = carregarPropriedades();
-        DATABASE_URL = props.getProperty("db.url");
+        // Permite sobrescrever a URL via -Ddb.url (usado em testes e benchmarks)
+        DATABASE_URL = System.getProperty("db.url", props.getProperty("db.url"));
         
         // Carregar driver SQLite
         try {
@@ -32,6 +47,96 @@ public class DatabaseConfig {
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Driver SQLite nao encontrado", e);
         }
+        
+        pragmas = carregarPragmas(props);
+        List<String> comandos = new ArrayList<>();
+        for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+            comandos.add("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+        }
+        
+        pool = new ConnectionPool(
+            DATABASE_URL,
+            lerInt(props, "db.pool.tamanho.maximo", 10),
+            lerInt(props, "db.pool.timeout.aquisicao.ms", 5000),
+            Boolean.parseBoolean(props.getProperty("db.pool.validar.ao.emprestar", "true")),
+            lerInt(props, "db.pool.ocioso.maximo.ms", 300000),
+            lerInt(props, "db.pool.cache.statements", 64),
+            comandos
+        );
+        
+        escritor = new EscritorUnico(
+            pool,
+            lerInt(props, "db.escritor.fila.capacidade", 1024),
+            lerInt(props, "db.escritor.lote.maximo", 64),
+            lerInt(props, "db.escritor.atraso.maximo.ms", 2),
+            lerInt(props, "db.escritor.timeout.enfileirar.ms", 5000)
+        );
+        
+        migrarSchema();
+    }
+    
+    private static void migrarSchema() {
+        try (Connection conn = pool.obterConexao()) {
+            migrarSchema(conn);
+        } catch (SQLException e) {
+            logger.error("Erro ao migrar o schema do SQLite: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Migracoes idempotentes para bancos criados por versoes anteriores do
+     * schema. Bancos novos (sem a tabela ainda) nao sao alterados.
+     */
+    public static void migrarSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            boolean tabelaExiste = false;
+            boolean temVersion = false;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(itens_biblioteca)")) {
+                while (rs.next()) {
+                    tabelaExiste = true;
+                    if ("version".equalsIgnoreCase(rs.getString("name"))) {
+                        temVersion = true;
+                    }
+                }
+            }
+            if (tabelaExiste && !temVersion) {
+                stmt.executeUpdate("ALTER TABLE itens_biblioteca ADD COLUMN version INTEGER NOT NULL DEFAULT 1");
+                logger.info("Migracao: coluna version adicionada em itens_biblioteca");
+            }
+        }
+    }
+    
+    /**
+     * Le as chaves db.pragma.* (ex.: db.pragma.journal_mode=WAL).
+     * Nomes e valores sao restritos a identificadores simples, pois viram SQL.
+     */
+    private static Map<String, String> carregarPragmas(Properties props) {
+        Map<String, String> resultado = new TreeMap<>();
+        for (String chave : props.stringPropertyNames()) {
+            if (!chave.startsWith(PREFIXO_PRAGMA)) {
+                continue;
+            }
+            String nome = chave.substring(PREFIXO_PRAGMA.length());
+            String valor = props.getProperty(chave).trim();
+            if (nome.matches("[A-Za-z_]+") && valor.matches("-?[A-Za-z0-9_]+")) {
+                resultado.put(nome, valor);
+            } else {
+                logger.warn("PRAGMA ignorado por conter caracteres invalidos: " + chave + "=" + valor);
+            }
+        }
+        return resultado;
+    }
+    
+    private static int lerInt(Properties props, String chave, int valorPadrao) {
+        String valor = props.getProperty(chave);
+        if (valor != null) {
+            try {
+                return Integer.parseInt(valor.trim());
+            } catch (NumberFormatException e) {
+                return valorPadrao;
+            }
+        }
+        return valorPadrao;
     }
     
     private static Properties carregarPropriedades() throws IOException {
@@ -47,10 +152,70 @@ public class DatabaseConfig {
     }
     
     /**
-     * Obtém uma conexão com o banco de dados
+     * Obtém uma conexão do pool. Fechar a conexão a devolve ao pool.
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DATABASE_URL);
+        return pool.obterConexao();
+    }
+    
+    /**
+     * Retorna o pool de conexões (para consulta de estatísticas)
+     */
+    public static ConnectionPool getPool() {
+        return pool;
+    }
+    
+    /**
+     * Autoverificação de inicialização: lê os PRAGMAs em vigor numa conexão
+     * do pool, registra no log e avisa quando diferem do configurado.
+     * @return Valores efetivos de cada PRAGMA configurado
+     */
+    public static Map<String, String> verificarPragmas() {
+        Map<String, String> efetivos = new LinkedHashMap<>();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                String efetivo;
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma.getKey())) {
+                    efetivo = rs.next() ? rs.getString(1) : null;
+                }
+                efetivos.put(pragma.getKey(), efetivo);
+                
+                if (equivalente(pragma.getKey(), pragma.getValue(), efetivo)) {
+                    logger.info("PRAGMA " + pragma.getKey() + " = " + efetivo);
+                } else {
+                    logger.warn("PRAGMA " + pragma.getKey() + " = " + efetivo
+                        + " (configurado: " + pragma.getValue() + ")");
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Erro ao verificar PRAGMAs do SQLite: " + e.getMessage());
+        }
+        return efetivos;
+    }
+    
+    /**
+     * Compara o valor configurado com o lido, considerando que o SQLite
+     * devolve synchronous e temp_store como números
+     */
+    private static boolean equivalente(String nome, String configurado, String efetivo) {
+        if (configurado.equalsIgnoreCase(efetivo)) {
+            return true;
+        }
+        String[] nomes;
+        if ("synchronous".equalsIgnoreCase(nome)) {
+            nomes = new String[] {"OFF", "NORMAL", "FULL", "EXTRA"};
+        } else if ("temp_store".equalsIgnoreCase(nome)) {
+            nomes = new String[] {"DEFAULT", "FILE", "MEMORY"};
+        } else {
+            return false;
+        }
+        for (int i = 0; i < nomes.length; i++) {
+            if (nomes[i].equalsIgnoreCase(configurado)) {
+                return String.valueOf(i).equals(efetivo);
+            }
+        }
+        return false;
     }
     
     /**
@@ -65,9 +230,17 @@ public class DatabaseConfig {
     }
     
     /**
-     * Fecha conexões (SQLite não precisa de pool, então esse método é vazio)
+     * Retorna o escritor único, que agrupa escritas concorrentes em uma transação
+     */
+    public static EscritorUnico getEscritor() {
+        return escritor;
+    }
+    
+    /**
+     * Grava as escritas pendentes e fecha o pool com todas as conexões ociosas
      */
     public static void close() {
-        // SQLite não precisa fechar pool de conexões
+        escritor.encerrar();
+        pool.fechar();
     }
 }
@@ -0,0 +1,238 @@
+package com.biblioteca.config;
+
+import com.biblioteca.util.Logger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Escritor unico com group commit
+ * Uma thread dedicada consome uma fila limitada de escritas e agrupa as que
+ * chegam juntas em uma unica transacao, evitando disputa entre escritores
+ * (SQLITE_BUSY) e um commit (fsync) por operacao.
+ *
+ * Cada operacao roda sob um savepoint proprio: a falha de uma nao desfaz as
+ * demais do mesmo grupo. O chamador recebe o resultado por um CompletableFuture,
+ * concluido somente depois do commit.
+ */
+public class EscritorUnico {
+
+    private static final Logger logger = Logger.getLogger(EscritorUnico.class);
+
+    /**
+     * Escrita executada dentro da transacao do grupo
+     */
+    public interface Operacao {
+        void executar(Connection conn) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+    private final int loteMaximo;
+    private final long atrasoMaximoNanos;
+    private final long timeoutEnfileirarMs;
+    private final BlockingQueue<Pedido> fila;
+    private final Thread thread;
+
+    private final LongAdder transacoes = new LongAdder();
+    private final LongAdder escritas = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    private volatile boolean encerrado;
+
+    /**
+     * @param pool pool de onde a conexao de cada grupo e obtida
+     * @param capacidadeFila escritas pendentes aceitas antes de aplicar contrapressao
+     * @param loteMaximo maximo de escritas por transacao
+     * @param atrasoMaximoMs quanto o escritor espera por mais escritas antes do commit
+     * @param timeoutEnfileirarMs quanto o chamador espera por espaco na fila cheia
+     */
+    public EscritorUnico(ConnectionPool pool, int capacidadeFila, int loteMaximo,
+                         long atrasoMaximoMs, long timeoutEnfileirarMs) {
+        this.pool = pool;
+        this.loteMaximo = loteMaximo;
+        this.atrasoMaximoNanos = TimeUnit.MILLISECONDS.toNanos(atrasoMaximoMs);
+        this.timeoutEnfileirarMs = timeoutEnfileirarMs;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.thread = new Thread(this::executar, "escritor-sqlite");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Enfileira uma escrita
+     * @return futuro concluido apos o commit do grupo, ou com a excecao da operacao
+     */
+    public CompletableFuture<Void> submeter(Operacao operacao) {
+        CompletableFuture<Void> futuro = new CompletableFuture<>();
+        if (encerrado) {
+            futuro.completeExceptionally(new RejectedExecutionException("Escritor encerrado"));
+            return futuro;
+        }
+        Pedido pedido = new Pedido(operacao, futuro);
+        try {
+            if (!fila.offer(pedido, timeoutEnfileirarMs, TimeUnit.MILLISECONDS)) {
+                futuro.completeExceptionally(new RejectedExecutionException(
+                    "Fila de escrita cheia apos " + timeoutEnfileirarMs + " ms"));
+            } else if (encerrado && fila.remove(pedido)) {
+                // encerrar() correu com o offer: a thread pode ja ter esvaziado a
+                // fila pela ultima vez. Se o pedido ainda esta la, ninguem o
+                // gravaria; se nao esta, a thread o pegou e vai concluir o futuro.
+                futuro.completeExceptionally(new RejectedExecutionException("Escritor encerrado"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futuro.completeExceptionally(e);
+        }
+        return futuro;
+    }
+
+    /**
+     * Laco da thread escritora: junta um grupo e grava em uma transacao
+     */
+    private void executar() {
+        List<Pedido> grupo = new ArrayList<>(loteMaximo);
+        while (!encerrado || !fila.isEmpty()) {
+            try {
+                Pedido primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+                if (primeiro == null) {
+                    continue;
+                }
+                grupo.add(primeiro);
+
+                long prazo = System.nanoTime() + atrasoMaximoNanos;
+                while (grupo.size() < loteMaximo) {
+                    long restante = prazo - System.nanoTime();
+                    Pedido proximo = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : fila.poll();
+                    if (proximo == null) {
+                        break;
+                    }
+                    grupo.add(proximo);
+                }
+
+                gravar(grupo);
+            } catch (InterruptedException e) {
+                // Encerramento: grava o que ja foi retirado e termina de esvaziar a fila
+                encerrado = true;
+                if (!grupo.isEmpty()) {
+                    gravar(grupo);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Erro inesperado no escritor: " + e.getMessage());
+                for (Pedido pedido : grupo) {
+                    pedido.futuro.completeExceptionally(e);
+                }
+            }
+            grupo.clear();
+        }
+
+        recusarPendentes();
+    }
+
+    private void recusarPendentes() {
+        Pedido atrasado;
+        while ((atrasado = fila.poll()) != null) {
+            atrasado.futuro.completeExceptionally(new RejectedExecutionException("Escritor encerrado"));
+        }
+    }
+
+    private void gravar(List<Pedido> grupo) {
+        List<Pedido> aplicados = new ArrayList<>(grupo.size());
+        try (Connection conn = pool.obterConexao()) {
+            conn.setAutoCommit(false);
+            for (Pedido pedido : grupo) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    pedido.operacao.executar(conn);
+                    conn.releaseSavepoint(savepoint);
+                    aplicados.add(pedido);
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback(savepoint);
+                    falhas.increment();
+                    pedido.futuro.completeExceptionally(e);
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("Falha ao gravar grupo de escritas: " + e.getMessage());
+            for (Pedido pedido : grupo) {
+                if (pedido.futuro.completeExceptionally(e)) {
+                    falhas.increment();
+                }
+            }
+            return;
+        }
+
+        transacoes.increment();
+        escritas.add(aplicados.size());
+        for (Pedido pedido : aplicados) {
+            pedido.futuro.complete(null);
+        }
+    }
+
+    /**
+     * Para de aceitar escritas e aguarda a fila ser gravada. Pedidos que
+     * ainda estiverem na fila depois disso (thread escritora presa alem do
+     * prazo) sao recusados, para que nenhum chamador espere para sempre.
+     */
+    public void encerrar() {
+        encerrado = true;
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        recusarPendentes();
+    }
+
+    // Estatisticas
+
+    public long getTransacoes() {
+        return transacoes.sum();
+    }
+
+    public long getEscritas() {
+        return escritas.sum();
+    }
+
+    public int getPendentes() {
+        return fila.size();
+    }
+
+    /**
+     * Retorna um retrato das estatisticas do escritor
+     */
+    public Map<String, Object> estatisticas() {
+        long totalTransacoes = getTransacoes();
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("pendentes", getPendentes());
+        dados.put("transacoes", totalTransacoes);
+        dados.put("escritas", getEscritas());
+        dados.put("falhas", falhas.sum());
+        dados.put("escritasPorTransacao", totalTransacoes == 0 ? "0.00"
+            : String.format("%.2f", (double) getEscritas() / totalTransacoes));
+        return dados;
+    }
+
+    /**
+     * Escrita pendente e o futuro do chamador
+     */
+    private static class Pedido {
+        final Operacao operacao;
+        final CompletableFuture<Void> futuro;
+
+        Pedido(Operacao operacao, CompletableFuture<Void> futuro) {
+            this.operacao = operacao;
+            this.futuro = futuro;
+        }
+    }
+}
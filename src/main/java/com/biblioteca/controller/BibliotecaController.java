@@ -1,8 +1,13 @@
 package com.biblioteca.controller;
 
+import com.biblioteca.dto.EmprestimoDTO;
+import com.biblioteca.dto.EstatisticasDTO;
 import com.biblioteca.dto.ItemDTO;
 import com.biblioteca.dto.ItemResponseDTO;
+import com.biblioteca.dto.PaginaDTO;
+import com.biblioteca.repository.ItemRepository;
 import com.biblioteca.exception.*;
+import com.biblioteca.model.usuario.Usuario;
 import com.biblioteca.service.BibliotecaService;
 import com.biblioteca.util.Logger;
 
@@ -44,6 +49,57 @@ public class BibliotecaController {
         }
     }
 
+    /**
+     * Lista uma página de itens da biblioteca, em ordem de código.
+     * 
+     * @param cursor Cursor da página anterior (null para a primeira)
+     * @param limite Quantidade máxima de itens na página
+     * @return Página com os itens e o cursor da próxima página
+     * @throws ValidacaoException Se o limite ou o cursor são inválidos
+     */
+    public PaginaDTO<ItemResponseDTO> listarPagina(String cursor, int limite) {
+        logger.debug("Controller: listarPagina() - cursor=" + cursor + ", limite=" + limite);
+        try {
+            return service.listarPagina(cursor, limite);
+        } catch (Exception e) {
+            logger.error("Erro no controller ao listar pagina de itens: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Busca itens por texto, ordenados por relevância.
+     * 
+     * @param consulta Termos da busca
+     * @param limite Quantidade máxima de itens
+     * @return Lista de DTOs dos itens encontrados
+     * @throws ValidacaoException Se a consulta é vazia ou o limite é inválido
+     */
+    public List<ItemResponseDTO> buscarTexto(String consulta, int limite) {
+        logger.debug("Controller: buscarTexto() - consulta=" + consulta + ", limite=" + limite);
+        try {
+            return service.buscarTexto(consulta, limite);
+        } catch (Exception e) {
+            logger.error("Erro no controller ao buscar itens: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Obtém as contagens do acervo por tipo e situação.
+     * 
+     * @return DTO com totais de itens, disponíveis, emprestados e por tipo
+     */
+    public EstatisticasDTO obterEstatisticas() {
+        logger.debug("Controller: obterEstatisticas()");
+        try {
+            return service.obterEstatisticas();
+        } catch (Exception e) {
+            logger.error("Erro no controller ao obter estatisticas: " + e.getMessage());
+            throw e;
+        }
+    }
+
     /**
      * Adiciona um novo item à biblioteca.
      * 
@@ -69,14 +125,39 @@ public class BibliotecaController {
      * Empresta um item da biblioteca.
      * 
      * @param id ID do item
+     * @return Item atualizado, com a nova versão
      * @throws ItemNaoEncontradoException Se o item não existe
      * @throws OperacaoInvalidaException Se o item já está emprestado
      * @throws BibliotecaException Se houver erro na operação
      */
-    public void emprestarItem(String id) throws BibliotecaException {
+    public ItemResponseDTO emprestarItem(String id) throws BibliotecaException {
+        logger.debug("Controller: emprestarItem() - ID=" + id);
+        try {
+            return service.emprestarItem(id);
+        } catch (BibliotecaException e) {
+            logger.error("Erro no controller ao emprestar item: " + e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            logger.error("Erro inesperado no controller: " + e.getMessage());
+            throw new BibliotecaException("Erro ao emprestar item", e);
+        }
+    }
+
+    /**
+     * Empresta um item em nome do usuário autenticado, registrando o empréstimo.
+     * 
+     * @param id ID do item
+     * @param versaoEsperada Versão lida pelo cliente (If-Match), ou ItemRepository.QUALQUER_VERSAO
+     * @param usuario Usuário autenticado
+     * @return Item com a nova versão
+     * @throws AutenticacaoException Se não houver usuário
+     * @throws PermissaoNegadaException Se o usuário não pode emprestar itens
+     * @throws OperacaoInvalidaException Se o limite de empréstimos foi atingido
+     */
+    public ItemResponseDTO emprestarItem(String id, long versaoEsperada, Usuario usuario) throws BibliotecaException {
         logger.debug("Controller: emprestarItem() - ID=" + id);
         try {
-            service.emprestarItem(id);
+            return service.emprestarItem(id, versaoEsperada, usuario);
         } catch (BibliotecaException e) {
             logger.error("Erro no controller ao emprestar item: " + e.getMessage());
             throw e;
@@ -90,14 +171,15 @@ public class BibliotecaController {
      * Devolve um item à biblioteca.
      * 
      * @param id ID do item
+     * @return Item atualizado, com a nova versão
      * @throws ItemNaoEncontradoException Se o item não existe
      * @throws OperacaoInvalidaException Se o item não está emprestado
      * @throws BibliotecaException Se houver erro na operação
      */
-    public void devolverItem(String id) throws BibliotecaException {
+    public ItemResponseDTO devolverItem(String id) throws BibliotecaException {
         logger.debug("Controller: devolverItem() - ID=" + id);
         try {
-            service.devolverItem(id);
+            return service.devolverItem(id);
         } catch (BibliotecaException e) {
             logger.error("Erro no controller ao devolver item: " + e.getMessage());
             throw e;
@@ -107,6 +189,49 @@ public class BibliotecaController {
         }
     }
 
+    /**
+     * Devolve um item em nome do usuário autenticado.
+     * 
+     * @param id ID do item
+     * @param versaoEsperada Versão lida pelo cliente (If-Match), ou ItemRepository.QUALQUER_VERSAO
+     * @param usuario Usuário autenticado
+     * @return Item com a nova versão
+     * @throws AutenticacaoException Se não houver usuário
+     * @throws PermissaoNegadaException Se o item foi emprestado por outro usuário
+     */
+    public ItemResponseDTO devolverItem(String id, long versaoEsperada, Usuario usuario) throws BibliotecaException {
+        logger.debug("Controller: devolverItem() - ID=" + id);
+        try {
+            return service.devolverItem(id, versaoEsperada, usuario);
+        } catch (BibliotecaException e) {
+            logger.error("Erro no controller ao devolver item: " + e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            logger.error("Erro inesperado no controller: " + e.getMessage());
+            throw new BibliotecaException("Erro ao devolver item", e);
+        }
+    }
+
+    /**
+     * Lista os empréstimos ativos do usuário autenticado.
+     * 
+     * @param usuario Usuário autenticado
+     * @return Lista de empréstimos, do mais recente para o mais antigo
+     * @throws PermissaoNegadaException Se o usuário não pode listar empréstimos
+     */
+    public List<EmprestimoDTO> listarMeusEmprestimos(Usuario usuario) throws BibliotecaException {
+        logger.debug("Controller: listarMeusEmprestimos() - " + usuario.getEmail());
+        try {
+            return service.listarEmprestimosDoUsuario(usuario);
+        } catch (BibliotecaException e) {
+            logger.error("Erro no controller ao listar empréstimos: " + e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            logger.error("Erro inesperado no controller: " + e.getMessage());
+            throw new BibliotecaException("Erro ao listar empréstimos", e);
+        }
+    }
+
     /**
      * Remove um item da biblioteca.
      * 
@@ -115,9 +240,20 @@ public class BibliotecaController {
      * @throws BibliotecaException Se houver erro na operação
      */
     public void removerItem(String id) throws BibliotecaException {
+        removerItem(id, ItemRepository.QUALQUER_VERSAO);
+    }
+
+    /**
+     * Como removerItem(id), exigindo que o item ainda esteja na versão informada.
+     * 
+     * @param id ID do item
+     * @param versaoEsperada Versão lida pelo cliente (If-Match), ou ItemRepository.QUALQUER_VERSAO
+     * @throws ConflitoVersaoException Se o item foi alterado por outro cliente
+     */
+    public void removerItem(String id, long versaoEsperada) throws BibliotecaException {
         logger.debug("Controller: removerItem() - ID=" + id);
         try {
-            service.removerItem(id);
+            service.removerItem(id, versaoEsperada);
         } catch (BibliotecaException e) {
             logger.error("Erro no controller ao remover item: " + e.getMessage());
             throw e;
@@ -138,11 +274,9 @@ public class BibliotecaController {
     public ItemResponseDTO buscarPorCodigo(String codigo) throws BibliotecaException {
         logger.debug("Controller: buscarPorCodigo() - Codigo=" + codigo);
         try {
-            // Buscar na lista de todos os itens
-            return listarTodos().stream()
-                .filter(item -> item.getCodigo().equals(codigo))
-                .findFirst()
-                .orElseThrow(() -> new ItemNaoEncontradoException("Item com código " + codigo + " não encontrado"));
+            // Busca direta pelo codigo (indice do repositorio), sem listar o acervo
+            return service.buscarPorCodigo(codigo)
+                .orElseThrow(() -> new ItemNaoEncontradoException(codigo));
         } catch (BibliotecaException e) {
             logger.error("Erro no controller ao buscar item: " + e.getMessage());
             throw e;
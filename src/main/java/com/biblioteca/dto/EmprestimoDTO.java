@@ -0,0 +1,41 @@
+package com.biblioteca.dto;
+
+/**
+ * DTO para resposta de empréstimos
+ */
+public class EmprestimoDTO {
+    private long id;
+    private String codigoItem;
+    private String usuarioId;
+    private String dataEmprestimo;
+    private String dataDevolucao;
+
+    public EmprestimoDTO(long id, String codigoItem, String usuarioId, String dataEmprestimo, String dataDevolucao) {
+        this.id = id;
+        this.codigoItem = codigoItem;
+        this.usuarioId = usuarioId;
+        this.dataEmprestimo = dataEmprestimo;
+        this.dataDevolucao = dataDevolucao;
+    }
+
+    // Getters
+    public long getId() {
+        return id;
+    }
+
+    public String getCodigoItem() {
+        return codigoItem;
+    }
+
+    public String getUsuarioId() {
+        return usuarioId;
+    }
+
+    public String getDataEmprestimo() {
+        return dataEmprestimo;
+    }
+
+    public String getDataDevolucao() {
+        return dataDevolucao;
+    }
+}
@@ -0,0 +1,37 @@
+package com.biblioteca.dto;
+
+import java.util.Map;
+
+/**
+ * DTO com as contagens do acervo exibidas nos painéis
+ */
+public class EstatisticasDTO {
+    private long total;
+    private long disponiveis;
+    private long emprestados;
+    private Map<String, Long> porTipo;
+
+    public EstatisticasDTO(long total, long disponiveis, long emprestados, Map<String, Long> porTipo) {
+        this.total = total;
+        this.disponiveis = disponiveis;
+        this.emprestados = emprestados;
+        this.porTipo = porTipo;
+    }
+
+    // Getters
+    public long getTotal() {
+        return total;
+    }
+
+    public long getDisponiveis() {
+        return disponiveis;
+    }
+
+    public long getEmprestados() {
+        return emprestados;
+    }
+
+    public Map<String, Long> getPorTipo() {
+        return porTipo;
+    }
+}
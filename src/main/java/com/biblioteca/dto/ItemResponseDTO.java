@@ -10,13 +10,19 @@ public class ItemResponseDTO {
     private String codigo;
     private boolean emprestado;
     private String detalhes;
+    private long versao;
     
     public ItemResponseDTO(String tipo, String titulo, String codigo, boolean emprestado, String detalhes) {
+        this(tipo, titulo, codigo, emprestado, detalhes, 0);
+    }
+    
+    public ItemResponseDTO(String tipo, String titulo, String codigo, boolean emprestado, String detalhes, long versao) {
         this.tipo = tipo;
         this.titulo = titulo;
         this.codigo = codigo;
         this.emprestado = emprestado;
         this.detalhes = detalhes;
+        this.versao = versao;
     }
     
     // Getters e Setters
@@ -59,4 +65,16 @@ public class ItemResponseDTO {
     public void setDetalhes(String detalhes) {
         this.detalhes = detalhes;
     }
+    
+    /**
+     * Versão do item; enviada de volta no If-Match para gravar sem sobrescrever
+     * alterações de outro cliente
+     */
+    public long getVersao() {
+        return versao;
+    }
+    
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
 }
@@ -0,0 +1,39 @@
+package com.biblioteca.dto;
+
+import java.util.List;
+
+/**
+ * DTO para uma pagina de resultados com paginacao por cursor
+ * O cursor e opaco para o cliente: basta reenvia-lo para obter a proxima pagina
+ */
+public class PaginaDTO<T> {
+    private List<T> itens;
+    private String proximoCursor;
+    private int limite;
+    
+    public PaginaDTO(List<T> itens, String proximoCursor, int limite) {
+        this.itens = itens;
+        this.proximoCursor = proximoCursor;
+        this.limite = limite;
+    }
+    
+    // Getters
+    public List<T> getItens() {
+        return itens;
+    }
+    
+    /**
+     * Cursor da proxima pagina, ou null se esta for a ultima
+     */
+    public String getProximoCursor() {
+        return proximoCursor;
+    }
+    
+    public int getLimite() {
+        return limite;
+    }
+    
+    public boolean isTemProxima() {
+        return proximoCursor != null;
+    }
+}
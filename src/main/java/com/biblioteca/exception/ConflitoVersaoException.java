@@ -0,0 +1,19 @@
+package com.biblioteca.exception;
+
+/**
+ * Excecao lancada quando a versao informada de um item nao e mais a atual
+ * (outra requisicao ou instancia gravou o item antes)
+ */
+public class ConflitoVersaoException extends BibliotecaException {
+    private final long versaoAtual;
+    
+    public ConflitoVersaoException(String codigo, long versaoEsperada, long versaoAtual) {
+        super("CONFLITO_VERSAO", "Item com codigo '" + codigo + "' esta na versao " + versaoAtual
+            + ", mas a versao informada foi " + versaoEsperada);
+        this.versaoAtual = versaoAtual;
+    }
+    
+    public long getVersaoAtual() {
+        return versaoAtual;
+    }
+}
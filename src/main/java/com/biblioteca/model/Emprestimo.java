@@ -0,0 +1,67 @@
+package com.biblioteca.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro de um empréstimo: qual usuário levou qual item e quando
+ * Enquanto a data de devolução for nula, o empréstimo está ativo.
+ */
+public class Emprestimo {
+    private long id;
+    private String usuarioId;
+    private String codigoItem;
+    private LocalDateTime dataEmprestimo;
+    private LocalDateTime dataDevolucao;
+
+    public Emprestimo(String usuarioId, String codigoItem) {
+        this(0, usuarioId, codigoItem, LocalDateTime.now(), null);
+    }
+
+    public Emprestimo(long id, String usuarioId, String codigoItem,
+                      LocalDateTime dataEmprestimo, LocalDateTime dataDevolucao) {
+        this.id = id;
+        this.usuarioId = usuarioId;
+        this.codigoItem = codigoItem;
+        this.dataEmprestimo = dataEmprestimo;
+        this.dataDevolucao = dataDevolucao;
+    }
+
+    public boolean isAtivo() {
+        return dataDevolucao == null;
+    }
+
+    // Getters e Setters
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getUsuarioId() {
+        return usuarioId;
+    }
+
+    public String getCodigoItem() {
+        return codigoItem;
+    }
+
+    public LocalDateTime getDataEmprestimo() {
+        return dataEmprestimo;
+    }
+
+    public LocalDateTime getDataDevolucao() {
+        return dataDevolucao;
+    }
+
+    public void setDataDevolucao(LocalDateTime dataDevolucao) {
+        this.dataDevolucao = dataDevolucao;
+    }
+
+    @Override
+    public String toString() {
+        return "Emprestimo{id=" + id + ", usuarioId=" + usuarioId + ", codigoItem=" + codigoItem
+            + ", dataEmprestimo=" + dataEmprestimo + ", dataDevolucao=" + dataDevolucao + "}";
+    }
+}
@@ -1,19 +1,37 @@
 package com.biblioteca.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * Classe abstrata que demonstra ABSTRAÇÃO (Model - MVC)
  * Define um contrato que todas as subclasses devem seguir
  */
 public abstract class ItemBiblioteca {
+    /** Versão de um item recém-criado, igual ao DEFAULT da coluna version */
+    public static final long VERSAO_INICIAL = 1;
+    
+    private static final VarHandle ESTADO;
+    static {
+        try {
+            ESTADO = MethodHandles.lookup().findVarHandle(ItemBiblioteca.class, "estado", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
     // ENCAPSULAMENTO: atributos privados com getters/setters
     private String titulo;
     private String codigo;
-    private boolean emprestado;
+    // Situacao e versao em um so campo (versao << 1 | emprestado), para que a
+    // troca atomica confira e altere as duas juntas. volatile: alterado por
+    // uma thread do servidor e lido por outras.
+    private volatile long estado;
     
     public ItemBiblioteca(String titulo, String codigo) {
         this.titulo = titulo;
         this.codigo = codigo;
-        this.emprestado = false;
+        this.estado = VERSAO_INICIAL << 1;
     }
     
     // Getters e Setters (ENCAPSULAMENTO)
@@ -30,11 +48,51 @@ public abstract class ItemBiblioteca {
     }
     
     public boolean isEmprestado() {
-        return emprestado;
+        return (estado & 1) != 0;
     }
     
     public void setEmprestado(boolean emprestado) {
-        this.emprestado = emprestado;
+        this.estado = (estado & ~1L) | (emprestado ? 1 : 0);
+    }
+    
+    /**
+     * Versao do item, incrementada a cada gravacao (controle otimista)
+     */
+    public long getVersao() {
+        return estado >>> 1;
+    }
+    
+    public void setVersao(long versao) {
+        this.estado = (versao << 1) | (estado & 1);
+    }
+    
+    /**
+     * Troca a situacao de forma atomica (compare-and-set): so altera se o
+     * item ainda estiver na situacao esperada. A troca incrementa a versao.
+     * @return true se a troca foi feita por esta chamada
+     */
+    public boolean trocarEmprestado(boolean esperado, boolean novo) {
+        return trocarEmprestado(esperado, novo, -1);
+    }
+    
+    /**
+     * Como trocarEmprestado(esperado, novo), exigindo tambem a versao informada
+     * @param versaoEsperada versao exigida, ou negativa para aceitar qualquer uma
+     */
+    public boolean trocarEmprestado(boolean esperado, boolean novo, long versaoEsperada) {
+        while (true) {
+            long atual = estado;
+            if (((atual & 1) != 0) != esperado) {
+                return false;
+            }
+            if (versaoEsperada >= 0 && (atual >>> 1) != versaoEsperada) {
+                return false;
+            }
+            long proximo = (((atual >>> 1) + 1) << 1) | (novo ? 1 : 0);
+            if (ESTADO.compareAndSet(this, atual, proximo)) {
+                return true;
+            }
+        }
     }
     
     // Método abstrato - ABSTRAÇÃO
@@ -0,0 +1,349 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.config.ConfigManager;
+import com.biblioteca.model.DVD;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Revista;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Decorator de cache para qualquer ItemRepository (padrao Decorator)
+ * Guarda o resultado de buscarPorCodigo em um cache LRU limitado pelo tamanho
+ * estimado dos itens em memoria, com TTL e cache negativo opcional para
+ * codigos inexistentes.
+ *
+ * Escritas feitas por este repositorio invalidam as entradas afetadas; as de
+ * outras instancias sobre o mesmo banco so aparecem quando a entrada expira,
+ * por isso o TTL deve ser curto. O cache guarda e entrega copias, ja que quem
+ * chama altera o item antes de atualizar.
+ * Listagens sao repassadas sem cache ao repositorio decorado.
+ */
+public class CachingItemRepository implements ItemRepository {
+
+    // Custo fixo aproximado de uma entrada (objetos, cabecalhos, no do mapa)
+    private static final int PESO_BASE = 128;
+
+    private final ItemRepository delegado;
+    private final long pesoMaximo;
+    private final long ttlNanos;
+    private final boolean cachearAusentes;
+    private final Map<String, Entrada> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long pesoAtual;
+    // Incrementado a cada invalidacao: cargas iniciadas antes dela nao entram no cache
+    private long geracao;
+
+    private long acertos;
+    private long acertosAusentes;
+    private long falhas;
+    private long despejos;
+
+    /**
+     * Cria o cache com os limites de application.properties (cache.itens.*)
+     */
+    public CachingItemRepository(ItemRepository delegado) {
+        this(delegado,
+             ConfigManager.getInstance().getInt("cache.itens.peso.maximo.kb", 16384) * 1024L,
+             ConfigManager.getInstance().getInt("cache.itens.ttl.ms", 5000),
+             ConfigManager.getInstance().getBoolean("cache.itens.cachear.ausentes", false));
+    }
+
+    /**
+     * @param delegado repositorio decorado
+     * @param pesoMaximo tamanho maximo estimado do cache em bytes
+     * @param ttlMs tempo de vida das entradas (0 = sem expiracao)
+     * @param cachearAusentes se codigos inexistentes tambem sao guardados
+     */
+    public CachingItemRepository(ItemRepository delegado, long pesoMaximo, long ttlMs, boolean cachearAusentes) {
+        this.delegado = delegado;
+        this.pesoMaximo = pesoMaximo;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.cachearAusentes = cachearAusentes;
+    }
+
+    @Override
+    public Optional<ItemBiblioteca> buscarPorCodigo(String codigo) {
+        long geracaoCarga;
+        synchronized (this) {
+            Entrada entrada = cache.get(codigo);
+            if (entrada != null) {
+                if (!entrada.expirada()) {
+                    if (entrada.item == null) {
+                        acertosAusentes++;
+                        return Optional.empty();
+                    }
+                    acertos++;
+                    return Optional.of(copiar(entrada.item));
+                }
+                removerEntrada(codigo);
+            }
+            falhas++;
+            geracaoCarga = geracao;
+        }
+
+        Optional<ItemBiblioteca> resultado = delegado.buscarPorCodigo(codigo);
+        if (resultado.isPresent() || cachearAusentes) {
+            guardar(codigo, resultado.map(CachingItemRepository::copiar).orElse(null), geracaoCarga);
+        }
+        return resultado;
+    }
+
+    @Override
+    public void salvar(ItemBiblioteca item) {
+        try {
+            delegado.salvar(item);
+        } finally {
+            invalidar(item == null ? null : item.getCodigo());
+        }
+    }
+
+    @Override
+    public void atualizar(ItemBiblioteca item) {
+        try {
+            delegado.atualizar(item);
+        } finally {
+            invalidar(item == null ? null : item.getCodigo());
+        }
+    }
+
+    @Override
+    public ResultadoTransicao tentarEmprestar(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        try {
+            return delegado.tentarEmprestar(codigo, versaoEsperada, vinculada);
+        } finally {
+            invalidar(codigo);
+        }
+    }
+    
+    @Override
+    public ResultadoTransicao tentarDevolver(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        try {
+            return delegado.tentarDevolver(codigo, versaoEsperada, vinculada);
+        } finally {
+            invalidar(codigo);
+        }
+    }
+    
+    @Override
+    public boolean remover(String codigo, long versaoEsperada) {
+        try {
+            return delegado.remover(codigo, versaoEsperada);
+        } finally {
+            invalidar(codigo);
+        }
+    }
+
+    @Override
+    public ResultadoLote salvarEmLote(Collection<? extends ItemBiblioteca> itens, int tamanhoLote) {
+        try {
+            return delegado.salvarEmLote(itens, tamanhoLote);
+        } finally {
+            synchronized (this) {
+                for (ItemBiblioteca item : itens) {
+                    if (item != null && item.getCodigo() != null) {
+                        removerEntrada(item.getCodigo());
+                    }
+                }
+                geracao++;
+            }
+        }
+    }
+
+    // Listagens: repassadas sem cache
+
+    @Override
+    public List<ItemBiblioteca> buscarTodos() {
+        return delegado.buscarTodos();
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarPagina(String apos, int limite) {
+        return delegado.buscarPagina(apos, limite);
+    }
+
+    @Override
+    public Stream<ItemBiblioteca> streamTodos() {
+        return delegado.streamTodos();
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarPorTipo(String tipo) {
+        return delegado.buscarPorTipo(tipo);
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarTexto(String consulta, int limite) {
+        return delegado.buscarTexto(consulta, limite);
+    }
+    
+    @Override
+    public List<ItemBiblioteca> buscarDisponiveis() {
+        return delegado.buscarDisponiveis();
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarEmprestados() {
+        return delegado.buscarEmprestados();
+    }
+
+    @Override
+    public EstatisticasAcervo estatisticasAcervo() {
+        return delegado.estatisticasAcervo();
+    }
+
+    /**
+     * Descarta todo o conteudo do cache
+     */
+    public synchronized void limpar() {
+        cache.clear();
+        pesoAtual = 0;
+        geracao++;
+    }
+
+    private synchronized void invalidar(String codigo) {
+        if (codigo != null) {
+            removerEntrada(codigo);
+        }
+        geracao++;
+    }
+
+    private synchronized void guardar(String codigo, ItemBiblioteca item, long geracaoCarga) {
+        if (geracaoCarga != geracao) {
+            // Houve escrita durante a carga: o valor lido pode estar desatualizado
+            return;
+        }
+        Entrada entrada = new Entrada(item, estimarPeso(codigo, item),
+            ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0);
+        if (entrada.peso > pesoMaximo) {
+            return;
+        }
+
+        removerEntrada(codigo);
+        cache.put(codigo, entrada);
+        pesoAtual += entrada.peso;
+
+        // Despeja os menos usados recentemente ate caber no limite
+        Iterator<Entrada> it = cache.values().iterator();
+        while (pesoAtual > pesoMaximo && it.hasNext()) {
+            Entrada antiga = it.next();
+            it.remove();
+            pesoAtual -= antiga.peso;
+            despejos++;
+        }
+    }
+
+    private void removerEntrada(String codigo) {
+        Entrada removida = cache.remove(codigo);
+        if (removida != null) {
+            pesoAtual -= removida.peso;
+        }
+    }
+
+    /**
+     * Estimativa do espaco ocupado por um item (2 bytes por caractere)
+     */
+    private static int estimarPeso(String codigo, ItemBiblioteca item) {
+        int caracteres = codigo.length();
+        if (item != null) {
+            caracteres += tamanho(item.getTitulo());
+            if (item instanceof Livro) {
+                Livro livro = (Livro) item;
+                caracteres += tamanho(livro.getAutor()) + tamanho(livro.getIsbn());
+            } else if (item instanceof Revista) {
+                Revista revista = (Revista) item;
+                caracteres += tamanho(revista.getMesAno()) + tamanho(revista.getEditora());
+            } else if (item instanceof DVD) {
+                DVD dvd = (DVD) item;
+                caracteres += tamanho(dvd.getDiretor()) + tamanho(dvd.getGenero());
+            }
+        }
+        return PESO_BASE + 2 * caracteres;
+    }
+
+    /**
+     * Copia independente do item, com a mesma situacao e versao
+     */
+    private static ItemBiblioteca copiar(ItemBiblioteca item) {
+        ItemBiblioteca copia;
+        if (item instanceof Livro) {
+            Livro livro = (Livro) item;
+            copia = new Livro(livro.getTitulo(), livro.getCodigo(), livro.getAutor(),
+                livro.getNumeroPaginas(), livro.getIsbn());
+        } else if (item instanceof Revista) {
+            Revista revista = (Revista) item;
+            copia = new Revista(revista.getTitulo(), revista.getCodigo(), revista.getEdicao(),
+                revista.getMesAno(), revista.getEditora());
+        } else if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            copia = new DVD(dvd.getTitulo(), dvd.getCodigo(), dvd.getDiretor(),
+                dvd.getDuracaoMinutos(), dvd.getGenero());
+        } else {
+            throw new IllegalArgumentException("Tipo de item nao suportado pelo cache: " + item.getClass().getName());
+        }
+        copia.setEmprestado(item.isEmprestado());
+        copia.setVersao(item.getVersao());
+        return copia;
+    }
+
+    private static int tamanho(String texto) {
+        return texto == null ? 0 : texto.length();
+    }
+
+    // Estatisticas
+
+    public synchronized long getAcertos() {
+        return acertos + acertosAusentes;
+    }
+
+    public synchronized long getFalhas() {
+        return falhas;
+    }
+
+    public synchronized double getTaxaAcerto() {
+        long total = acertos + acertosAusentes + falhas;
+        return total == 0 ? 0.0 : (double) (acertos + acertosAusentes) / total;
+    }
+
+    /**
+     * Retorna um retrato das estatisticas do cache
+     */
+    public synchronized Map<String, Object> estatisticas() {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("entradas", cache.size());
+        dados.put("pesoBytes", pesoAtual);
+        dados.put("pesoMaximoBytes", pesoMaximo);
+        dados.put("acertos", acertos);
+        dados.put("acertosAusentes", acertosAusentes);
+        dados.put("falhas", falhas);
+        dados.put("despejos", despejos);
+        dados.put("taxaAcerto", String.format("%.3f", getTaxaAcerto()));
+        return dados;
+    }
+
+    /**
+     * Valor em cache: item encontrado ou null para codigo inexistente
+     */
+    private static class Entrada {
+        final ItemBiblioteca item;
+        final int peso;
+        final long expiraEm;
+
+        Entrada(ItemBiblioteca item, int peso, long expiraEm) {
+            this.item = item;
+            this.peso = peso;
+            this.expiraEm = expiraEm;
+        }
+
+        boolean expirada() {
+            return expiraEm != 0 && System.nanoTime() - expiraEm > 0;
+        }
+    }
+}
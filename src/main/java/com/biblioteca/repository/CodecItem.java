@@ -0,0 +1,96 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.DVD;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Revista;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Formato binario de um item, usado pelos arquivos de persistencia em memoria
+ * Grava o tipo, os campos comuns (codigo, titulo, situacao e versao) e os
+ * campos do subtipo, nessa ordem. Textos nulos sao marcados por um byte antes
+ * do texto, ja que writeUTF nao aceita null.
+ */
+final class CodecItem {
+
+    static final byte LIVRO = 1;
+    static final byte REVISTA = 2;
+    static final byte DVD = 3;
+
+    private CodecItem() {
+    }
+
+    static void escrever(DataOutput saida, ItemBiblioteca item) throws IOException {
+        if (item instanceof Livro) {
+            Livro livro = (Livro) item;
+            saida.writeByte(LIVRO);
+            escreverComuns(saida, item);
+            escreverTexto(saida, livro.getAutor());
+            saida.writeInt(livro.getNumeroPaginas());
+            escreverTexto(saida, livro.getIsbn());
+        } else if (item instanceof Revista) {
+            Revista revista = (Revista) item;
+            saida.writeByte(REVISTA);
+            escreverComuns(saida, item);
+            saida.writeInt(revista.getEdicao());
+            escreverTexto(saida, revista.getMesAno());
+            escreverTexto(saida, revista.getEditora());
+        } else if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            saida.writeByte(DVD);
+            escreverComuns(saida, item);
+            escreverTexto(saida, dvd.getDiretor());
+            saida.writeInt(dvd.getDuracaoMinutos());
+            escreverTexto(saida, dvd.getGenero());
+        } else {
+            throw new IllegalArgumentException("Tipo de item nao suportado: " + item.getTipo());
+        }
+    }
+
+    static ItemBiblioteca ler(DataInput entrada) throws IOException {
+        byte tipo = entrada.readByte();
+        String codigo = lerTexto(entrada);
+        String titulo = lerTexto(entrada);
+        boolean emprestado = entrada.readBoolean();
+        long versao = entrada.readLong();
+
+        ItemBiblioteca item;
+        switch (tipo) {
+            case LIVRO:
+                item = new Livro(titulo, codigo, lerTexto(entrada), entrada.readInt(), lerTexto(entrada));
+                break;
+            case REVISTA:
+                item = new Revista(titulo, codigo, entrada.readInt(), lerTexto(entrada), lerTexto(entrada));
+                break;
+            case DVD:
+                item = new DVD(titulo, codigo, lerTexto(entrada), entrada.readInt(), lerTexto(entrada));
+                break;
+            default:
+                throw new IOException("Tipo de item desconhecido: " + tipo);
+        }
+        item.setEmprestado(emprestado);
+        item.setVersao(versao);
+        return item;
+    }
+
+    private static void escreverComuns(DataOutput saida, ItemBiblioteca item) throws IOException {
+        escreverTexto(saida, item.getCodigo());
+        escreverTexto(saida, item.getTitulo());
+        saida.writeBoolean(item.isEmprestado());
+        saida.writeLong(item.getVersao());
+    }
+
+    static void escreverTexto(DataOutput saida, String texto) throws IOException {
+        saida.writeBoolean(texto != null);
+        if (texto != null) {
+            saida.writeUTF(texto);
+        }
+    }
+
+    static String lerTexto(DataInput entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Emprestimo;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Interface do repositório de empréstimos
+ * Cada item tem no máximo um empréstimo ativo (sem data de devolução).
+ */
+public interface EmprestimoRepository {
+
+    /**
+     * Grava um novo empréstimo ativo e preenche o ID gerado
+     * @throws IllegalStateException se o item ja tiver um emprestimo ativo
+     */
+    void registrar(Emprestimo emprestimo);
+
+    /**
+     * Registro do emprestimo para gravar junto com a troca de situacao do item
+     * (ItemRepository.tentarEmprestar). A gravacao lanca IllegalStateException
+     * se o item ja tiver um emprestimo ativo, o que desfaz a troca.
+     */
+    GravacaoVinculada registroVinculado(Emprestimo emprestimo);
+
+    /**
+     * Encerramento do emprestimo ativo do item para gravar junto com a devolucao
+     * (ItemRepository.tentarDevolver). verificar recebe o emprestimo ativo, ou
+     * vazio se nao houver registro, antes de qualquer escrita; uma excecao
+     * lancada por ele desfaz a devolucao.
+     */
+    GravacaoVinculada encerramentoVinculado(String codigoItem, LocalDateTime dataDevolucao,
+                                            Consumer<Optional<Emprestimo>> verificar);
+
+    Optional<Emprestimo> buscarAtivoPorItem(String codigoItem);
+
+    /**
+     * Emprestimos ativos do usuario, do mais recente para o mais antigo
+     */
+    List<Emprestimo> buscarAtivosPorUsuario(String usuarioId);
+
+    /**
+     * Registra a devolucao de um emprestimo ativo
+     * @return false se o emprestimo nao existir ou ja estiver encerrado
+     */
+    boolean encerrar(long id, LocalDateTime dataDevolucao);
+
+    /**
+     * Quantidade de emprestimos ativos de cada usuario que tem algum.
+     * Usada so na inicializacao, para montar os contadores em memoria.
+     */
+    Map<String, Integer> contarAtivosPorUsuario();
+}
@@ -0,0 +1,96 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Emprestimo;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Implementação em memória do repositório de empréstimos
+ * Mantem os emprestimos ativos indexados por item e por usuario; o indice
+ * por item tambem garante um unico emprestimo ativo por item (putIfAbsent).
+ */
+public class EmprestimoRepositoryImpl implements EmprestimoRepository {
+    private final ConcurrentMap<Long, Emprestimo> emprestimos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> ativoPorItem = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Long>> ativosPorUsuario = new ConcurrentHashMap<>();
+    private final AtomicLong sequencia = new AtomicLong();
+
+    @Override
+    public void registrar(Emprestimo emprestimo) {
+        long id = sequencia.incrementAndGet();
+        emprestimo.setId(id);
+        // Publicado no mapa antes do indice, para quem achar o ID achar o registro
+        emprestimos.put(id, emprestimo);
+        if (ativoPorItem.putIfAbsent(emprestimo.getCodigoItem(), id) != null) {
+            emprestimos.remove(id);
+            throw new IllegalStateException("Item ja possui emprestimo ativo: " + emprestimo.getCodigoItem());
+        }
+        ativosPorUsuario.computeIfAbsent(emprestimo.getUsuarioId(), u -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    /**
+     * Em memoria a gravacao roda sob a trava do item, que serializa as trocas
+     */
+    @Override
+    public GravacaoVinculada registroVinculado(Emprestimo emprestimo) {
+        return conn -> registrar(emprestimo);
+    }
+
+    @Override
+    public GravacaoVinculada encerramentoVinculado(String codigoItem, LocalDateTime dataDevolucao,
+                                                   Consumer<Optional<Emprestimo>> verificar) {
+        return conn -> {
+            Optional<Emprestimo> ativo = buscarAtivoPorItem(codigoItem);
+            verificar.accept(ativo);
+            ativo.ifPresent(emprestimo -> encerrar(emprestimo.getId(), dataDevolucao));
+        };
+    }
+
+    @Override
+    public Optional<Emprestimo> buscarAtivoPorItem(String codigoItem) {
+        Long id = ativoPorItem.get(codigoItem);
+        return id == null ? Optional.empty() : Optional.ofNullable(emprestimos.get(id));
+    }
+
+    @Override
+    public List<Emprestimo> buscarAtivosPorUsuario(String usuarioId) {
+        Set<Long> ids = ativosPorUsuario.getOrDefault(usuarioId, Collections.emptySet());
+        return ids.stream()
+            .map(emprestimos::get)
+            .filter(e -> e != null && e.isAtivo())
+            .sorted(Comparator.comparing(Emprestimo::getDataEmprestimo)
+                .thenComparing(Emprestimo::getId).reversed())
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean encerrar(long id, LocalDateTime dataDevolucao) {
+        Emprestimo emprestimo = emprestimos.get(id);
+        // Quem tira o emprestimo do indice por item e o unico a encerra-lo
+        if (emprestimo == null || !ativoPorItem.remove(emprestimo.getCodigoItem(), id)) {
+            return false;
+        }
+        emprestimo.setDataDevolucao(dataDevolucao);
+        Set<Long> doUsuario = ativosPorUsuario.get(emprestimo.getUsuarioId());
+        if (doUsuario != null) {
+            doUsuario.remove(id);
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Integer> contarAtivosPorUsuario() {
+        Map<String, Integer> contagens = new HashMap<>();
+        for (Map.Entry<String, Set<Long>> usuario : ativosPorUsuario.entrySet()) {
+            if (!usuario.getValue().isEmpty()) {
+                contagens.put(usuario.getKey(), usuario.getValue().size());
+            }
+        }
+        return contagens;
+    }
+}
@@ -0,0 +1,186 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.config.DatabaseConfig;
+import com.biblioteca.model.Emprestimo;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Implementação do repositório de empréstimos usando SQLite
+ * As consultas de emprestimos ativos usam os indices por usuario
+ * (usuario_id, data_devolucao) e por item (indice unico parcial dos ativos).
+ * As escritas passam pelo escritor unico; as vinculadas a troca de situacao
+ * de um item rodam na mesma operacao do escritor que altera o item.
+ */
+public class EmprestimoRepositorySQLite implements EmprestimoRepository {
+
+    // Mesmo formato do CURRENT_TIMESTAMP do SQLite, com milissegundos: ordena como texto
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // Codigo de erro do SQLite para violacao de restricao (SQLITE_CONSTRAINT)
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    private static final String SQL_SELECT_EMPRESTIMO =
+        "SELECT id, usuario_id, item_codigo, data_emprestimo, data_devolucao FROM emprestimos";
+
+    @Override
+    public void registrar(Emprestimo emprestimo) {
+        ItemRepositorySQLite.aguardarCommit(
+            DatabaseConfig.getEscritor().submeter(conn -> inserir(conn, emprestimo)), "Erro ao registrar emprestimo");
+    }
+
+    @Override
+    public GravacaoVinculada registroVinculado(Emprestimo emprestimo) {
+        return naTransacaoOuNoEscritor(conn -> inserir(conn, emprestimo), "Erro ao registrar emprestimo");
+    }
+
+    @Override
+    public GravacaoVinculada encerramentoVinculado(String codigoItem, LocalDateTime dataDevolucao,
+                                                   Consumer<Optional<Emprestimo>> verificar) {
+        return naTransacaoOuNoEscritor(conn -> {
+            Optional<Emprestimo> ativo = buscarAtivoPorItem(conn, codigoItem);
+            verificar.accept(ativo);
+            if (ativo.isPresent()) {
+                atualizarDevolucao(conn, ativo.get().getId(), dataDevolucao);
+            }
+        }, "Erro ao encerrar emprestimo");
+    }
+
+    /**
+     * Com a conexao da transacao do item, grava nela; sem conexao (acervo em
+     * memoria com emprestimos no SQLite) grava em uma operacao propria do
+     * escritor e aguarda o commit
+     */
+    private static GravacaoVinculada naTransacaoOuNoEscritor(GravacaoVinculada gravacao, String mensagemErro) {
+        return conn -> {
+            if (conn != null) {
+                gravacao.gravar(conn);
+            } else {
+                ItemRepositorySQLite.aguardarCommit(DatabaseConfig.getEscritor().submeter(gravacao::gravar), mensagemErro);
+            }
+        };
+    }
+
+    private static void inserir(Connection conn, Emprestimo emprestimo) throws SQLException {
+        String sql = "INSERT INTO emprestimos (usuario_id, item_codigo, data_emprestimo) VALUES (?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, emprestimo.getUsuarioId());
+            pstmt.setString(2, emprestimo.getCodigoItem());
+            pstmt.setString(3, formatar(emprestimo.getDataEmprestimo()));
+            pstmt.executeUpdate();
+
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    emprestimo.setId(rs.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() == SQLITE_CONSTRAINT) {
+                throw new IllegalStateException("Item ja possui emprestimo ativo: " + emprestimo.getCodigoItem(), e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Emprestimo> buscarAtivoPorItem(String codigoItem) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return buscarAtivoPorItem(conn, codigoItem);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar emprestimo do item: " + e.getMessage(), e);
+        }
+    }
+
+    private Optional<Emprestimo> buscarAtivoPorItem(Connection conn, String codigoItem) throws SQLException {
+        String sql = SQL_SELECT_EMPRESTIMO + " WHERE item_codigo = ? AND data_devolucao IS NULL";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, codigoItem);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? Optional.of(construirEmprestimo(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public List<Emprestimo> buscarAtivosPorUsuario(String usuarioId) {
+        String sql = SQL_SELECT_EMPRESTIMO
+            + " WHERE usuario_id = ? AND data_devolucao IS NULL ORDER BY data_emprestimo DESC, id DESC";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, usuarioId);
+            List<Emprestimo> emprestimos = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    emprestimos.add(construirEmprestimo(rs));
+                }
+            }
+            return emprestimos;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar emprestimos do usuario: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean encerrar(long id, LocalDateTime dataDevolucao) {
+        boolean[] encerrado = new boolean[1];
+        ItemRepositorySQLite.aguardarCommit(DatabaseConfig.getEscritor().submeter(
+            conn -> encerrado[0] = atualizarDevolucao(conn, id, dataDevolucao)), "Erro ao encerrar emprestimo");
+        return encerrado[0];
+    }
+
+    private static boolean atualizarDevolucao(Connection conn, long id, LocalDateTime dataDevolucao) throws SQLException {
+        String sql = "UPDATE emprestimos SET data_devolucao = ? WHERE id = ? AND data_devolucao IS NULL";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, formatar(dataDevolucao));
+            pstmt.setLong(2, id);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> contarAtivosPorUsuario() {
+        String sql = "SELECT usuario_id, COUNT(*) FROM emprestimos WHERE data_devolucao IS NULL GROUP BY usuario_id";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            Map<String, Integer> contagens = new HashMap<>();
+            while (rs.next()) {
+                contagens.put(rs.getString(1), rs.getInt(2));
+            }
+            return contagens;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao contar emprestimos ativos: " + e.getMessage(), e);
+        }
+    }
+
+    private Emprestimo construirEmprestimo(ResultSet rs) throws SQLException {
+        return new Emprestimo(
+            rs.getLong("id"),
+            rs.getString("usuario_id"),
+            rs.getString("item_codigo"),
+            ler(rs.getString("data_emprestimo")),
+            ler(rs.getString("data_devolucao"))
+        );
+    }
+
+    private static String formatar(LocalDateTime data) {
+        return data == null ? null : FORMATO_DATA.format(data);
+    }
+
+    private static LocalDateTime ler(String data) {
+        return data == null ? null : LocalDateTime.parse(data, FORMATO_DATA);
+    }
+}
@@ -0,0 +1,84 @@
+package com.biblioteca.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contagens agregadas do acervo, por tipo e situacao (tipo x disponivel/emprestado)
+ * Calculadas pelo repositorio sem carregar os itens.
+ */
+public class EstatisticasAcervo {
+
+    /** Tipos sempre presentes nas contagens, mesmo com zero itens */
+    public static final List<String> TIPOS = Collections.unmodifiableList(Arrays.asList("LIVRO", "REVISTA", "DVD"));
+
+    private final Map<String, Long> disponiveisPorTipo;
+    private final Map<String, Long> emprestadosPorTipo;
+    private final Map<String, Long> porTipo;
+    private final long disponiveis;
+    private final long emprestados;
+
+    /**
+     * @param disponiveisPorTipo itens disponiveis de cada tipo; tipos ausentes contam como zero
+     * @param emprestadosPorTipo itens emprestados de cada tipo; tipos ausentes contam como zero
+     */
+    public EstatisticasAcervo(Map<String, Long> disponiveisPorTipo, Map<String, Long> emprestadosPorTipo) {
+        this.disponiveisPorTipo = comTodosOsTipos(disponiveisPorTipo);
+        this.emprestadosPorTipo = comTodosOsTipos(emprestadosPorTipo);
+        Map<String, Long> contagens = new LinkedHashMap<>(this.disponiveisPorTipo);
+        this.emprestadosPorTipo.forEach((tipo, quantidade) -> contagens.merge(tipo, quantidade, Long::sum));
+        this.porTipo = Collections.unmodifiableMap(contagens);
+        this.disponiveis = somar(this.disponiveisPorTipo);
+        this.emprestados = somar(this.emprestadosPorTipo);
+    }
+
+    private static Map<String, Long> comTodosOsTipos(Map<String, Long> parcial) {
+        Map<String, Long> contagens = new LinkedHashMap<>();
+        for (String tipo : TIPOS) {
+            contagens.put(tipo, 0L);
+        }
+        contagens.putAll(parcial);
+        return Collections.unmodifiableMap(contagens);
+    }
+
+    private static long somar(Map<String, Long> contagens) {
+        long soma = 0;
+        for (long quantidade : contagens.values()) {
+            soma += quantidade;
+        }
+        return soma;
+    }
+
+    public long getTotal() {
+        return disponiveis + emprestados;
+    }
+
+    public long getDisponiveis() {
+        return disponiveis;
+    }
+
+    public long getEmprestados() {
+        return emprestados;
+    }
+
+    public Map<String, Long> getPorTipo() {
+        return porTipo;
+    }
+
+    public Map<String, Long> getDisponiveisPorTipo() {
+        return disponiveisPorTipo;
+    }
+
+    public Map<String, Long> getEmprestadosPorTipo() {
+        return emprestadosPorTipo;
+    }
+
+    @Override
+    public String toString() {
+        return "EstatisticasAcervo{total=" + getTotal() + ", disponiveis=" + disponiveis
+            + ", emprestados=" + emprestados + ", porTipo=" + porTipo + "}";
+    }
+}
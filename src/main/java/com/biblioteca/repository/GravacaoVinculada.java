@@ -0,0 +1,25 @@
+package com.biblioteca.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Gravacao feita na mesma unidade da troca de situacao de um item
+ * (ItemRepository.tentarEmprestar/tentarDevolver)
+ *
+ * No SQLite roda na mesma operacao do escritor unico que altera o item, com
+ * a conexao da transacao; nos repositorios em memoria roda sob a trava do
+ * item, sem conexao. Se lancar excecao, a troca e desfeita e a excecao chega
+ * a quem pediu a troca.
+ */
+@FunctionalInterface
+public interface GravacaoVinculada {
+
+    /** Nada a gravar alem da troca */
+    GravacaoVinculada NENHUMA = conn -> { };
+
+    /**
+     * @param conn conexao da transacao do escritor unico, ou null em memoria
+     */
+    void gravar(Connection conn) throws SQLException;
+}
@@ -0,0 +1,266 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ItemBiblioteca;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Indice invertido em memoria para a busca textual
+ * Cada termo (normalizado por TextoBusca) aponta para uma lista ordenada dos
+ * ordinais dos itens que o contem, com os campos onde ele aparece.
+ *
+ * Consultas com varios termos intersectam as listas a partir da menor, com
+ * busca exponencial nas maiores: o custo acompanha o tamanho do resultado e
+ * nao o tamanho do acervo. Termos completos usam a lista exata; so o ultimo
+ * termo da consulta e expandido como prefixo (ver TextoBusca.ehPrefixo). Nao e thread-safe: o repositorio controla o acesso
+ * com uma trava de leitura/escrita.
+ */
+final class IndiceInvertido {
+
+    private final NavigableMap<String, Postagens> postagens = new TreeMap<>();
+    // Termos indexados de cada ordinal (termo -> campos), para desindexar sem reler o item
+    private final Map<Integer, Map<String, Integer>> termosPorOrdinal = new HashMap<>();
+
+    /**
+     * Indexa (ou reindexa) sob o ordinal os termos obtidos com extrairTermos()
+     */
+    void indexar(int ordinal, Map<String, Integer> novos) {
+        if (indexado(ordinal, novos)) {
+            return;
+        }
+        remover(ordinal);
+        for (Map.Entry<String, Integer> termo : novos.entrySet()) {
+            postagens.computeIfAbsent(termo.getKey(), t -> new Postagens())
+                .adicionar(ordinal, termo.getValue());
+        }
+        termosPorOrdinal.put(ordinal, novos);
+    }
+
+    /**
+     * Indica se o ordinal ja esta indexado com exatamente estes termos. Caso
+     * comum: emprestimo e devolucao nao alteram os campos pesquisaveis.
+     */
+    boolean indexado(int ordinal, Map<String, Integer> termos) {
+        return termos.equals(termosPorOrdinal.get(ordinal));
+    }
+
+    /**
+     * Retira o ordinal de todas as listas em que aparece
+     */
+    void remover(int ordinal) {
+        Map<String, Integer> antigos = termosPorOrdinal.remove(ordinal);
+        if (antigos == null) {
+            return;
+        }
+        for (String termo : antigos.keySet()) {
+            Postagens lista = postagens.get(termo);
+            if (lista != null && lista.remover(ordinal) && lista.tamanho == 0) {
+                postagens.remove(termo);
+            }
+        }
+    }
+
+    /**
+     * Itens que contem todos os termos
+     * @param termos termos ja normalizados; o ultimo pode casar como prefixo
+     * @return acertos em ordem de ordinal, com a relevancia de cada um
+     */
+    List<Acerto> buscar(List<String> termos) {
+        List<Postagens> listas = new ArrayList<>(termos.size());
+        for (int i = 0; i < termos.size(); i++) {
+            Postagens lista = TextoBusca.ehPrefixo(termos, i)
+                ? comPrefixo(termos.get(i))
+                : postagens.get(termos.get(i));
+            if (lista == null || lista.tamanho == 0) {
+                return new ArrayList<>();
+            }
+            listas.add(lista);
+        }
+        listas.sort((a, b) -> Integer.compare(a.tamanho, b.tamanho));
+
+        // Candidatos partem da menor lista e so podem diminuir
+        Postagens menor = listas.get(0);
+        int quantidade = menor.tamanho;
+        int[] candidatos = Arrays.copyOf(menor.ordinais, quantidade);
+        double[] pontos = new double[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            pontos[i] = peso(menor.campos[i]);
+        }
+
+        for (int l = 1; l < listas.size() && quantidade > 0; l++) {
+            Postagens lista = listas.get(l);
+            int mantidos = 0;
+            int posicao = 0;
+            for (int i = 0; i < quantidade && posicao < lista.tamanho; i++) {
+                int indice = lista.localizar(candidatos[i], posicao);
+                if (indice >= 0) {
+                    candidatos[mantidos] = candidatos[i];
+                    pontos[mantidos] = pontos[i] + peso(lista.campos[indice]);
+                    mantidos++;
+                    posicao = indice + 1;
+                } else {
+                    posicao = -indice - 1;
+                }
+            }
+            quantidade = mantidos;
+        }
+
+        List<Acerto> acertos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            acertos.add(new Acerto(candidatos[i], pontos[i]));
+        }
+        return acertos;
+    }
+
+    /**
+     * Uniao das listas de todos os termos indexados que comecam com o prefixo.
+     * Intercalacao em k vias com um heap: cada postagem entra e sai do heap uma
+     * vez, em vez de ser recopiada a cada uniao de duas listas.
+     */
+    private Postagens comPrefixo(String prefixo) {
+        Map<String, Postagens> faixa = postagens.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false);
+        if (faixa.size() <= 1) {
+            return faixa.isEmpty() ? null : faixa.values().iterator().next();
+        }
+
+        // Cursor {lista, posicao}, ordenado pelo ordinal atual de cada lista
+        List<Postagens> listas = new ArrayList<>(faixa.values());
+        PriorityQueue<int[]> heap = new PriorityQueue<>(listas.size(),
+            (a, b) -> Integer.compare(listas.get(a[0]).ordinais[a[1]], listas.get(b[0]).ordinais[b[1]]));
+        int total = 0;
+        for (int l = 0; l < listas.size(); l++) {
+            heap.add(new int[] {l, 0});
+            total += listas.get(l).tamanho;
+        }
+
+        Postagens uniao = new Postagens();
+        uniao.ordinais = new int[total];
+        uniao.campos = new int[total];
+        while (!heap.isEmpty()) {
+            int[] cursor = heap.poll();
+            Postagens lista = listas.get(cursor[0]);
+            int ordinal = lista.ordinais[cursor[1]];
+            // O mesmo item em varios termos da faixa: combina os campos
+            if (uniao.tamanho > 0 && uniao.ordinais[uniao.tamanho - 1] == ordinal) {
+                uniao.campos[uniao.tamanho - 1] |= lista.campos[cursor[1]];
+            } else {
+                uniao.ordinais[uniao.tamanho] = ordinal;
+                uniao.campos[uniao.tamanho] = lista.campos[cursor[1]];
+                uniao.tamanho++;
+            }
+            if (++cursor[1] < lista.tamanho) {
+                heap.add(cursor);
+            }
+        }
+        return uniao;
+    }
+
+    /**
+     * Maior peso entre os campos marcados
+     */
+    private static double peso(int campos) {
+        double maior = 0;
+        for (int i = 0; i < TextoBusca.PESOS.length; i++) {
+            if ((campos & (1 << i)) != 0) {
+                maior = Math.max(maior, TextoBusca.PESOS[i]);
+            }
+        }
+        return maior;
+    }
+
+    /**
+     * Termos do item, cada um com a mascara dos campos em que aparece.
+     * Nao depende do indice, entao pode ser calculado fora da trava.
+     */
+    static Map<String, Integer> extrairTermos(ItemBiblioteca item) {
+        Map<String, Integer> termos = new HashMap<>();
+        String[] campos = TextoBusca.campos(item);
+        for (int i = 0; i < campos.length; i++) {
+            for (String termo : TextoBusca.termos(campos[i])) {
+                termos.merge(termo, 1 << i, (a, b) -> a | b);
+            }
+        }
+        return termos;
+    }
+
+    int getTotalTermos() {
+        return postagens.size();
+    }
+
+    /**
+     * Item encontrado e sua relevancia
+     */
+    static final class Acerto {
+        final int ordinal;
+        final double pontos;
+
+        Acerto(int ordinal, double pontos) {
+            this.ordinal = ordinal;
+            this.pontos = pontos;
+        }
+    }
+
+    /**
+     * Lista de postagens de um termo: ordinais crescentes e, em paralelo,
+     * a mascara dos campos onde o termo aparece em cada item
+     */
+    private static final class Postagens {
+        int[] ordinais = new int[4];
+        int[] campos = new int[4];
+        int tamanho;
+
+        void adicionar(int ordinal, int mascara) {
+            // Ordinais novos costumam ser os maiores: insercao no fim
+            int indice = tamanho == 0 || ordinais[tamanho - 1] < ordinal
+                ? -tamanho - 1
+                : Arrays.binarySearch(ordinais, 0, tamanho, ordinal);
+            if (indice >= 0) {
+                campos[indice] |= mascara;
+                return;
+            }
+            indice = -indice - 1;
+            if (tamanho == ordinais.length) {
+                ordinais = Arrays.copyOf(ordinais, tamanho * 2);
+                campos = Arrays.copyOf(campos, tamanho * 2);
+            }
+            System.arraycopy(ordinais, indice, ordinais, indice + 1, tamanho - indice);
+            System.arraycopy(campos, indice, campos, indice + 1, tamanho - indice);
+            ordinais[indice] = ordinal;
+            campos[indice] = mascara;
+            tamanho++;
+        }
+
+        boolean remover(int ordinal) {
+            int indice = Arrays.binarySearch(ordinais, 0, tamanho, ordinal);
+            if (indice < 0) {
+                return false;
+            }
+            System.arraycopy(ordinais, indice + 1, ordinais, indice, tamanho - indice - 1);
+            System.arraycopy(campos, indice + 1, campos, indice, tamanho - indice - 1);
+            tamanho--;
+            return true;
+        }
+
+        /**
+         * Busca exponencial a partir de desde: barata quando os ordinais
+         * procurados sao crescentes e esparsos nesta lista
+         * @return indice do ordinal, ou -(ponto de insercao) - 1
+         */
+        int localizar(int ordinal, int desde) {
+            int passo = 1;
+            int limite = desde;
+            while (limite < tamanho && ordinais[limite] < ordinal) {
+                desde = limite;
+                limite += passo;
+                passo <<= 1;
+            }
+            return Arrays.binarySearch(ordinais, desde, Math.min(limite + 1, tamanho), ordinal);
+        }
+    }
+}
@@ -1,20 +1,136 @@
 package com.biblioteca.repository;
 
+import com.biblioteca.config.ConfigManager;
 import com.biblioteca.model.ItemBiblioteca;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interface Repository - padrão Repository
  * Define o contrato para persistência de dados
  */
 public interface ItemRepository {
+    
+    /** Versao esperada que desliga a verificacao otimista */
+    long QUALQUER_VERSAO = -1;
+    
     void salvar(ItemBiblioteca item);
     Optional<ItemBiblioteca> buscarPorCodigo(String codigo);
     List<ItemBiblioteca> buscarTodos();
+    
+    /**
+     * Paginacao por chave (keyset): ate limite itens com codigo maior que apos,
+     * em ordem de codigo. Com apos nulo, comeca do inicio do catalogo.
+     */
+    List<ItemBiblioteca> buscarPagina(String apos, int limite);
+    
+    /**
+     * Percorre todo o acervo em ordem de codigo sem materializar uma lista.
+     * O Stream mantem recursos abertos (ex.: conexao) e deve ser fechado,
+     * de preferencia com try-with-resources.
+     */
+    Stream<ItemBiblioteca> streamTodos();
+    
+    /**
+     * Visita cada item do acervo em memoria constante, fechando o Stream ao final
+     */
+    default void paraCada(Consumer<? super ItemBiblioteca> acao) {
+        try (Stream<ItemBiblioteca> itens = streamTodos()) {
+            itens.forEach(acao);
+        }
+    }
     List<ItemBiblioteca> buscarPorTipo(String tipo);
+    
+    /**
+     * Busca textual no titulo e nos campos do subtipo (autor, editora, diretor,
+     * genero), sem diferenciar maiusculas nem acentos. Todos os termos precisam
+     * aparecer como palavras inteiras; o ultimo, com ao menos 3 letras, casa
+     * tambem como prefixo.
+     * @return ate limite itens, do mais relevante para o menos relevante
+     */
+    List<ItemBiblioteca> buscarTexto(String consulta, int limite);
     List<ItemBiblioteca> buscarDisponiveis();
     List<ItemBiblioteca> buscarEmprestados();
-    boolean remover(String codigo);
+    
+    /**
+     * Contagens do acervo por tipo e por situacao, sem carregar os itens
+     */
+    EstatisticasAcervo estatisticasAcervo();
+    
+    default boolean remover(String codigo) {
+        return remover(codigo, QUALQUER_VERSAO);
+    }
+    
+    /**
+     * Remove o item somente se ele ainda estiver na versao informada
+     * @throws com.biblioteca.exception.ConflitoVersaoException se a versao for outra
+     */
+    boolean remover(String codigo, long versaoEsperada);
+    
+    /**
+     * Grava titulo e situacao do item se a versao dele ainda for a atual
+     * no repositorio; em caso de sucesso, o item passa a ter a nova versao.
+     * @throws com.biblioteca.exception.ConflitoVersaoException se outra gravacao ocorreu antes
+     */
     void atualizar(ItemBiblioteca item);
+    
+    /**
+     * Marca o item como emprestado se, e somente se, ele estiver disponivel.
+     * Verificacao e troca acontecem em um unico passo atomico.
+     */
+    default ResultadoTransicao tentarEmprestar(String codigo) {
+        return tentarEmprestar(codigo, QUALQUER_VERSAO);
+    }
+    
+    /**
+     * Como tentarEmprestar(codigo), exigindo tambem a versao informada
+     * @throws com.biblioteca.exception.ConflitoVersaoException se a versao for outra
+     */
+    default ResultadoTransicao tentarEmprestar(String codigo, long versaoEsperada) {
+        return tentarEmprestar(codigo, versaoEsperada, GravacaoVinculada.NENHUMA);
+    }
+    
+    /**
+     * Como tentarEmprestar(codigo, versaoEsperada), executando a gravacao
+     * vinculada (ex.: o registro do emprestimo) na mesma unidade da troca.
+     * So e executada se a troca acontecer; se falhar, a troca e desfeita.
+     */
+    ResultadoTransicao tentarEmprestar(String codigo, long versaoEsperada, GravacaoVinculada vinculada);
+    
+    /**
+     * Marca o item como disponivel se, e somente se, ele estiver emprestado
+     */
+    default ResultadoTransicao tentarDevolver(String codigo) {
+        return tentarDevolver(codigo, QUALQUER_VERSAO);
+    }
+    
+    /**
+     * Como tentarDevolver(codigo), exigindo tambem a versao informada
+     * @throws com.biblioteca.exception.ConflitoVersaoException se a versao for outra
+     */
+    default ResultadoTransicao tentarDevolver(String codigo, long versaoEsperada) {
+        return tentarDevolver(codigo, versaoEsperada, GravacaoVinculada.NENHUMA);
+    }
+    
+    /**
+     * Como tentarDevolver(codigo, versaoEsperada), executando a gravacao
+     * vinculada (ex.: o encerramento do emprestimo) na mesma unidade da troca
+     */
+    ResultadoTransicao tentarDevolver(String codigo, long versaoEsperada, GravacaoVinculada vinculada);
+    
+    /**
+     * Salva varios itens de uma vez, em blocos de tamanhoLote itens.
+     * Falhas sao reportadas por item no resultado, sem desfazer os demais.
+     */
+    ResultadoLote salvarEmLote(Collection<? extends ItemBiblioteca> itens, int tamanhoLote);
+    
+    /**
+     * Salva varios itens usando o tamanho de lote configurado em db.lote.tamanho
+     */
+    default ResultadoLote salvarEmLote(Collection<? extends ItemBiblioteca> itens) {
+        return salvarEmLote(itens, ConfigManager.getInstance().getInt("db.lote.tamanho", 1000));
+    }
 }
@@ -1,18 +1,57 @@
 package com.biblioteca.repository;
 
+import com.biblioteca.exception.ConflitoVersaoException;
 import com.biblioteca.model.ItemBiblioteca;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementação do Repository usando armazenamento em memória
  * Simula um banco de dados para fins educacionais
+ * Os itens ficam ordenados por código, como no ORDER BY codigo do SQLite
+ *
+ * Thread-safe: leituras por código e listagens não usam trava. Escritas no
+ * mesmo código são serializadas por uma trava de uma faixa (lock striping),
+ * o que torna salvar/atualizar/remover atômicos por item sem bloquear
+ * escritas em códigos de outras faixas. Listagens são fracamente consistentes:
+ * refletem as escritas concluídas, mas não um instante único do acervo.
  */
 public class ItemRepositoryImpl implements ItemRepository {
-    private final Map<String, ItemBiblioteca> database;
+    
+    // Potencia de 2, para escolher a faixa com uma mascara
+    private static final int FAIXAS = 64;
+    
+    private final ConcurrentNavigableMap<String, ItemBiblioteca> database;
+    private final Object[] travas = new Object[FAIXAS];
+    
+    // Cada item recebe um ordinal denso (reaproveitado apos remocao) usado pelo
+    // indice textual. Ordinais e indice textual sao protegidos por travaTexto.
+    private final Map<String, Integer> ordinais = new HashMap<>();
+    private final List<ItemBiblioteca> itensPorOrdinal = new ArrayList<>();
+    private final Deque<Integer> ordinaisLivres = new ArrayDeque<>();
+    private final IndiceInvertido indiceTexto = new IndiceInvertido();
+    private final ReadWriteLock travaTexto = new ReentrantReadWriteLock();
+    
+    // Indices secundarios, tambem ordenados por codigo: listagens filtradas
+    // percorrem apenas os itens do resultado
+    private final ConcurrentMap<String, IndiceOrdenado> porTipo = new ConcurrentHashMap<>();
+    private final IndiceOrdenado disponiveis = new IndiceOrdenado();
+    private final IndiceOrdenado emprestados = new IndiceOrdenado();
     
     public ItemRepositoryImpl() {
-        this.database = new HashMap<>();
+        this.database = new ConcurrentSkipListMap<>();
+        for (int i = 0; i < FAIXAS; i++) {
+            travas[i] = new Object();
+        }
     }
     
     @Override
@@ -20,7 +59,15 @@ public class ItemRepositoryImpl implements ItemRepository {
         if (item == null || item.getCodigo() == null) {
             throw new IllegalArgumentException("Item ou codigo nao pode ser nulo");
         }
-        database.put(item.getCodigo(), item);
+        Map<String, Integer> termos = IndiceInvertido.extrairTermos(item);
+        synchronized (trava(item.getCodigo())) {
+            ItemBiblioteca anterior = database.get(item.getCodigo());
+            if (anterior != null && anterior != item) {
+                // Sobrescrita: a versao continua crescendo a partir da gravada
+                item.setVersao(anterior.getVersao() + 1);
+            }
+            indexar(item, database.put(item.getCodigo(), item), termos);
+        }
     }
     
     @Override
@@ -33,30 +80,134 @@ public class ItemRepositoryImpl implements ItemRepository {
         return new ArrayList<>(database.values());
     }
     
+    @Override
+    public List<ItemBiblioteca> buscarPagina(String apos, int limite) {
+        Map<String, ItemBiblioteca> restante = apos == null ? database : database.tailMap(apos, false);
+        return restante.values().stream()
+            .limit(limite)
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Visao preguicosa sobre o mapa: nenhuma copia do acervo e feita
+     */
+    @Override
+    public Stream<ItemBiblioteca> streamTodos() {
+        return database.values().stream();
+    }
+    
     @Override
     public List<ItemBiblioteca> buscarPorTipo(String tipo) {
-        return database.values().stream()
-            .filter(item -> item.getTipo().equalsIgnoreCase(tipo))
+        IndiceOrdenado doTipo = porTipo.get(chaveTipo(tipo));
+        return doTipo == null ? new ArrayList<>() : doTipo.listar();
+    }
+    
+    /**
+     * Consulta o indice invertido: o custo depende das listas dos termos
+     * procurados, nao do tamanho do acervo
+     */
+    @Override
+    public List<ItemBiblioteca> buscarTexto(String consulta, int limite) {
+        List<String> termos = TextoBusca.termos(consulta);
+        if (termos.isEmpty() || limite <= 0) {
+            return new ArrayList<>();
+        }
+        
+        // Sob a trava so a consulta ao indice; a ordenacao e feita depois
+        List<Map.Entry<ItemBiblioteca, Double>> encontrados;
+        travaTexto.readLock().lock();
+        try {
+            List<IndiceInvertido.Acerto> acertos = indiceTexto.buscar(termos);
+            encontrados = new ArrayList<>(acertos.size());
+            for (IndiceInvertido.Acerto acerto : acertos) {
+                encontrados.add(new AbstractMap.SimpleImmutableEntry<>(
+                    itensPorOrdinal.get(acerto.ordinal), acerto.pontos));
+            }
+        } finally {
+            travaTexto.readLock().unlock();
+        }
+        
+        return encontrados.stream()
+            .sorted(Map.Entry.<ItemBiblioteca, Double>comparingByValue().reversed()
+                .thenComparing(entrada -> entrada.getKey().getCodigo()))
+            .limit(limite)
+            .map(Map.Entry::getKey)
             .collect(Collectors.toList());
     }
     
     @Override
     public List<ItemBiblioteca> buscarDisponiveis() {
-        return database.values().stream()
-            .filter(item -> !item.isEmprestado())
-            .collect(Collectors.toList());
+        return disponiveis.listar();
     }
     
     @Override
     public List<ItemBiblioteca> buscarEmprestados() {
-        return database.values().stream()
-            .filter(ItemBiblioteca::isEmprestado)
-            .collect(Collectors.toList());
+        return emprestados.listar();
+    }
+    
+    /**
+     * Quantidade de itens do tipo, sem percorrer o acervo
+     */
+    public int contarPorTipo(String tipo) {
+        IndiceOrdenado doTipo = porTipo.get(chaveTipo(tipo));
+        return doTipo == null ? 0 : doTipo.tamanho();
+    }
+    
+    public int contarDisponiveis() {
+        return disponiveis.tamanho();
+    }
+    
+    public int contarEmprestados() {
+        return emprestados.tamanho();
+    }
+    
+    /**
+     * Contagens a partir dos indices secundarios: o total de cada tipo vem da
+     * cardinalidade do indice, e os emprestados de cada tipo de uma passada
+     * so pelo indice de emprestados. Cada contagem e lida separadamente,
+     * entao escritas simultaneas podem aparecer em uma e ainda nao em outra.
+     */
+    @Override
+    public EstatisticasAcervo estatisticasAcervo() {
+        Map<String, Long> emprestadosPorTipo = new LinkedHashMap<>();
+        for (ItemBiblioteca item : emprestados.valores()) {
+            emprestadosPorTipo.merge(chaveTipo(item.getTipo()), 1L, Long::sum);
+        }
+        Map<String, Long> disponiveisPorTipo = new LinkedHashMap<>();
+        for (Map.Entry<String, IndiceOrdenado> tipo : porTipo.entrySet()) {
+            long doTipoEmprestados = emprestadosPorTipo.getOrDefault(tipo.getKey(), 0L);
+            long doTipoDisponiveis = Math.max(0, tipo.getValue().tamanho() - doTipoEmprestados);
+            if (doTipoDisponiveis > 0) {
+                disponiveisPorTipo.put(tipo.getKey(), doTipoDisponiveis);
+            }
+        }
+        return new EstatisticasAcervo(disponiveisPorTipo, emprestadosPorTipo);
     }
     
     @Override
-    public boolean remover(String codigo) {
-        return database.remove(codigo) != null;
+    public boolean remover(String codigo, long versaoEsperada) {
+        synchronized (trava(codigo)) {
+            ItemBiblioteca atual = database.get(codigo);
+            if (atual == null) {
+                return false;
+            }
+            if (versaoEsperada != QUALQUER_VERSAO && atual.getVersao() != versaoEsperada) {
+                throw new ConflitoVersaoException(codigo, versaoEsperada, atual.getVersao());
+            }
+            database.remove(codigo);
+            removerDosIndicesSecundarios(atual);
+            
+            travaTexto.writeLock().lock();
+            try {
+                int ordinal = ordinais.remove(codigo);
+                indiceTexto.remover(ordinal);
+                itensPorOrdinal.set(ordinal, null);
+                ordinaisLivres.push(ordinal);
+            } finally {
+                travaTexto.writeLock().unlock();
+            }
+            return true;
+        }
     }
     
     @Override
@@ -64,9 +215,196 @@ public class ItemRepositoryImpl implements ItemRepository {
         if (item == null || item.getCodigo() == null) {
             throw new IllegalArgumentException("Item ou codigo nao pode ser nulo");
         }
-        if (!database.containsKey(item.getCodigo())) {
-            throw new IllegalStateException("Item nao encontrado para atualizacao");
+        Map<String, Integer> termos = IndiceInvertido.extrairTermos(item);
+        synchronized (trava(item.getCodigo())) {
+            ItemBiblioteca atual = database.get(item.getCodigo());
+            if (atual == null) {
+                throw new IllegalStateException("Item nao encontrado para atualizacao");
+            }
+            if (atual != item && atual.getVersao() != item.getVersao()) {
+                throw new ConflitoVersaoException(item.getCodigo(), item.getVersao(), atual.getVersao());
+            }
+            item.setVersao(atual.getVersao() + 1);
+            indexar(item, database.put(item.getCodigo(), item), termos);
+        }
+    }
+    
+    @Override
+    public ResultadoTransicao tentarEmprestar(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        return transicionar(codigo, false, true, versaoEsperada, vinculada);
+    }
+    
+    @Override
+    public ResultadoTransicao tentarDevolver(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        return transicionar(codigo, true, false, versaoEsperada, vinculada);
+    }
+    
+    /**
+     * CAS na situacao e na versao do item sob a trava da faixa, como as demais
+     * escritas: sem ela, um atualizar/salvar que ja conferiu a versao poderia
+     * substituir o objeto logo depois do CAS e descartar a transicao. O CAS
+     * continua necessario porque o item pode ser alterado no lugar por quem
+     * o leu. A gravacao vinculada roda ainda sob a trava; se falhar, situacao
+     * e versao voltam ao que eram antes do CAS.
+     */
+    private ResultadoTransicao transicionar(String codigo, boolean esperado, boolean novo, long versaoEsperada,
+                                            GravacaoVinculada vinculada) {
+        synchronized (trava(codigo)) {
+            ItemBiblioteca item = database.get(codigo);
+            if (item == null) {
+                return ResultadoTransicao.naoEncontrado();
+            }
+            long versaoAnterior = item.getVersao();
+            if (!item.trocarEmprestado(esperado, novo, versaoEsperada)) {
+                long versaoAtual = item.getVersao();
+                if (versaoEsperada != QUALQUER_VERSAO && versaoAtual != versaoEsperada) {
+                    throw new ConflitoVersaoException(codigo, versaoEsperada, versaoAtual);
+                }
+                return ResultadoTransicao.estadoInvalido();
+            }
+            try {
+                vinculada.gravar(null);
+            } catch (SQLException | RuntimeException e) {
+                item.setEmprestado(esperado);
+                item.setVersao(versaoAnterior);
+                if (e instanceof RuntimeException) {
+                    throw (RuntimeException) e;
+                }
+                throw new RuntimeException("Erro na gravacao vinculada: " + e.getMessage(), e);
+            }
+            disponiveis.remover(codigo);
+            emprestados.remover(codigo);
+            (item.isEmprestado() ? emprestados : disponiveis).adicionar(item);
+            return ResultadoTransicao.realizada(item);
+        }
+    }
+    
+    /**
+     * Em memoria nao ha transacao, entao o tamanho do lote e ignorado
+     */
+    @Override
+    public ResultadoLote salvarEmLote(Collection<? extends ItemBiblioteca> itens, int tamanhoLote) {
+        ResultadoLote resultado = new ResultadoLote();
+        for (ItemBiblioteca item : itens) {
+            if (item == null || item.getCodigo() == null) {
+                resultado.registrarFalha(null, "Item ou codigo nao pode ser nulo");
+                continue;
+            }
+            Map<String, Integer> termos = IndiceInvertido.extrairTermos(item);
+            synchronized (trava(item.getCodigo())) {
+                if (database.putIfAbsent(item.getCodigo(), item) != null) {
+                    resultado.registrarFalha(item.getCodigo(), "Item ja existe");
+                } else {
+                    indexar(item, null, termos);
+                    resultado.registrarSalvos(1);
+                }
+            }
+        }
+        return resultado;
+    }
+    
+    /**
+     * Trava da faixa do codigo; quem a detem e o unico escritor do codigo
+     */
+    private Object trava(String codigo) {
+        int hash = codigo.hashCode();
+        return travas[(hash ^ (hash >>> 16)) & (FAIXAS - 1)];
+    }
+    
+    /**
+     * Atribui (ou reutiliza) o ordinal do item e atualiza os indices.
+     * Chamado com a trava da faixa do codigo.
+     * @param anterior item que ocupava o codigo (pode ser o proprio item,
+     *                 alterado no lugar), ou null se o codigo e novo
+     * @param termos termos do item, extraidos fora das travas
+     */
+    private void indexar(ItemBiblioteca item, ItemBiblioteca anterior, Map<String, Integer> termos) {
+        if (anterior != null) {
+            removerDosIndicesSecundarios(anterior);
+        }
+        porTipo.computeIfAbsent(chaveTipo(item.getTipo()), t -> new IndiceOrdenado()).adicionar(item);
+        (item.isEmprestado() ? emprestados : disponiveis).adicionar(item);
+        
+        // Emprestimo e devolucao so trocam o objeto, sem disputar a trava de escrita
+        if (anterior != null) {
+            travaTexto.readLock().lock();
+            try {
+                Integer ordinal = ordinais.get(item.getCodigo());
+                if (anterior == item && ordinal != null && indiceTexto.indexado(ordinal, termos)) {
+                    return;
+                }
+            } finally {
+                travaTexto.readLock().unlock();
+            }
+        }
+        
+        travaTexto.writeLock().lock();
+        try {
+            Integer ordinal = ordinais.get(item.getCodigo());
+            if (ordinal == null) {
+                ordinal = ordinaisLivres.isEmpty() ? itensPorOrdinal.size() : ordinaisLivres.pop();
+                ordinais.put(item.getCodigo(), ordinal);
+                if (ordinal == itensPorOrdinal.size()) {
+                    itensPorOrdinal.add(null);
+                }
+            }
+            itensPorOrdinal.set(ordinal, item);
+            indiceTexto.indexar(ordinal, termos);
+        } finally {
+            travaTexto.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Retira o codigo dos indices de tipo e de situacao. Pela chave, e nao
+     * pelo estado atual do item, que pode ter sido alterado no lugar.
+     */
+    private void removerDosIndicesSecundarios(ItemBiblioteca item) {
+        IndiceOrdenado doTipo = porTipo.get(chaveTipo(item.getTipo()));
+        if (doTipo != null) {
+            doTipo.remover(item.getCodigo());
+        }
+        disponiveis.remover(item.getCodigo());
+        emprestados.remover(item.getCodigo());
+    }
+    
+    private static String chaveTipo(String tipo) {
+        return tipo == null ? "" : tipo.toUpperCase(Locale.ROOT);
+    }
+    
+    /**
+     * Indice secundario ordenado por codigo com contagem em O(1)
+     * (o size() do ConcurrentSkipListMap percorre o mapa inteiro)
+     */
+    private static final class IndiceOrdenado {
+        private final ConcurrentSkipListMap<String, ItemBiblioteca> itens = new ConcurrentSkipListMap<>();
+        private final AtomicInteger tamanho = new AtomicInteger();
+        
+        void adicionar(ItemBiblioteca item) {
+            if (itens.put(item.getCodigo(), item) == null) {
+                tamanho.incrementAndGet();
+            }
+        }
+        
+        void remover(String codigo) {
+            if (itens.remove(codigo) != null) {
+                tamanho.decrementAndGet();
+            }
+        }
+        
+        List<ItemBiblioteca> listar() {
+            return new ArrayList<>(itens.values());
+        }
+        
+        /**
+         * Visao dos itens, sem copia (iteracao fracamente consistente)
+         */
+        Collection<ItemBiblioteca> valores() {
+            return itens.values();
+        }
+        
+        int tamanho() {
+            return tamanho.get();
         }
-        database.put(item.getCodigo(), item);
     }
 }
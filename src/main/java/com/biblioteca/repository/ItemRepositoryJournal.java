@@ -0,0 +1,823 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.config.ConfigManager;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.util.Logger;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Repositorio em memoria com persistencia em journal (somente anexacao)
+ * O acervo e os indices ficam em um ItemRepositoryImpl; cada escrita e
+ * anexada a um arquivo binario por um FileChannel. Na inicializacao o journal
+ * e relido do inicio e reaplicado, reconstruindo o acervo.
+ *
+ * Group commit: os registros vao para um buffer e uma thread sincronizadora
+ * grava o buffer e faz um unico fsync para todos os que chegaram juntos. Com
+ * journal.fsync.esperar=true a escrita so retorna depois do fsync do seu
+ * registro; com false ela retorna logo, e uma queda pode perder as escritas
+ * do ultimo intervalo (journal.fsync.intervalo.ms).
+ *
+ * Snapshot: periodicamente o acervo e gravado com SnapshotCatalogo e o
+ * journal e reescrito so com os registros posteriores ao inicio do snapshot.
+ * A inicializacao carrega o snapshot e reaplica apenas esse final. O snapshot
+ * e gravado sem parar as escritas; como cada registro traz o estado final do
+ * que altera, reaplicar um registro ja refletido no snapshot nao muda nada.
+ *
+ * Formato: cabecalho (MAGICO, VERSAO_FORMATO, posicao base) e registros
+ * [tamanho int][crc32 int][operacao byte][dados]. As posicoes sao logicas:
+ * a base e a posicao do primeiro registro do arquivo, e continua crescendo
+ * depois que o journal e reescrito. Um registro incompleto ou com CRC invalido
+ * no fim do arquivo (queda no meio da escrita) e descartado.
+ */
+public class ItemRepositoryJournal implements ItemRepository {
+
+    private static final Logger logger = Logger.getLogger(ItemRepositoryJournal.class);
+
+    private static final int MAGICO = 0x4249424A; // "BIBJ"
+    private static final int VERSAO_FORMATO = 2;
+    private static final int TAMANHO_CABECALHO = 16;
+    // Versao 1: cabecalho sem a posicao base (sempre 0)
+    private static final int TAMANHO_CABECALHO_V1 = 8;
+    private static final int CABECALHO_REGISTRO = 8;
+    // Maior que qualquer registro: os textos de writeUTF tem no maximo 64 KB
+    private static final int TAMANHO_BUFFER = 1 << 20;
+
+    // Operacoes registradas
+    private static final byte OP_ITEM = 1;      // estado completo (insercao ou regravacao)
+    private static final byte OP_SITUACAO = 2;  // emprestimo ou devolucao: situacao e versao
+    private static final byte OP_REMOCAO = 3;
+
+    private static final int FAIXAS = 64;
+
+    private final ItemRepositoryImpl memoria = new ItemRepositoryImpl();
+    // Faixas por codigo: aplicar em memoria e anexar ao journal na mesma ordem
+    private final Object[] travas = new Object[FAIXAS];
+
+    private final Path arquivo;
+    private final Path snapshot;
+    private final boolean esperarFsync;
+    private final long intervaloNanos;
+    private final Thread sincronizador;
+    private final ScheduledExecutorService agendador;
+
+    // Buffer e posicoes de escrita, protegidos por travaArquivo. O canal so e
+    // trocado (ao reescrever o journal) com travaArquivo e travaFsync.
+    private final Object travaArquivo = new Object();
+    private final Object travaFsync = new Object();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+    private FileChannel canal;
+    private long base;               // posicao logica do primeiro registro do arquivo
+    private int tamanhoCabecalho;
+    private long posicaoEscrita;     // fim logico do journal, incluindo o buffer
+    private long posicaoGravada;     // fim do que ja foi entregue ao canal
+
+    // Quem espera pelo fsync aguarda em travaDuravel
+    private final Object travaDuravel = new Object();
+    private volatile long posicaoDuravel;
+    private volatile IOException erro;
+    private volatile boolean encerrado;
+
+    private final LongAdder registros = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+    private long registrosReaplicados;
+    private long itensDoSnapshot;
+    private long tempoInicializacaoMs;
+    private boolean snapshotCarregado;
+
+    // Snapshots gravados, protegidos pelo monitor do repositorio
+    private long snapshotsGravados;
+    private long registrosNoUltimoSnapshot;
+    private long duracaoUltimoSnapshotMs;
+
+    /**
+     * Abre o journal configurado em application.properties (journal.*)
+     */
+    public ItemRepositoryJournal() {
+        this(Paths.get(ConfigManager.getInstance().get("journal.arquivo", "biblioteca.journal")),
+             Paths.get(ConfigManager.getInstance().get("journal.snapshot.arquivo", "biblioteca.snapshot")),
+             ConfigManager.getInstance().getBoolean("journal.fsync.esperar", true),
+             ConfigManager.getInstance().getInt("journal.fsync.intervalo.ms", 0),
+             ConfigManager.getInstance().getInt("journal.snapshot.intervalo.s", 300));
+    }
+
+    /**
+     * Abre (ou cria) o journal, sem snapshots
+     * @param arquivo caminho do journal
+     * @param esperarFsync se as escritas aguardam o fsync antes de retornar
+     * @param intervaloMs quanto o sincronizador espera por mais registros antes
+     *                    do fsync (0 = sincroniza assim que houver pendencias)
+     */
+    public ItemRepositoryJournal(Path arquivo, boolean esperarFsync, long intervaloMs) {
+        this(arquivo, null, esperarFsync, intervaloMs, 0);
+    }
+
+    /**
+     * Abre (ou cria) o journal, carregando antes o snapshot, se existir
+     * @param snapshot caminho do snapshot, ou null para nao usar snapshots
+     * @param intervaloSnapshotSegundos intervalo entre snapshots em segundo
+     *                                  plano (0 = somente por gravarSnapshot())
+     */
+    public ItemRepositoryJournal(Path arquivo, Path snapshot, boolean esperarFsync,
+                                 long intervaloMs, long intervaloSnapshotSegundos) {
+        for (int i = 0; i < FAIXAS; i++) {
+            travas[i] = new Object();
+        }
+        this.arquivo = arquivo;
+        this.snapshot = snapshot;
+        this.esperarFsync = esperarFsync;
+        this.intervaloNanos = TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+
+        FileChannel aberto = null;
+        try {
+            Path pasta = arquivo.toAbsolutePath().getParent();
+            if (pasta != null) {
+                Files.createDirectories(pasta);
+            }
+            long inicio = System.nanoTime();
+            long desde = 0;
+            if (snapshot != null && Files.exists(snapshot)) {
+                desde = SnapshotCatalogo.carregar(snapshot, item -> {
+                    memoria.salvar(item);
+                    itensDoSnapshot++;
+                });
+                snapshotCarregado = true;
+            }
+            aberto = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.posicaoEscrita = reaplicar(aberto, desde);
+            this.tempoInicializacaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        } catch (IOException | RuntimeException e) {
+            if (aberto != null) {
+                try {
+                    aberto.close();
+                } catch (IOException ignorada) {
+                    // a falha original e mais relevante
+                }
+            }
+            throw new RuntimeException("Erro ao abrir journal " + arquivo + ": " + e.getMessage(), e);
+        }
+        this.canal = aberto;
+        this.posicaoGravada = posicaoEscrita;
+        this.posicaoDuravel = posicaoEscrita;
+
+        this.sincronizador = new Thread(this::sincronizar, "journal-fsync");
+        this.sincronizador.setDaemon(true);
+        this.sincronizador.start();
+        logger.info("Journal " + arquivo + " aberto: " + itensDoSnapshot + " itens do snapshot e "
+            + registrosReaplicados + " registros reaplicados em " + tempoInicializacaoMs + " ms");
+
+        if (snapshot != null && intervaloSnapshotSegundos > 0) {
+            this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.agendador.scheduleWithFixedDelay(this::snapshotPeriodico,
+                intervaloSnapshotSegundos, intervaloSnapshotSegundos, TimeUnit.SECONDS);
+        } else {
+            this.agendador = null;
+        }
+    }
+
+    // Escritas: aplicadas em memoria e anexadas sob a trava da faixa do codigo;
+    // a espera pelo fsync acontece depois, fora da trava
+
+    @Override
+    public void salvar(ItemBiblioteca item) {
+        validar(item);
+        long fim;
+        synchronized (trava(item.getCodigo())) {
+            verificarJournal();
+            memoria.salvar(item);
+            fim = anexar(registroItem(item));
+        }
+        aguardarDuravel(fim);
+    }
+
+    @Override
+    public void atualizar(ItemBiblioteca item) {
+        validar(item);
+        long fim;
+        synchronized (trava(item.getCodigo())) {
+            verificarJournal();
+            memoria.atualizar(item);
+            fim = anexar(registroItem(item));
+        }
+        aguardarDuravel(fim);
+    }
+
+    @Override
+    public ResultadoTransicao tentarEmprestar(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        return transicionar(codigo, true, versaoEsperada, vinculada);
+    }
+
+    @Override
+    public ResultadoTransicao tentarDevolver(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        return transicionar(codigo, false, versaoEsperada, vinculada);
+    }
+
+    private ResultadoTransicao transicionar(String codigo, boolean emprestar, long versaoEsperada,
+                                            GravacaoVinculada vinculada) {
+        ResultadoTransicao resultado;
+        long fim;
+        synchronized (trava(codigo)) {
+            verificarJournal();
+            resultado = emprestar
+                ? memoria.tentarEmprestar(codigo, versaoEsperada, vinculada)
+                : memoria.tentarDevolver(codigo, versaoEsperada, vinculada);
+            if (!resultado.isRealizada()) {
+                return resultado;
+            }
+            fim = anexar(registroSituacao(resultado.getItem()));
+        }
+        aguardarDuravel(fim);
+        return resultado;
+    }
+
+    @Override
+    public boolean remover(String codigo, long versaoEsperada) {
+        long fim;
+        synchronized (trava(codigo)) {
+            verificarJournal();
+            if (!memoria.remover(codigo, versaoEsperada)) {
+                return false;
+            }
+            fim = anexar(registro(OP_REMOCAO, saida -> saida.writeUTF(codigo)));
+        }
+        aguardarDuravel(fim);
+        return true;
+    }
+
+    /**
+     * Anexa todos os registros e aguarda um unico fsync no final;
+     * o tamanho do lote e ignorado
+     */
+    @Override
+    public ResultadoLote salvarEmLote(Collection<? extends ItemBiblioteca> itens, int tamanhoLote) {
+        ResultadoLote resultado = new ResultadoLote();
+        long fim = -1;
+        for (ItemBiblioteca item : itens) {
+            if (item == null || item.getCodigo() == null) {
+                resultado.registrarFalha(null, "Item ou codigo nao pode ser nulo");
+                continue;
+            }
+            synchronized (trava(item.getCodigo())) {
+                verificarJournal();
+                if (memoria.buscarPorCodigo(item.getCodigo()).isPresent()) {
+                    resultado.registrarFalha(item.getCodigo(), "Item ja existe");
+                    continue;
+                }
+                memoria.salvar(item);
+                fim = anexar(registroItem(item));
+            }
+            resultado.registrarSalvos(1);
+        }
+        if (fim >= 0) {
+            aguardarDuravel(fim);
+        }
+        return resultado;
+    }
+
+    // Leituras: direto do acervo em memoria
+
+    @Override
+    public Optional<ItemBiblioteca> buscarPorCodigo(String codigo) {
+        return memoria.buscarPorCodigo(codigo);
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarTodos() {
+        return memoria.buscarTodos();
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarPagina(String apos, int limite) {
+        return memoria.buscarPagina(apos, limite);
+    }
+
+    @Override
+    public Stream<ItemBiblioteca> streamTodos() {
+        return memoria.streamTodos();
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarPorTipo(String tipo) {
+        return memoria.buscarPorTipo(tipo);
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarTexto(String consulta, int limite) {
+        return memoria.buscarTexto(consulta, limite);
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarDisponiveis() {
+        return memoria.buscarDisponiveis();
+    }
+
+    @Override
+    public List<ItemBiblioteca> buscarEmprestados() {
+        return memoria.buscarEmprestados();
+    }
+
+    @Override
+    public EstatisticasAcervo estatisticasAcervo() {
+        return memoria.estatisticasAcervo();
+    }
+
+    /**
+     * Grava o que estiver pendente, faz o ultimo fsync e fecha o arquivo.
+     * Escritas posteriores sao recusadas.
+     */
+    public void fechar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        synchronized (travaArquivo) {
+            if (encerrado) {
+                return;
+            }
+            encerrado = true;
+            travaArquivo.notifyAll();
+        }
+        try {
+            sincronizador.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (travaArquivo) {
+            synchronized (travaFsync) {
+                try {
+                    canal.close();
+                } catch (IOException e) {
+                    logger.warn("Erro ao fechar journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Snapshot
+
+    /**
+     * Grava um snapshot do acervo e reescreve o journal apenas com o que veio
+     * depois do inicio do snapshot. As escritas continuam durante a gravacao
+     * e so param enquanto o final do journal e copiado para o novo arquivo.
+     */
+    public synchronized void gravarSnapshot() {
+        if (snapshot == null) {
+            throw new IllegalStateException("Snapshot nao configurado para este journal");
+        }
+        long inicio = System.nanoTime();
+        long posicao;
+        long registrosAntes = registros.sum();
+        synchronized (travaArquivo) {
+            verificarJournal();
+            // Tudo antes desta posicao ja esta aplicado na memoria
+            posicao = posicaoEscrita;
+        }
+
+        Path temporario = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            long quantidade;
+            try (Stream<ItemBiblioteca> itens = memoria.streamTodos()) {
+                quantidade = SnapshotCatalogo.gravar(temporario, itens, posicao);
+            }
+            Files.move(temporario, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // Uma queda aqui e segura: o journal antigo ainda contem a posicao do snapshot
+            reescreverJournal(posicao);
+
+            snapshotsGravados++;
+            registrosNoUltimoSnapshot = registrosAntes;
+            duracaoUltimoSnapshotMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            logger.info("Snapshot gravado: " + quantidade + " itens em " + duracaoUltimoSnapshotMs + " ms");
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao gravar snapshot: " + e.getMessage(), e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporario);
+            } catch (IOException e) {
+                logger.warn("Nao foi possivel apagar " + temporario + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tarefa agendada: grava um snapshot se houve escritas desde o ultimo
+     */
+    private void snapshotPeriodico() {
+        try {
+            boolean houveEscritas;
+            synchronized (this) {
+                houveEscritas = registros.sum() != registrosNoUltimoSnapshot;
+            }
+            if (houveEscritas && !encerrado) {
+                gravarSnapshot();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Falha no snapshot periodico: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Troca o journal por um novo cuja base e novaBase, copiando os registros
+     * a partir dela. O novo arquivo e sincronizado antes de substituir o antigo.
+     */
+    private void reescreverJournal(long novaBase) throws IOException {
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        synchronized (travaArquivo) {
+            synchronized (travaFsync) {
+                descarregar();
+                FileChannel novo = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    escreverCabecalho(novo, novaBase);
+                    long inicio = posicaoNoArquivo(novaBase);
+                    long tamanho = posicaoGravada - novaBase;
+                    novo.position(TAMANHO_CABECALHO);
+                    for (long copiados = 0; copiados < tamanho; ) {
+                        copiados += canal.transferTo(inicio + copiados, tamanho - copiados, novo);
+                    }
+                    novo.force(true);
+                    Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException | RuntimeException e) {
+                    novo.close();
+                    Files.deleteIfExists(temporario);
+                    throw e;
+                }
+                canal.close();
+                canal = novo;
+                base = novaBase;
+                tamanhoCabecalho = TAMANHO_CABECALHO;
+            }
+        }
+    }
+
+    // Journal
+
+    /**
+     * Le o journal desde o cabecalho e aplica no acervo em memoria cada
+     * registro a partir da posicao logica desde (a do snapshot carregado)
+     * @return posicao logica do fim do ultimo registro valido
+     */
+    private long reaplicar(FileChannel canal, long desde) throws IOException {
+        long tamanho = canal.size();
+        if (tamanho < TAMANHO_CABECALHO_V1) {
+            // Arquivo novo (ou cabecalho incompleto): comeca vazio, na posicao do snapshot
+            canal.truncate(0);
+            escreverCabecalho(canal, desde);
+            canal.force(true);
+            base = desde;
+            tamanhoCabecalho = TAMANHO_CABECALHO;
+            return desde;
+        }
+
+        // Nao e fechado: fechar o stream fecharia o canal
+        canal.position(0);
+        DataInputStream entrada = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(canal), 1 << 16));
+        if (entrada.readInt() != MAGICO) {
+            throw new IOException("Arquivo nao e um journal da biblioteca");
+        }
+        int versao = entrada.readInt();
+        if (versao == 1) {
+            base = 0;
+            tamanhoCabecalho = TAMANHO_CABECALHO_V1;
+        } else if (versao == VERSAO_FORMATO && tamanho >= TAMANHO_CABECALHO) {
+            base = entrada.readLong();
+            tamanhoCabecalho = TAMANHO_CABECALHO;
+        } else {
+            throw new IOException("Versao de journal nao suportada: " + versao);
+        }
+        if (base > desde) {
+            throw new IOException("Journal comeca na posicao " + base + ", depois do snapshot (" + desde
+                + "): registros intermediarios foram perdidos");
+        }
+
+        long posicao = tamanhoCabecalho;
+        long logica = base;
+        CRC32 crc = new CRC32();
+        byte[] dados = new byte[512];
+        while (tamanho - posicao >= CABECALHO_REGISTRO) {
+            int comprimento = entrada.readInt();
+            int soma = entrada.readInt();
+            if (comprimento <= 0 || comprimento > TAMANHO_BUFFER
+                    || tamanho - posicao - CABECALHO_REGISTRO < comprimento) {
+                break;
+            }
+            if (dados.length < comprimento) {
+                dados = new byte[Math.max(comprimento, dados.length * 2)];
+            }
+            entrada.readFully(dados, 0, comprimento);
+            crc.reset();
+            crc.update(dados, 0, comprimento);
+            if ((int) crc.getValue() != soma) {
+                break;
+            }
+            if (logica >= desde) {
+                aplicar(new DataInputStream(new ByteArrayInputStream(dados, 0, comprimento)));
+                registrosReaplicados++;
+            }
+            posicao += CABECALHO_REGISTRO + comprimento;
+            logica += CABECALHO_REGISTRO + comprimento;
+        }
+
+        if (posicao < tamanho) {
+            logger.warn("Journal com " + (tamanho - posicao) + " bytes invalidos no fim (escrita interrompida); "
+                + "descartados a partir da posicao " + posicao);
+            canal.truncate(posicao);
+            canal.force(true);
+        }
+        if (logica < desde) {
+            throw new IOException("Journal termina na posicao " + logica + ", antes do snapshot (" + desde + ")");
+        }
+        return logica;
+    }
+
+    private static void escreverCabecalho(FileChannel canal, long base) throws IOException {
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO)
+            .putInt(MAGICO)
+            .putInt(VERSAO_FORMATO)
+            .putLong(base);
+        cabecalho.flip();
+        while (cabecalho.hasRemaining()) {
+            canal.write(cabecalho, TAMANHO_CABECALHO - cabecalho.remaining());
+        }
+    }
+
+    /**
+     * Posicao no arquivo atual de uma posicao logica
+     */
+    private long posicaoNoArquivo(long logica) {
+        return logica - base + tamanhoCabecalho;
+    }
+
+    private void aplicar(DataInput dados) throws IOException {
+        byte operacao = dados.readByte();
+        switch (operacao) {
+            case OP_ITEM: {
+                ItemBiblioteca item = CodecItem.ler(dados);
+                long versao = item.getVersao();
+                memoria.salvar(item);
+                item.setVersao(versao);
+                break;
+            }
+            case OP_SITUACAO: {
+                String codigo = dados.readUTF();
+                boolean emprestado = dados.readBoolean();
+                long versao = dados.readLong();
+                ItemBiblioteca item = memoria.buscarPorCodigo(codigo).orElse(null);
+                if (item == null) {
+                    if (snapshotCarregado) {
+                        // Item removido depois, e o snapshot ja reflete a remocao
+                        break;
+                    }
+                    throw new IOException("Journal inconsistente: situacao de item inexistente " + codigo);
+                }
+                if (item.isEmprestado() != emprestado) {
+                    if (emprestado) {
+                        memoria.tentarEmprestar(codigo);
+                    } else {
+                        memoria.tentarDevolver(codigo);
+                    }
+                }
+                item.setVersao(versao);
+                break;
+            }
+            case OP_REMOCAO:
+                memoria.remover(dados.readUTF());
+                break;
+            default:
+                throw new IOException("Operacao desconhecida no journal: " + operacao);
+        }
+    }
+
+    /**
+     * Coloca o registro no buffer (e o buffer no canal, se ele encher)
+     * @return posicao do fim do registro, usada para aguardar o fsync
+     */
+    private long anexar(byte[] dados) {
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        synchronized (travaArquivo) {
+            verificarJournal();
+            try {
+                if (buffer.remaining() < CABECALHO_REGISTRO + dados.length) {
+                    descarregar();
+                }
+            } catch (IOException e) {
+                erro = e;
+                throw falha();
+            }
+            buffer.putInt(dados.length).putInt((int) crc.getValue()).put(dados);
+            posicaoEscrita += CABECALHO_REGISTRO + dados.length;
+            registros.increment();
+            // So o sincronizador espera nesta trava
+            travaArquivo.notify();
+            return posicaoEscrita;
+        }
+    }
+
+    /**
+     * Entrega o buffer ao canal. Chamado com travaArquivo.
+     */
+    private void descarregar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            posicaoGravada += canal.write(buffer, posicaoNoArquivo(posicaoGravada));
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Laco do sincronizador: espera por registros pendentes, entrega o buffer
+     * ao canal e faz um fsync para o grupo inteiro
+     */
+    private void sincronizar() {
+        while (true) {
+            try {
+                synchronized (travaArquivo) {
+                    while (!encerrado && posicaoEscrita == posicaoDuravel) {
+                        travaArquivo.wait();
+                    }
+                    if (posicaoEscrita == posicaoDuravel) {
+                        return;
+                    }
+                }
+                if (intervaloNanos > 0 && !encerrado) {
+                    // Junta mais registros no mesmo fsync
+                    LockSupport.parkNanos(intervaloNanos);
+                }
+
+                long alvo;
+                synchronized (travaArquivo) {
+                    descarregar();
+                    alvo = posicaoEscrita;
+                }
+                // Fora de travaArquivo: novos registros continuam entrando no buffer
+                synchronized (travaFsync) {
+                    canal.force(false);
+                }
+                fsyncs.increment();
+
+                synchronized (travaDuravel) {
+                    posicaoDuravel = Math.max(posicaoDuravel, alvo);
+                    travaDuravel.notifyAll();
+                }
+            } catch (IOException e) {
+                logger.error("Falha ao gravar journal: " + e.getMessage());
+                erro = e;
+                synchronized (travaDuravel) {
+                    travaDuravel.notifyAll();
+                }
+                return;
+            } catch (InterruptedException e) {
+                encerrado = true;
+            }
+        }
+    }
+
+    private void aguardarDuravel(long fim) {
+        if (!esperarFsync || posicaoDuravel >= fim) {
+            return;
+        }
+        synchronized (travaDuravel) {
+            while (posicaoDuravel < fim) {
+                if (erro != null) {
+                    throw falha();
+                }
+                try {
+                    travaDuravel.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrompido aguardando o fsync do journal", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recusa escritas antes de alterar a memoria se o journal nao puder grava-las
+     */
+    private void verificarJournal() {
+        if (erro != null) {
+            throw falha();
+        }
+        if (encerrado) {
+            throw new IllegalStateException("Journal encerrado");
+        }
+    }
+
+    private RuntimeException falha() {
+        return new RuntimeException("Erro ao gravar no journal: " + erro.getMessage(), erro);
+    }
+
+    private Object trava(String codigo) {
+        int hash = codigo.hashCode();
+        return travas[(hash ^ (hash >>> 16)) & (FAIXAS - 1)];
+    }
+
+    private static void validar(ItemBiblioteca item) {
+        if (item == null || item.getCodigo() == null) {
+            throw new IllegalArgumentException("Item ou codigo nao pode ser nulo");
+        }
+    }
+
+    // Codificacao dos registros
+
+    private interface Escrita {
+        void escrever(DataOutputStream saida) throws IOException;
+    }
+
+    private static byte[] registro(byte operacao, Escrita escrita) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream saida = new DataOutputStream(bytes)) {
+            saida.writeByte(operacao);
+            escrita.escrever(saida);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] registroItem(ItemBiblioteca item) {
+        return registro(OP_ITEM, saida -> CodecItem.escrever(saida, item));
+    }
+
+    private static byte[] registroSituacao(ItemBiblioteca item) {
+        return registro(OP_SITUACAO, saida -> {
+            saida.writeUTF(item.getCodigo());
+            saida.writeBoolean(item.isEmprestado());
+            saida.writeLong(item.getVersao());
+        });
+    }
+
+    // Estatisticas
+
+    public long getRegistros() {
+        return registros.sum();
+    }
+
+    public long getFsyncs() {
+        return fsyncs.sum();
+    }
+
+    public long getRegistrosReaplicados() {
+        return registrosReaplicados;
+    }
+
+    public long getItensDoSnapshot() {
+        return itensDoSnapshot;
+    }
+
+    /**
+     * Retorna um retrato das estatisticas do journal
+     */
+    public Map<String, Object> estatisticas() {
+        long totalRegistros = registros.sum();
+        long totalFsyncs = fsyncs.sum();
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("arquivo", arquivo.toString());
+        synchronized (travaArquivo) {
+            dados.put("bytes", posicaoEscrita);
+        }
+        dados.put("bytesDuraveis", posicaoDuravel);
+        dados.put("registros", totalRegistros);
+        dados.put("fsyncs", totalFsyncs);
+        dados.put("registrosPorFsync", String.format("%.1f", totalFsyncs == 0 ? 0.0 : (double) totalRegistros / totalFsyncs));
+        dados.put("itensDoSnapshot", itensDoSnapshot);
+        dados.put("registrosReaplicados", registrosReaplicados);
+        dados.put("tempoInicializacaoMs", tempoInicializacaoMs);
+        synchronized (this) {
+            dados.put("snapshotsGravados", snapshotsGravados);
+            dados.put("duracaoUltimoSnapshotMs", duracaoUltimoSnapshotMs);
+        }
+        return dados;
+    }
+}
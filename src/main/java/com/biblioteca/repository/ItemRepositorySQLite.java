@@ -1,11 +1,26 @@
 package com.biblioteca.repository;
 
+import com.biblioteca.config.ConfigManager;
 import com.biblioteca.config.DatabaseConfig;
+import com.biblioteca.exception.ConflitoVersaoException;
 import com.biblioteca.model.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementação do Repository usando SQLite
@@ -13,6 +28,40 @@ import java.util.Optional;
  */
 public class ItemRepositorySQLite implements ItemRepository {
     
+    /**
+     * Consulta base que traz o item e os dados do seu subtipo em uma unica linha.
+     * Evita o padrao N+1 (uma consulta extra por item) nas listagens.
+     */
+    private static final String SQL_SELECT_ITEM =
+        "SELECT i.id, i.codigo, i.titulo, i.tipo, i.emprestado, i.version, " +
+        "l.id AS livro_id, l.autor, l.numero_paginas, l.isbn, " +
+        "r.id AS revista_id, r.edicao, r.mes_ano, r.editora, " +
+        "d.id AS dvd_id, d.diretor, d.duracao_minutos, d.genero " +
+        "FROM itens_biblioteca i " +
+        "LEFT JOIN livros l ON l.item_id = i.id " +
+        "LEFT JOIN revistas r ON r.item_id = i.id " +
+        "LEFT JOIN dvds d ON d.item_id = i.id";
+    
+    // Linhas buscadas por vez pelos cursores de streamTodos()
+    private static final int TAMANHO_FETCH =
+        ConfigManager.getInstance().getInt("db.stream.fetch.size", 500);
+    
+    // SQL da gravacao em lote: os subtipos localizam o item pelo codigo,
+    // dispensando a leitura do ID gerado linha a linha
+    private static final String SQL_EXISTE_CODIGO = "SELECT 1 FROM itens_biblioteca WHERE codigo = ?";
+    private static final String SQL_VERSAO_ATUAL = "SELECT emprestado, version FROM itens_biblioteca WHERE codigo = ?";
+    private static final String SQL_INSERT_ITEM =
+        "INSERT INTO itens_biblioteca (codigo, titulo, tipo, emprestado) VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_LIVRO =
+        "INSERT INTO livros (item_id, autor, numero_paginas, isbn) " +
+        "VALUES ((SELECT id FROM itens_biblioteca WHERE codigo = ?), ?, ?, ?)";
+    private static final String SQL_INSERT_REVISTA =
+        "INSERT INTO revistas (item_id, edicao, mes_ano, editora) " +
+        "VALUES ((SELECT id FROM itens_biblioteca WHERE codigo = ?), ?, ?, ?)";
+    private static final String SQL_INSERT_DVD =
+        "INSERT INTO dvds (item_id, diretor, duracao_minutos, genero) " +
+        "VALUES ((SELECT id FROM itens_biblioteca WHERE codigo = ?), ?, ?, ?)";
+    
     @Override
     public void salvar(ItemBiblioteca item) {
         String sqlItem = "INSERT INTO itens_biblioteca (codigo, titulo, tipo, emprestado) VALUES (?, ?, ?, ?)";
@@ -87,9 +136,143 @@ public class ItemRepositorySQLite implements ItemRepository {
         }
     }
     
+    /**
+     * Grava os itens em blocos, com um executeBatch por tabela e um commit por bloco.
+     * Se o batch de um bloco falhar, o bloco e refeito item a item com savepoints,
+     * de forma que apenas os itens invalidos ficam de fora.
+     */
+    @Override
+    public ResultadoLote salvarEmLote(Collection<? extends ItemBiblioteca> itens, int tamanhoLote) {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("Tamanho do lote deve ser maior que zero");
+        }
+        
+        ResultadoLote resultado = new ResultadoLote();
+        Set<String> codigosVistos = new HashSet<>();
+        List<ItemBiblioteca> bloco = new ArrayList<>(Math.min(tamanhoLote, itens.size()));
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            
+            for (ItemBiblioteca item : itens) {
+                if (item == null || item.getCodigo() == null) {
+                    resultado.registrarFalha(null, "Item ou codigo nao pode ser nulo");
+                    continue;
+                }
+                if (!codigosVistos.add(item.getCodigo())) {
+                    resultado.registrarFalha(item.getCodigo(), "Codigo repetido no lote");
+                    continue;
+                }
+                
+                bloco.add(item);
+                if (bloco.size() == tamanhoLote) {
+                    gravarBloco(conn, bloco, resultado);
+                    bloco.clear();
+                }
+            }
+            
+            if (!bloco.isEmpty()) {
+                gravarBloco(conn, bloco, resultado);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao salvar lote de itens: " + e.getMessage(), e);
+        }
+        
+        return resultado;
+    }
+    
+    private void gravarBloco(Connection conn, List<ItemBiblioteca> bloco, ResultadoLote resultado) throws SQLException {
+        List<ItemBiblioteca> novos = new ArrayList<>(bloco.size());
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_EXISTE_CODIGO)) {
+            for (ItemBiblioteca item : bloco) {
+                pstmt.setString(1, item.getCodigo());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        resultado.registrarFalha(item.getCodigo(), "Item ja existe");
+                    } else {
+                        novos.add(item);
+                    }
+                }
+            }
+        }
+        
+        if (novos.isEmpty()) {
+            conn.commit();
+            return;
+        }
+        
+        try {
+            executarBatch(conn, novos);
+            conn.commit();
+            resultado.registrarSalvos(novos.size());
+        } catch (SQLException e) {
+            conn.rollback();
+            gravarIndividualmente(conn, novos, resultado);
+            conn.commit();
+        }
+    }
+    
+    private void gravarIndividualmente(Connection conn, List<ItemBiblioteca> itens, ResultadoLote resultado) throws SQLException {
+        for (ItemBiblioteca item : itens) {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                executarBatch(conn, Collections.singletonList(item));
+                conn.releaseSavepoint(savepoint);
+                resultado.registrarSalvos(1);
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                resultado.registrarFalha(item.getCodigo(), e.getMessage());
+            }
+        }
+    }
+    
+    private void executarBatch(Connection conn, List<ItemBiblioteca> itens) throws SQLException {
+        try (PreparedStatement pItem = conn.prepareStatement(SQL_INSERT_ITEM);
+             PreparedStatement pLivro = conn.prepareStatement(SQL_INSERT_LIVRO);
+             PreparedStatement pRevista = conn.prepareStatement(SQL_INSERT_REVISTA);
+             PreparedStatement pDvd = conn.prepareStatement(SQL_INSERT_DVD)) {
+            
+            for (ItemBiblioteca item : itens) {
+                pItem.setString(1, item.getCodigo());
+                pItem.setString(2, item.getTitulo());
+                pItem.setString(3, item.getTipo());
+                pItem.setBoolean(4, item.isEmprestado());
+                pItem.addBatch();
+                
+                if (item instanceof Livro) {
+                    Livro livro = (Livro) item;
+                    pLivro.setString(1, livro.getCodigo());
+                    pLivro.setString(2, livro.getAutor());
+                    pLivro.setInt(3, livro.getNumeroPaginas());
+                    pLivro.setString(4, livro.getIsbn());
+                    pLivro.addBatch();
+                } else if (item instanceof Revista) {
+                    Revista revista = (Revista) item;
+                    pRevista.setString(1, revista.getCodigo());
+                    pRevista.setInt(2, revista.getEdicao());
+                    pRevista.setString(3, revista.getMesAno());
+                    pRevista.setString(4, revista.getEditora());
+                    pRevista.addBatch();
+                } else if (item instanceof DVD) {
+                    DVD dvd = (DVD) item;
+                    pDvd.setString(1, dvd.getCodigo());
+                    pDvd.setString(2, dvd.getDiretor());
+                    pDvd.setInt(3, dvd.getDuracaoMinutos());
+                    pDvd.setString(4, dvd.getGenero());
+                    pDvd.addBatch();
+                }
+            }
+            
+            pItem.executeBatch();
+            pLivro.executeBatch();
+            pRevista.executeBatch();
+            pDvd.executeBatch();
+        }
+    }
+    
     @Override
     public Optional<ItemBiblioteca> buscarPorCodigo(String codigo) {
-        String sql = "SELECT * FROM itens_biblioteca WHERE codigo = ?";
+        String sql = SQL_SELECT_ITEM + " WHERE i.codigo = ?";
         
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -97,7 +280,7 @@ public class ItemRepositorySQLite implements ItemRepository {
             pstmt.setString(1, codigo);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(construirItem(conn, rs));
+                    return Optional.of(construirItem(rs));
                 }
             }
         } catch (SQLException e) {
@@ -109,119 +292,366 @@ public class ItemRepositorySQLite implements ItemRepository {
     
     @Override
     public List<ItemBiblioteca> buscarTodos() {
-        String sql = "SELECT * FROM itens_biblioteca ORDER BY codigo";
-        List<ItemBiblioteca> itens = new ArrayList<>();
+        String sql = SQL_SELECT_ITEM + " ORDER BY i.codigo";
         
         try (Connection conn = DatabaseConfig.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
-            while (rs.next()) {
-                itens.add(construirItem(conn, rs));
-            }
+            return construirItens(rs);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar itens: " + e.getMessage(), e);
         }
+    }
+    
+    @Override
+    public List<ItemBiblioteca> buscarPagina(String apos, int limite) {
+        // Usa o indice de codigo: custo proporcional ao tamanho da pagina
+        String sql = apos == null
+            ? SQL_SELECT_ITEM + " ORDER BY i.codigo LIMIT ?"
+            : SQL_SELECT_ITEM + " WHERE i.codigo > ? ORDER BY i.codigo LIMIT ?";
         
-        return itens;
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int parametro = 1;
+            if (apos != null) {
+                pstmt.setString(parametro++, apos);
+            }
+            pstmt.setInt(parametro, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return construirItens(rs);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar pagina de itens: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Cursor forward-only sobre o acervo: cada item e hidratado sob demanda
+     * e a conexao fica reservada ate o Stream ser fechado
+     */
+    @Override
+    public Stream<ItemBiblioteca> streamTodos() {
+        String sql = SQL_SELECT_ITEM + " ORDER BY i.codigo";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConfig.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(TAMANHO_FETCH);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            fecharRecursos(rs, pstmt, conn);
+            throw new RuntimeException("Erro ao abrir cursor de itens: " + e.getMessage(), e);
+        }
+        
+        final ResultSet cursor = rs;
+        final AutoCloseable[] recursos = { rs, pstmt, conn };
+        Spliterator<ItemBiblioteca> itens = new Spliterators.AbstractSpliterator<ItemBiblioteca>(
+                Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super ItemBiblioteca> acao) {
+                try {
+                    if (!cursor.next()) {
+                        return false;
+                    }
+                    acao.accept(construirItem(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Erro ao percorrer itens: " + e.getMessage(), e);
+                }
+            }
+        };
+        
+        return StreamSupport.stream(itens, false).onClose(() -> fecharRecursos(recursos));
+    }
+    
+    private static void fecharRecursos(AutoCloseable... recursos) {
+        for (AutoCloseable recurso : recursos) {
+            if (recurso != null) {
+                try {
+                    recurso.close();
+                } catch (Exception e) {
+                    // Fechamento best-effort: segue liberando os demais recursos
+                }
+            }
+        }
     }
     
     @Override
     public List<ItemBiblioteca> buscarPorTipo(String tipo) {
-        String sql = "SELECT * FROM itens_biblioteca WHERE tipo = ? ORDER BY codigo";
-        List<ItemBiblioteca> itens = new ArrayList<>();
+        String sql = SQL_SELECT_ITEM + " WHERE i.tipo = ? ORDER BY i.codigo";
         
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, tipo.toUpperCase());
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    itens.add(construirItem(conn, rs));
-                }
+                return construirItens(rs);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar itens por tipo: " + e.getMessage(), e);
         }
+    }
+    
+    /**
+     * Consulta o indice FTS5 (itens_busca) e ordena por bm25: termos no titulo
+     * pesam mais que no autor/diretor, que pesam mais que editora e genero
+     */
+    @Override
+    public List<ItemBiblioteca> buscarTexto(String consulta, int limite) {
+        String expressao = TextoBusca.expressaoFts(consulta);
+        if (expressao.isEmpty() || limite <= 0) {
+            return new ArrayList<>();
+        }
         
-        return itens;
+        String sql = SQL_SELECT_ITEM +
+            " JOIN itens_busca ON itens_busca.rowid = i.id" +
+            " WHERE itens_busca MATCH ?" +
+            " ORDER BY bm25(itens_busca, 10.0, 5.0, 2.0, 5.0, 1.0), i.codigo LIMIT ?";
+        
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, expressao);
+            pstmt.setInt(2, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return construirItens(rs);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar itens por texto: " + e.getMessage(), e);
+        }
     }
     
     @Override
     public List<ItemBiblioteca> buscarDisponiveis() {
-        String sql = "SELECT * FROM itens_biblioteca WHERE emprestado = FALSE ORDER BY codigo";
-        List<ItemBiblioteca> itens = new ArrayList<>();
+        String sql = SQL_SELECT_ITEM + " WHERE i.emprestado = FALSE ORDER BY i.codigo";
         
         try (Connection conn = DatabaseConfig.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
-            while (rs.next()) {
-                itens.add(construirItem(conn, rs));
-            }
+            return construirItens(rs);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar itens disponiveis: " + e.getMessage(), e);
         }
-        
-        return itens;
     }
     
     @Override
     public List<ItemBiblioteca> buscarEmprestados() {
-        String sql = "SELECT * FROM itens_biblioteca WHERE emprestado = TRUE ORDER BY codigo";
-        List<ItemBiblioteca> itens = new ArrayList<>();
+        String sql = SQL_SELECT_ITEM + " WHERE i.emprestado = TRUE ORDER BY i.codigo";
         
         try (Connection conn = DatabaseConfig.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
-            while (rs.next()) {
-                itens.add(construirItem(conn, rs));
-            }
+            return construirItens(rs);
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar itens emprestados: " + e.getMessage(), e);
         }
+    }
+    
+    /**
+     * Agrega no banco: o GROUP BY percorre so o indice (tipo, emprestado),
+     * sem ler as linhas nem as tabelas de subtipo
+     */
+    @Override
+    public EstatisticasAcervo estatisticasAcervo() {
+        String sql = "SELECT tipo, emprestado, COUNT(*) FROM itens_biblioteca GROUP BY tipo, emprestado";
         
-        return itens;
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            Map<String, Long> disponiveis = new LinkedHashMap<>();
+            Map<String, Long> emprestados = new LinkedHashMap<>();
+            while (rs.next()) {
+                (rs.getBoolean(2) ? emprestados : disponiveis).merge(rs.getString(1), rs.getLong(3), Long::sum);
+            }
+            return new EstatisticasAcervo(disponiveis, emprestados);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular estatisticas: " + e.getMessage(), e);
+        }
     }
     
+    /**
+     * Com versao informada, o DELETE so remove a linha se a versao ainda for a
+     * mesma; sem linha removida, a versao atual distingue conflito de ausencia
+     */
     @Override
-    public boolean remover(String codigo) {
-        String sql = "DELETE FROM itens_biblioteca WHERE codigo = ?";
+    public boolean remover(String codigo, long versaoEsperada) {
+        String sql = versaoEsperada == QUALQUER_VERSAO
+            ? "DELETE FROM itens_biblioteca WHERE codigo = ?"
+            : "DELETE FROM itens_biblioteca WHERE codigo = ? AND version = ?";
         
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, codigo);
+            if (versaoEsperada != QUALQUER_VERSAO) {
+                pstmt.setLong(2, versaoEsperada);
+            }
             int rowsAffected = pstmt.executeUpdate();
+            if (rowsAffected == 0 && versaoEsperada != QUALQUER_VERSAO) {
+                Long versaoAtual = buscarVersao(conn, codigo);
+                if (versaoAtual != null) {
+                    throw new ConflitoVersaoException(codigo, versaoEsperada, versaoAtual);
+                }
+            }
             return rowsAffected > 0;
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao remover item: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Atualiza pelo escritor unico e aguarda o commit do grupo
+     */
     @Override
     public void atualizar(ItemBiblioteca item) {
-        String sql = "UPDATE itens_biblioteca SET titulo = ?, emprestado = ? WHERE codigo = ?";
+        aguardarCommit(atualizarAssincrono(item), "Erro ao atualizar item");
+    }
+    
+    /**
+     * Enfileira a atualizacao no escritor unico. Atualizacoes concorrentes
+     * (emprestimos e devolucoes) sao gravadas juntas em uma so transacao.
+     * @return futuro concluido apos o commit
+     */
+    public CompletableFuture<Void> atualizarAssincrono(ItemBiblioteca item) {
+        String sql = "UPDATE itens_biblioteca SET titulo = ?, emprestado = ?, " +
+            "version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE codigo = ? AND version = ?";
+        String titulo = item.getTitulo();
+        boolean emprestado = item.isEmprestado();
+        String codigo = item.getCodigo();
+        long versao = item.getVersao();
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, item.getTitulo());
-            pstmt.setBoolean(2, item.isEmprestado());
-            pstmt.setString(3, item.getCodigo());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected == 0) {
-                throw new RuntimeException("Item nao encontrado para atualizacao");
+        return DatabaseConfig.getEscritor().submeter(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, titulo);
+                pstmt.setBoolean(2, emprestado);
+                pstmt.setString(3, codigo);
+                pstmt.setLong(4, versao);
+                
+                int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected == 0) {
+                    Long versaoAtual = buscarVersao(conn, codigo);
+                    if (versaoAtual == null) {
+                        throw new RuntimeException("Item nao encontrado para atualizacao");
+                    }
+                    throw new ConflitoVersaoException(codigo, versao, versaoAtual);
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao atualizar item: " + e.getMessage(), e);
+        }).thenRun(() -> item.setVersao(versao + 1));
+    }
+    
+    @Override
+    public ResultadoTransicao tentarEmprestar(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        return transicionar(codigo, false, true, versaoEsperada, vinculada);
+    }
+    
+    @Override
+    public ResultadoTransicao tentarDevolver(String codigo, long versaoEsperada, GravacaoVinculada vinculada) {
+        return transicionar(codigo, true, false, versaoEsperada, vinculada);
+    }
+    
+    /**
+     * Troca a situacao com um UPDATE condicional: a clausula emprestado = ?
+     * (e version = ?, se informada) faz a verificacao e a troca em um so
+     * passo, mesmo com varias instancias gravando no banco. Roda no escritor
+     * unico junto com a gravacao vinculada: se ela falhar, o savepoint da
+     * operacao desfaz as duas. O item atualizado e lido na mesma conexao.
+     */
+    private ResultadoTransicao transicionar(String codigo, boolean esperado, boolean novo, long versaoEsperada,
+                                            GravacaoVinculada vinculada) {
+        String sql = "UPDATE itens_biblioteca SET emprestado = ?, version = version + 1, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE codigo = ? AND emprestado = ?" +
+            (versaoEsperada == QUALQUER_VERSAO ? "" : " AND version = ?");
+        ResultadoTransicao[] resultado = new ResultadoTransicao[1];
+        
+        CompletableFuture<Void> commit = DatabaseConfig.getEscritor().submeter(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setBoolean(1, novo);
+                pstmt.setString(2, codigo);
+                pstmt.setBoolean(3, esperado);
+                if (versaoEsperada != QUALQUER_VERSAO) {
+                    pstmt.setLong(4, versaoEsperada);
+                }
+                if (pstmt.executeUpdate() == 1) {
+                    vinculada.gravar(conn);
+                    resultado[0] = ResultadoTransicao.realizada(buscarPorCodigo(conn, codigo));
+                    return;
+                }
+            }
+            // Nada foi alterado: item ausente, versao desatualizada ou situacao diferente
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_VERSAO_ATUAL)) {
+                pstmt.setString(1, codigo);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        resultado[0] = ResultadoTransicao.naoEncontrado();
+                    } else if (versaoEsperada != QUALQUER_VERSAO && rs.getLong("version") != versaoEsperada) {
+                        throw new ConflitoVersaoException(codigo, versaoEsperada, rs.getLong("version"));
+                    } else {
+                        resultado[0] = ResultadoTransicao.estadoInvalido();
+                    }
+                }
+            }
+        });
+        aguardarCommit(commit, novo ? "Erro ao emprestar item" : "Erro ao devolver item");
+        return resultado[0];
+    }
+    
+    /**
+     * Versao gravada do item, ou null se o codigo nao existir
+     */
+    private static Long buscarVersao(Connection conn, String codigo) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_VERSAO_ATUAL)) {
+            pstmt.setString(1, codigo);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong("version") : null;
+            }
+        }
+    }
+    
+    private ItemBiblioteca buscarPorCodigo(Connection conn, String codigo) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_SELECT_ITEM + " WHERE i.codigo = ?")) {
+            pstmt.setString(1, codigo);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? construirItem(rs) : null;
+            }
+        }
+    }
+    
+    /**
+     * Aguarda o commit de uma escrita enfileirada, repassando a falha da operacao
+     */
+    static void aguardarCommit(CompletableFuture<Void> commit, String mensagemErro) {
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new RuntimeException(mensagemErro + ": " + causa.getMessage(), causa);
         }
     }
     
-    private ItemBiblioteca construirItem(Connection conn, ResultSet rs) throws SQLException {
-        int itemId = rs.getInt("id");
+    /**
+     * Hidrata todos os itens de um ResultSet produzido por SQL_SELECT_ITEM
+     * em uma unica passada, sem consultas adicionais por linha
+     */
+    private List<ItemBiblioteca> construirItens(ResultSet rs) throws SQLException {
+        List<ItemBiblioteca> itens = new ArrayList<>();
+        while (rs.next()) {
+            itens.add(construirItem(rs));
+        }
+        return itens;
+    }
+    
+    private ItemBiblioteca construirItem(ResultSet rs) throws SQLException {
         String codigo = rs.getString("codigo");
         String titulo = rs.getString("titulo");
         String tipo = rs.getString("tipo");
@@ -231,77 +661,63 @@ public class ItemRepositorySQLite implements ItemRepository {
         
         switch (tipo) {
             case "LIVRO":
-                item = construirLivro(conn, itemId, codigo, titulo);
+                item = construirLivro(rs, codigo, titulo);
                 break;
             case "REVISTA":
-                item = construirRevista(conn, itemId, codigo, titulo);
+                item = construirRevista(rs, codigo, titulo);
                 break;
             case "DVD":
-                item = construirDVD(conn, itemId, codigo, titulo);
+                item = construirDVD(rs, codigo, titulo);
                 break;
         }
         
         if (item != null) {
             item.setEmprestado(emprestado);
+            item.setVersao(rs.getLong("version"));
         }
         
         return item;
     }
     
-    private Livro construirLivro(Connection conn, int itemId, String codigo, String titulo) throws SQLException {
-        String sql = "SELECT * FROM livros WHERE item_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, itemId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Livro(
-                        titulo,
-                        codigo,
-                        rs.getString("autor"),
-                        rs.getInt("numero_paginas"),
-                        rs.getString("isbn")
-                    );
-                }
-            }
+    private Livro construirLivro(ResultSet rs, String codigo, String titulo) throws SQLException {
+        rs.getInt("livro_id");
+        if (rs.wasNull()) {
+            return null;
         }
-        return null;
+        return new Livro(
+            titulo,
+            codigo,
+            rs.getString("autor"),
+            rs.getInt("numero_paginas"),
+            rs.getString("isbn")
+        );
     }
     
-    private Revista construirRevista(Connection conn, int itemId, String codigo, String titulo) throws SQLException {
-        String sql = "SELECT * FROM revistas WHERE item_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, itemId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Revista(
-                        titulo,
-                        codigo,
-                        rs.getInt("edicao"),
-                        rs.getString("mes_ano"),
-                        rs.getString("editora")
-                    );
-                }
-            }
+    private Revista construirRevista(ResultSet rs, String codigo, String titulo) throws SQLException {
+        rs.getInt("revista_id");
+        if (rs.wasNull()) {
+            return null;
         }
-        return null;
+        return new Revista(
+            titulo,
+            codigo,
+            rs.getInt("edicao"),
+            rs.getString("mes_ano"),
+            rs.getString("editora")
+        );
     }
     
-    private DVD construirDVD(Connection conn, int itemId, String codigo, String titulo) throws SQLException {
-        String sql = "SELECT * FROM dvds WHERE item_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, itemId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new DVD(
-                        titulo,
-                        codigo,
-                        rs.getString("diretor"),
-                        rs.getInt("duracao_minutos"),
-                        rs.getString("genero")
-                    );
-                }
-            }
+    private DVD construirDVD(ResultSet rs, String codigo, String titulo) throws SQLException {
+        rs.getInt("dvd_id");
+        if (rs.wasNull()) {
+            return null;
         }
-        return null;
+        return new DVD(
+            titulo,
+            codigo,
+            rs.getString("diretor"),
+            rs.getInt("duracao_minutos"),
+            rs.getString("genero")
+        );
     }
 }
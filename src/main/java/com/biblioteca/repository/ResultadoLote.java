@@ -0,0 +1,65 @@
+package com.biblioteca.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de uma gravacao em lote
+ * Informa quantos itens foram salvos e quais falharam (com o motivo)
+ */
+public class ResultadoLote {
+    private int totalSalvos;
+    private final List<Falha> falhas = new ArrayList<>();
+    
+    public void registrarSalvos(int quantidade) {
+        totalSalvos += quantidade;
+    }
+    
+    public void registrarFalha(String codigo, String motivo) {
+        falhas.add(new Falha(codigo, motivo));
+    }
+    
+    public int getTotalSalvos() {
+        return totalSalvos;
+    }
+    
+    public List<Falha> getFalhas() {
+        return Collections.unmodifiableList(falhas);
+    }
+    
+    public boolean isSucessoTotal() {
+        return falhas.isEmpty();
+    }
+    
+    @Override
+    public String toString() {
+        return "ResultadoLote{salvos=" + totalSalvos + ", falhas=" + falhas.size() + "}";
+    }
+    
+    /**
+     * Item que nao pode ser salvo e o motivo
+     */
+    public static class Falha {
+        private final String codigo;
+        private final String motivo;
+        
+        public Falha(String codigo, String motivo) {
+            this.codigo = codigo;
+            this.motivo = motivo;
+        }
+        
+        public String getCodigo() {
+            return codigo;
+        }
+        
+        public String getMotivo() {
+            return motivo;
+        }
+        
+        @Override
+        public String toString() {
+            return codigo + ": " + motivo;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ItemBiblioteca;
+
+/**
+ * Resultado de uma tentativa de emprestimo ou devolucao
+ * A verificacao do estado e a troca sao feitas em um unico passo atomico;
+ * o chamador so decide o que fazer com o desfecho.
+ */
+public class ResultadoTransicao {
+    
+    public enum Situacao {
+        /** Estado trocado; getItem() traz o item ja atualizado */
+        REALIZADA,
+        /** Nenhum item com o codigo informado */
+        NAO_ENCONTRADO,
+        /** O item nao estava no estado esperado (ja emprestado ou ja devolvido) */
+        ESTADO_INVALIDO
+    }
+    
+    private static final ResultadoTransicao NAO_ENCONTRADO = new ResultadoTransicao(Situacao.NAO_ENCONTRADO, null);
+    private static final ResultadoTransicao ESTADO_INVALIDO = new ResultadoTransicao(Situacao.ESTADO_INVALIDO, null);
+    
+    private final Situacao situacao;
+    private final ItemBiblioteca item;
+    
+    private ResultadoTransicao(Situacao situacao, ItemBiblioteca item) {
+        this.situacao = situacao;
+        this.item = item;
+    }
+    
+    public static ResultadoTransicao realizada(ItemBiblioteca item) {
+        return new ResultadoTransicao(Situacao.REALIZADA, item);
+    }
+    
+    public static ResultadoTransicao naoEncontrado() {
+        return NAO_ENCONTRADO;
+    }
+    
+    public static ResultadoTransicao estadoInvalido() {
+        return ESTADO_INVALIDO;
+    }
+    
+    public Situacao getSituacao() {
+        return situacao;
+    }
+    
+    public ItemBiblioteca getItem() {
+        return item;
+    }
+    
+    public boolean isRealizada() {
+        return situacao == Situacao.REALIZADA;
+    }
+    
+    @Override
+    public String toString() {
+        return "ResultadoTransicao{" + situacao + (item != null ? ", " + item.getCodigo() : "") + "}";
+    }
+}
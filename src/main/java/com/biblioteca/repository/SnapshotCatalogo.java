@@ -0,0 +1,220 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ItemBiblioteca;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Imagem binaria do acervo inteiro, para inicializar o catalogo em memoria
+ * sem reaplicar cada insercao
+ *
+ * Formato: cabecalho [MAGICO][VERSAO_FORMATO][posicao do journal][quantidade]
+ * [crc32 do corpo], seguido dos itens no formato de CodecItem (campos do
+ * subtipo, situacao e versao). A leitura mapeia o arquivo com um
+ * MappedByteBuffer e decodifica direto da pagina, sem copias intermediarias.
+ */
+public final class SnapshotCatalogo {
+
+    private static final int MAGICO = 0x42494253; // "BIBS"
+    private static final int VERSAO_FORMATO = 1;
+    private static final int TAMANHO_CABECALHO = 28;
+
+    private SnapshotCatalogo() {
+    }
+
+    /**
+     * Grava os itens e faz fsync antes de retornar. Quem chama deve gravar em
+     * um arquivo temporario e move-lo, para nunca expor um snapshot pela metade.
+     * @param posicaoJournal posicao do journal a partir da qual as escritas
+     *                       ainda precisam ser reaplicadas (0 se nao houver)
+     * @return quantidade de itens gravados
+     */
+    public static long gravar(Path destino, Stream<ItemBiblioteca> itens, long posicaoJournal) throws IOException {
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            canal.position(TAMANHO_CABECALHO);
+            CRC32 crc = new CRC32();
+            // Nao e fechado: fechar o stream fecharia o canal antes do cabecalho
+            DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(canal), crc), 1 << 16));
+
+            long quantidade = 0;
+            for (ItemBiblioteca item : (Iterable<ItemBiblioteca>) itens::iterator) {
+                CodecItem.escrever(saida, item);
+                quantidade++;
+            }
+            saida.flush();
+
+            ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO)
+                .putInt(MAGICO)
+                .putInt(VERSAO_FORMATO)
+                .putLong(posicaoJournal)
+                .putLong(quantidade)
+                .putInt((int) crc.getValue());
+            cabecalho.flip();
+            while (cabecalho.hasRemaining()) {
+                canal.write(cabecalho, TAMANHO_CABECALHO - cabecalho.remaining());
+            }
+            canal.force(true);
+            return quantidade;
+        }
+    }
+
+    /**
+     * Mapeia o snapshot, confere o CRC e entrega cada item ao consumidor
+     * @return posicao do journal registrada no snapshot
+     */
+    public static long carregar(Path origem, Consumer<ItemBiblioteca> destino) throws IOException {
+        try (FileChannel canal = FileChannel.open(origem, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho < TAMANHO_CABECALHO || tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Tamanho de snapshot invalido: " + tamanho + " bytes");
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            if (mapa.getInt() != MAGICO) {
+                throw new IOException("Arquivo nao e um snapshot da biblioteca");
+            }
+            int versao = mapa.getInt();
+            if (versao != VERSAO_FORMATO) {
+                throw new IOException("Versao de snapshot nao suportada: " + versao);
+            }
+            long posicaoJournal = mapa.getLong();
+            long quantidade = mapa.getLong();
+            int soma = mapa.getInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(mapa.duplicate());
+            if ((int) crc.getValue() != soma) {
+                throw new IOException("Snapshot corrompido (CRC invalido)");
+            }
+
+            DataInput entrada = new EntradaMapeada(mapa);
+            for (long i = 0; i < quantidade; i++) {
+                destino.accept(CodecItem.ler(entrada));
+            }
+            return posicaoJournal;
+        }
+    }
+
+    /**
+     * DataInput lendo direto de um ByteBuffer (o arquivo mapeado)
+     */
+    private static final class EntradaMapeada implements DataInput {
+        private final ByteBuffer dados;
+
+        EntradaMapeada(ByteBuffer dados) {
+            this.dados = dados;
+        }
+
+        @Override
+        public void readFully(byte[] b) {
+            dados.get(b);
+        }
+
+        @Override
+        public void readFully(byte[] b, int inicio, int tamanho) {
+            dados.get(b, inicio, tamanho);
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            int pulados = Math.min(n, dados.remaining());
+            dados.position(dados.position() + pulados);
+            return pulados;
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return dados.get() != 0;
+        }
+
+        @Override
+        public byte readByte() {
+            return dados.get();
+        }
+
+        @Override
+        public int readUnsignedByte() {
+            return dados.get() & 0xFF;
+        }
+
+        @Override
+        public short readShort() {
+            return dados.getShort();
+        }
+
+        @Override
+        public int readUnsignedShort() {
+            return dados.getShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() {
+            return dados.getChar();
+        }
+
+        @Override
+        public int readInt() {
+            return dados.getInt();
+        }
+
+        @Override
+        public long readLong() {
+            return dados.getLong();
+        }
+
+        @Override
+        public float readFloat() {
+            return dados.getFloat();
+        }
+
+        @Override
+        public double readDouble() {
+            return dados.getDouble();
+        }
+
+        /**
+         * Contrato de DataInput: um byte por caractere ate \n, \r ou \r\n;
+         * null se nao houver mais bytes
+         */
+        @Override
+        public String readLine() {
+            if (!dados.hasRemaining()) {
+                return null;
+            }
+            StringBuilder linha = new StringBuilder();
+            while (dados.hasRemaining()) {
+                char c = (char) (dados.get() & 0xFF);
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    if (dados.hasRemaining() && dados.get(dados.position()) == '\n') {
+                        dados.get();
+                    }
+                    break;
+                }
+                linha.append(c);
+            }
+            return linha.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
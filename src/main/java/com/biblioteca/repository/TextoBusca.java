@@ -0,0 +1,108 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.DVD;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Revista;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizacao de texto para a busca textual
+ * Quebra o texto em termos sem acentos e em minusculas, do mesmo jeito que o
+ * tokenizador unicode61 (remove_diacritics) do FTS5, para que os repositorios
+ * em memoria e SQLite encontrem os mesmos itens.
+ */
+final class TextoBusca {
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Peso de cada campo pesquisavel, na ordem de campos(): titulo, autor,
+     * editora, diretor, genero (os mesmos pesos passados ao bm25 no SQLite)
+     */
+    static final double[] PESOS = { 10.0, 5.0, 2.0, 5.0, 1.0 };
+
+    /**
+     * Tamanho minimo do ultimo termo para ser tratado como prefixo; termos
+     * mais curtos casariam com boa parte do vocabulario
+     */
+    static final int PREFIXO_MINIMO = 3;
+
+    private TextoBusca() {
+    }
+
+    /**
+     * Campos pesquisaveis de um item; os que nao se aplicam ao tipo ficam nulos
+     */
+    static String[] campos(ItemBiblioteca item) {
+        String[] campos = new String[PESOS.length];
+        campos[0] = item.getTitulo();
+        if (item instanceof Livro) {
+            campos[1] = ((Livro) item).getAutor();
+        } else if (item instanceof Revista) {
+            campos[2] = ((Revista) item).getEditora();
+        } else if (item instanceof DVD) {
+            campos[3] = ((DVD) item).getDiretor();
+            campos[4] = ((DVD) item).getGenero();
+        }
+        return campos;
+    }
+
+    /**
+     * Remove acentos e converte para minusculas ("Ação" -> "acao")
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        return DIACRITICOS.matcher(decomposto).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Termos normalizados do texto, na ordem em que aparecem
+     */
+    static List<String> termos(String texto) {
+        List<String> termos = new ArrayList<>();
+        for (String termo : SEPARADORES.split(normalizar(texto))) {
+            if (!termo.isEmpty()) {
+                termos.add(termo);
+            }
+        }
+        return termos;
+    }
+
+    /**
+     * Monta uma expressao MATCH do FTS5 em que todos os termos devem aparecer.
+     * Termos completos casam palavras inteiras; so o ultimo, ainda sendo
+     * digitado, vira prefixo ("clean cod" -> "clean" "cod"*). Os termos vao
+     * entre aspas, entao operadores digitados pelo usuario nao sao interpretados.
+     * @return expressao vazia se o texto nao tiver nenhum termo
+     */
+    static String expressaoFts(String texto) {
+        List<String> termos = termos(texto);
+        StringBuilder expressao = new StringBuilder();
+        for (int i = 0; i < termos.size(); i++) {
+            if (expressao.length() > 0) {
+                expressao.append(' ');
+            }
+            expressao.append('"').append(termos.get(i)).append('"');
+            if (ehPrefixo(termos, i)) {
+                expressao.append('*');
+            }
+        }
+        return expressao.toString();
+    }
+
+    /**
+     * Indica se o termo na posicao indice deve casar como prefixo
+     */
+    static boolean ehPrefixo(List<String> termos, int indice) {
+        return indice == termos.size() - 1 && termos.get(indice).length() >= PREFIXO_MINIMO;
+    }
+}
@@ -6,6 +6,7 @@ import com.biblioteca.model.usuario.TipoUsuario;
 import com.biblioteca.model.usuario.Usuario;
 import com.biblioteca.model.usuario.UsuarioComum;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -28,7 +29,7 @@ public class UsuarioRepositoryImpl implements UsuarioRepository {
     private void inicializarUsuariosDemonstracao() {
         // Admin
         Usuario admin = new Admin(
-            UUID.randomUUID().toString(),
+            idDemonstracao("admin@biblioteca.com"),
             "Administrador",
             "admin@biblioteca.com",
             "senha123"
@@ -37,7 +38,7 @@ public class UsuarioRepositoryImpl implements UsuarioRepository {
 
         // Bibliotecário
         Usuario bibliotecario = new Bibliotecario(
-            UUID.randomUUID().toString(),
+            idDemonstracao("bibliotecario@biblioteca.com"),
             "João Silva",
             "bibliotecario@biblioteca.com",
             "senha123"
@@ -46,7 +47,7 @@ public class UsuarioRepositoryImpl implements UsuarioRepository {
 
         // Usuário Comum
         Usuario usuarioComum = new UsuarioComum(
-            UUID.randomUUID().toString(),
+            idDemonstracao("usuario@biblioteca.com"),
             "Maria Santos",
             "usuario@biblioteca.com",
             "senha123"
@@ -54,6 +55,14 @@ public class UsuarioRepositoryImpl implements UsuarioRepository {
         usuarios.put(usuarioComum.getId(), usuarioComum);
     }
 
+    /**
+     * ID derivado do email: o mesmo a cada inicialização, para que os
+     * empréstimos gravados no banco continuem ligados ao usuário
+     */
+    private static String idDemonstracao(String email) {
+        return UUID.nameUUIDFromBytes(email.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
     @Override
     public void salvar(Usuario usuario) {
         usuarios.put(usuario.getId(), usuario);
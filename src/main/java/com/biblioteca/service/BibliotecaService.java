@@ -1,14 +1,29 @@
 package com.biblioteca.service;
 
+import com.biblioteca.config.ConfigManager;
+import com.biblioteca.dto.EmprestimoDTO;
+import com.biblioteca.dto.EstatisticasDTO;
 import com.biblioteca.dto.ItemDTO;
 import com.biblioteca.dto.ItemResponseDTO;
+import com.biblioteca.dto.PaginaDTO;
 import com.biblioteca.exception.*;
 import com.biblioteca.model.*;
+import com.biblioteca.model.usuario.Permissao;
+import com.biblioteca.model.usuario.Usuario;
+import com.biblioteca.repository.EmprestimoRepository;
+import com.biblioteca.repository.EmprestimoRepositoryImpl;
+import com.biblioteca.repository.EstatisticasAcervo;
+import com.biblioteca.repository.GravacaoVinculada;
 import com.biblioteca.repository.ItemRepository;
+import com.biblioteca.repository.ResultadoTransicao;
 import com.biblioteca.util.Logger;
 import com.biblioteca.util.Validador;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -20,11 +35,29 @@ import java.util.stream.Collectors;
  */
 public class BibliotecaService {
     private static final Logger logger = Logger.getLogger(BibliotecaService.class);
+    private static final int LIMITE_MAXIMO_PAGINA =
+        ConfigManager.getInstance().getInt("api.paginacao.limite.maximo", 500);
     private final ItemRepository repository;
+    private final EmprestimoRepository emprestimoRepository;
+    private final ContadoresAcervo contadores = new ContadoresAcervo();
+    private final LimiteEmprestimos limiteEmprestimos = new LimiteEmprestimos(
+        ConfigManager.getInstance().getInt("biblioteca.max.emprestimos.por.usuario", 5));
     
+    /**
+     * Servico com os registros de emprestimo mantidos apenas em memoria
+     */
     public BibliotecaService(ItemRepository repository) {
+        this(repository, new EmprestimoRepositoryImpl());
+    }
+    
+    public BibliotecaService(ItemRepository repository, EmprestimoRepository emprestimoRepository) {
         this.repository = repository;
-        logger.info("BibliotecaService inicializado");
+        this.emprestimoRepository = emprestimoRepository;
+        long inicio = System.currentTimeMillis();
+        long contados = contadores.reconstruir(repository);
+        long emprestimosAtivos = limiteEmprestimos.reconstruir(emprestimoRepository);
+        logger.info("BibliotecaService inicializado (" + contados + " itens e " + emprestimosAtivos
+            + " emprestimos ativos contados em " + (System.currentTimeMillis() - inicio) + " ms)");
     }
     
     /**
@@ -50,58 +83,180 @@ public class BibliotecaService {
         }
         
         repository.salvar(item);
+        contadores.itemAdicionado(item.getTipo(), item.isEmprestado());
         logger.info("Item adicionado com sucesso: " + dto.getCodigo());
         return converterParaResponseDTO(item);
     }
     
     /**
-     * Empresta um item do acervo
+     * Empresta um item do acervo, sem usuario nem registro de emprestimo
+     * (aplicacao de console, que nao tem login). A API web usa a versao com
+     * o usuario autenticado.
      * @param codigo Codigo do item a ser emprestado
      * @return ItemResponseDTO com os dados atualizados do item
      * @throws ItemNaoEncontradoException se o item nao existir
      * @throws OperacaoInvalidaException se o item ja estiver emprestado
      */
     public ItemResponseDTO emprestarItem(String codigo) {
+        return trocarParaEmprestado(codigo, ItemRepository.QUALQUER_VERSAO, GravacaoVinculada.NENHUMA);
+    }
+    
+    /**
+     * Troca a situacao do item para emprestado, somente se ele ainda estiver
+     * na versao informada, gravando o registro na mesma unidade da troca
+     * @param versaoEsperada Versao lida pelo cliente, ou ItemRepository.QUALQUER_VERSAO
+     * @throws ConflitoVersaoException se o item foi alterado desde a leitura
+     */
+    private ItemResponseDTO trocarParaEmprestado(String codigo, long versaoEsperada, GravacaoVinculada registro) {
         logger.debug("Tentando emprestar item: " + codigo);
         Validador.validarNaoVazio(codigo, "codigo");
         
-        ItemBiblioteca item = repository.buscarPorCodigo(codigo)
-            .orElseThrow(() -> new ItemNaoEncontradoException(codigo));
-        
-        if (item.isEmprestado()) {
-            logger.warn("Tentativa de emprestar item ja emprestado: " + codigo);
-            throw new OperacaoInvalidaException("Item ja esta emprestado");
+        ResultadoTransicao resultado = repository.tentarEmprestar(codigo, versaoEsperada, registro);
+        switch (resultado.getSituacao()) {
+            case NAO_ENCONTRADO:
+                throw new ItemNaoEncontradoException(codigo);
+            case ESTADO_INVALIDO:
+                logger.warn("Tentativa de emprestar item ja emprestado: " + codigo);
+                throw new OperacaoInvalidaException("Item ja esta emprestado");
+            default:
+                contadores.itemEmprestado(resultado.getItem().getTipo());
+                logger.info("Item emprestado com sucesso: " + codigo);
+                return converterParaResponseDTO(resultado.getItem());
         }
-        
-        item.setEmprestado(true);
-        repository.atualizar(item);
-        logger.info("Item emprestado com sucesso: " + codigo);
-        return converterParaResponseDTO(item);
     }
     
     /**
-     * Devolve um item emprestado
+     * Empresta um item em nome de um usuario, registrando o emprestimo na
+     * mesma unidade de gravacao da troca de situacao do item.
+     * A vaga do usuario e reservada antes da troca de situacao do item, de
+     * modo que o limite por usuario vale mesmo com pedidos simultaneos.
+     * @param versaoEsperada Versao lida pelo cliente, ou ItemRepository.QUALQUER_VERSAO
+     * @param usuario Usuario autenticado
+     * @throws AutenticacaoException se nao houver usuario
+     * @throws PermissaoNegadaException se o usuario nao pode emprestar itens
+     * @throws OperacaoInvalidaException se o limite foi atingido ou o item ja esta emprestado
+     * @throws ConflitoVersaoException se o item foi alterado desde a leitura
+     */
+    public ItemResponseDTO emprestarItem(String codigo, long versaoEsperada, Usuario usuario) {
+        if (usuario == null) {
+            throw new AutenticacaoException("Autenticação necessária para emprestar itens");
+        }
+        if (!usuario.temPermissao(Permissao.EMPRESTAR_QUALQUER_ITEM)
+                && !usuario.temPermissao(Permissao.EMPRESTAR_PROPRIO_ITEM)) {
+            throw new PermissaoNegadaException("Você não tem permissão para emprestar itens");
+        }
+        if (!limiteEmprestimos.reservar(usuario.getId())) {
+            logger.warn("Limite de emprestimos atingido: usuario=" + usuario.getEmail());
+            throw new OperacaoInvalidaException("Limite de " + limiteEmprestimos.getMaximo()
+                + " emprestimos ativos por usuario atingido");
+        }
+        boolean registrado = false;
+        try {
+            // Sem o registro o item nao fica emprestado: a falha desfaz a troca
+            ItemResponseDTO item = trocarParaEmprestado(codigo, versaoEsperada,
+                emprestimoRepository.registroVinculado(new Emprestimo(usuario.getId(), codigo)));
+            registrado = true;
+            return item;
+        } finally {
+            if (!registrado) {
+                limiteEmprestimos.liberar(usuario.getId());
+            }
+        }
+    }
+    
+    /**
+     * Devolve um item emprestado, sem verificar quem o emprestou (aplicacao
+     * de console). A API web usa a versao com o usuario autenticado.
      * @param codigo Codigo do item a ser devolvido
      * @return ItemResponseDTO com os dados atualizados do item
      * @throws ItemNaoEncontradoException se o item nao existir
      * @throws OperacaoInvalidaException se o item nao estiver emprestado
      */
     public ItemResponseDTO devolverItem(String codigo) {
+        return trocarParaDevolvido(codigo, ItemRepository.QUALQUER_VERSAO, ativo -> { });
+    }
+    
+    /**
+     * Troca a situacao do item para disponivel, somente se ele ainda estiver
+     * na versao informada, e encerra o emprestimo registrado na mesma unidade
+     * de gravacao da troca
+     * @param versaoEsperada Versao lida pelo cliente, ou ItemRepository.QUALQUER_VERSAO
+     * @param verificar recebe o emprestimo ativo antes do encerramento; se lancar, nada e gravado
+     * @throws ConflitoVersaoException se o item foi alterado desde a leitura
+     */
+    private ItemResponseDTO trocarParaDevolvido(String codigo, long versaoEsperada,
+                                                Consumer<Optional<Emprestimo>> verificar) {
         logger.debug("Tentando devolver item: " + codigo);
         Validador.validarNaoVazio(codigo, "codigo");
         
-        ItemBiblioteca item = repository.buscarPorCodigo(codigo)
-            .orElseThrow(() -> new ItemNaoEncontradoException(codigo));
-        
-        if (!item.isEmprestado()) {
-            logger.warn("Tentativa de devolver item nao emprestado: " + codigo);
-            throw new OperacaoInvalidaException("Item nao esta emprestado");
+        Emprestimo[] encerrado = new Emprestimo[1];
+        ResultadoTransicao resultado = repository.tentarDevolver(codigo, versaoEsperada,
+            emprestimoRepository.encerramentoVinculado(codigo, LocalDateTime.now(), ativo -> {
+                verificar.accept(ativo);
+                encerrado[0] = ativo.orElse(null);
+            }));
+        switch (resultado.getSituacao()) {
+            case NAO_ENCONTRADO:
+                throw new ItemNaoEncontradoException(codigo);
+            case ESTADO_INVALIDO:
+                logger.warn("Tentativa de devolver item nao emprestado: " + codigo);
+                throw new OperacaoInvalidaException("Item nao esta emprestado");
+            default:
+                contadores.itemDevolvido(resultado.getItem().getTipo());
+                if (encerrado[0] != null) {
+                    limiteEmprestimos.liberar(encerrado[0].getUsuarioId());
+                }
+                logger.info("Item devolvido com sucesso: " + codigo);
+                return converterParaResponseDTO(resultado.getItem());
         }
-        
-        item.setEmprestado(false);
-        repository.atualizar(item);
-        logger.info("Item devolvido com sucesso: " + codigo);
-        return converterParaResponseDTO(item);
+    }
+    
+    /**
+     * Devolve um item em nome de um usuario. Sem DEVOLVER_QUALQUER_ITEM, o
+     * usuario so pode devolver itens com emprestimo registrado em seu nome;
+     * a verificacao roda na mesma unidade de gravacao da devolucao.
+     * @param versaoEsperada Versao lida pelo cliente, ou ItemRepository.QUALQUER_VERSAO
+     * @param usuario Usuario autenticado
+     * @throws AutenticacaoException se nao houver usuario
+     * @throws PermissaoNegadaException se o usuario nao pode devolver o item
+     * @throws ConflitoVersaoException se o item foi alterado desde a leitura
+     */
+    public ItemResponseDTO devolverItem(String codigo, long versaoEsperada, Usuario usuario) {
+        if (usuario == null) {
+            throw new AutenticacaoException("Autenticação necessária para devolver itens");
+        }
+        if (usuario.temPermissao(Permissao.DEVOLVER_QUALQUER_ITEM)) {
+            return trocarParaDevolvido(codigo, versaoEsperada, ativo -> { });
+        }
+        if (!usuario.temPermissao(Permissao.DEVOLVER_PROPRIO_ITEM)) {
+            throw new PermissaoNegadaException("Você não tem permissão para devolver itens");
+        }
+        return trocarParaDevolvido(codigo, versaoEsperada, ativo -> {
+            if (!ativo.isPresent() || !ativo.get().getUsuarioId().equals(usuario.getId())) {
+                throw new PermissaoNegadaException("Você só pode devolver itens emprestados por você");
+            }
+        });
+    }
+    
+    /**
+     * Emprestimos ativos do usuario, pelo indice de emprestimos por usuario
+     * @throws PermissaoNegadaException se o usuario nao pode listar emprestimos
+     */
+    public List<EmprestimoDTO> listarEmprestimosDoUsuario(Usuario usuario) {
+        if (!usuario.temPermissao(Permissao.LISTAR_PROPRIOS_EMPRESTIMOS)
+                && !usuario.temPermissao(Permissao.LISTAR_TODOS_EMPRESTIMOS)) {
+            throw new PermissaoNegadaException("Você não tem permissão para listar empréstimos");
+        }
+        return emprestimoRepository.buscarAtivosPorUsuario(usuario.getId()).stream()
+            .map(this::converterEmprestimoParaDTO)
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Quantidade de emprestimos ativos do usuario, lida do contador em memoria
+     */
+    public int contarEmprestimosAtivos(String usuarioId) {
+        return limiteEmprestimos.ativos(usuarioId);
     }
     
     /**
@@ -124,6 +279,47 @@ public class BibliotecaService {
             .collect(Collectors.toList());
     }
     
+    /**
+     * Lista uma pagina do acervo em ordem de codigo
+     * @param cursor Cursor retornado pela pagina anterior, ou null para a primeira
+     * @param limite Quantidade maxima de itens (limitada por api.paginacao.limite.maximo)
+     * @return Pagina com os itens e o cursor da proxima pagina
+     * @throws ValidacaoException se o limite ou o cursor forem invalidos
+     */
+    public PaginaDTO<ItemResponseDTO> listarPagina(String cursor, int limite) {
+        Validador.validarPositivo(limite, "limit");
+        int limiteEfetivo = Math.min(limite, LIMITE_MAXIMO_PAGINA);
+        String apos = cursor == null || cursor.isEmpty() ? null : decodificarCursor(cursor);
+        
+        // Busca um item a mais apenas para saber se existe proxima pagina
+        List<ItemBiblioteca> itens = repository.buscarPagina(apos, limiteEfetivo + 1);
+        String proximoCursor = null;
+        if (itens.size() > limiteEfetivo) {
+            itens = itens.subList(0, limiteEfetivo);
+            proximoCursor = codificarCursor(itens.get(limiteEfetivo - 1).getCodigo());
+        }
+        
+        List<ItemResponseDTO> dtos = itens.stream()
+            .map(this::converterParaResponseDTO)
+            .collect(Collectors.toList());
+        return new PaginaDTO<>(dtos, proximoCursor, limiteEfetivo);
+    }
+    
+    /**
+     * Busca itens por texto no titulo, autor, editora, diretor e genero
+     * @param consulta Termos digitados pelo usuario
+     * @param limite Quantidade maxima de itens (limitada por api.paginacao.limite.maximo)
+     * @return Itens encontrados, do mais relevante para o menos relevante
+     * @throws ValidacaoException se a consulta for vazia ou o limite invalido
+     */
+    public List<ItemResponseDTO> buscarTexto(String consulta, int limite) {
+        Validador.validarNaoVazio(consulta, "q");
+        Validador.validarPositivo(limite, "limit");
+        return repository.buscarTexto(consulta.trim(), Math.min(limite, LIMITE_MAXIMO_PAGINA)).stream()
+            .map(this::converterParaResponseDTO)
+            .collect(Collectors.toList());
+    }
+    
     /**
      * Lista itens disponíveis
      * @return Lista de itens disponiveis para emprestimo
@@ -144,13 +340,64 @@ public class BibliotecaService {
             .collect(Collectors.toList());
     }
     
+    /**
+     * Contagens do acervo por tipo e situacao, lidas dos contadores em memoria
+     * (sem consultar o repositorio)
+     * @return Totais de itens, disponiveis, emprestados e por tipo
+     */
+    public EstatisticasDTO obterEstatisticas() {
+        EstatisticasAcervo estatisticas = contadores.instantaneo();
+        return new EstatisticasDTO(
+            estatisticas.getTotal(),
+            estatisticas.getDisponiveis(),
+            estatisticas.getEmprestados(),
+            estatisticas.getPorTipo()
+        );
+    }
+    
     /**
      * Remove um item do acervo
      * @param codigo Codigo do item a ser removido
      * @return true se removido com sucesso
      */
     public boolean removerItem(String codigo) {
-        return repository.remover(codigo);
+        return removerItem(codigo, ItemRepository.QUALQUER_VERSAO);
+    }
+    
+    /**
+     * Remove um item somente se ele ainda estiver na versao informada
+     * @throws ConflitoVersaoException se o item foi alterado desde a leitura
+     */
+    public boolean removerItem(String codigo, long versaoEsperada) {
+        // Os contadores precisam do tipo e da situacao do item removido: remove
+        // na versao lida e, se ele mudou entre a leitura e a remocao, le de novo
+        while (true) {
+            Optional<ItemBiblioteca> atual = repository.buscarPorCodigo(codigo);
+            if (!atual.isPresent()) {
+                return false;
+            }
+            long versaoLida = atual.get().getVersao();
+            boolean emprestado = atual.get().isEmprestado();
+            long versao = versaoEsperada == ItemRepository.QUALQUER_VERSAO ? versaoLida : versaoEsperada;
+            if (versao != versaoLida) {
+                throw new ConflitoVersaoException(codigo, versao, versaoLida);
+            }
+            try {
+                if (!repository.remover(codigo, versao)) {
+                    return false;
+                }
+            } catch (ConflitoVersaoException e) {
+                if (versaoEsperada != ItemRepository.QUALQUER_VERSAO) {
+                    throw e;
+                }
+                continue;
+            }
+            contadores.itemRemovido(atual.get().getTipo(), emprestado);
+            if (emprestado) {
+                encerrarEmprestimoAtivo(codigo);
+            }
+            return true;
+        }
     }
     
     // Métodos auxiliares privados
@@ -181,6 +428,19 @@ public class BibliotecaService {
         }
     }
     
+    private String codificarCursor(String codigo) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(codigo.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private String decodificarCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ValidacaoException("after", "cursor invalido");
+        }
+    }
+    
     private ItemBiblioteca criarItemDoDTO(ItemDTO dto) {
         switch (dto.getTipo().toUpperCase()) {
             case "LIVRO":
@@ -212,6 +472,28 @@ public class BibliotecaService {
         }
     }
     
+    /**
+     * Encerra o registro do emprestimo ativo de um item removido, se houver,
+     * e libera a vaga do usuario. Itens emprestados sem usuario nao tem registro.
+     */
+    private void encerrarEmprestimoAtivo(String codigo) {
+        emprestimoRepository.buscarAtivoPorItem(codigo).ifPresent(emprestimo -> {
+            if (emprestimoRepository.encerrar(emprestimo.getId(), LocalDateTime.now())) {
+                limiteEmprestimos.liberar(emprestimo.getUsuarioId());
+            }
+        });
+    }
+    
+    private EmprestimoDTO converterEmprestimoParaDTO(Emprestimo emprestimo) {
+        return new EmprestimoDTO(
+            emprestimo.getId(),
+            emprestimo.getCodigoItem(),
+            emprestimo.getUsuarioId(),
+            emprestimo.getDataEmprestimo().toString(),
+            emprestimo.getDataDevolucao() == null ? null : emprestimo.getDataDevolucao().toString()
+        );
+    }
+    
     private ItemResponseDTO converterParaResponseDTO(ItemBiblioteca item) {
         String detalhes = construirDetalhes(item);
         return new ItemResponseDTO(
@@ -219,7 +501,8 @@ public class BibliotecaService {
             item.getTitulo(),
             item.getCodigo(),
             item.isEmprestado(),
-            detalhes
+            detalhes,
+            item.getVersao()
         );
     }
     
@@ -0,0 +1,124 @@
+package com.biblioteca.service;
+
+import com.biblioteca.repository.EstatisticasAcervo;
+import com.biblioteca.repository.ItemRepository;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contagens do acervo mantidas a cada escrita, uma celula por tipo x situacao
+ *
+ * O BibliotecaService avisa cada adicao, emprestimo, devolucao e remocao bem
+ * sucedida; as consultas somam poucas celulas em memoria, sem acessar o
+ * repositorio. LongAdder evita disputa entre escritores concorrentes.
+ * As somas nao sao um retrato atomico: uma transicao em andamento pode
+ * aparecer em uma celula e ainda nao na outra.
+ */
+public class ContadoresAcervo {
+
+    private static final int DISPONIVEL = 0;
+    private static final int EMPRESTADO = 1;
+
+    private final ConcurrentMap<String, LongAdder[]> celulas = new ConcurrentHashMap<>();
+
+    public ContadoresAcervo() {
+        for (String tipo : EstatisticasAcervo.TIPOS) {
+            celulas(tipo);
+        }
+    }
+
+    /**
+     * Zera as celulas e as preenche com a agregacao do repositorio
+     * (estatisticasAcervo), sem carregar os itens.
+     * Deve ser chamado antes de o servico aceitar escritas.
+     * @return quantidade de itens contados
+     */
+    public long reconstruir(ItemRepository repository) {
+        for (LongAdder[] celula : celulas.values()) {
+            celula[DISPONIVEL].reset();
+            celula[EMPRESTADO].reset();
+        }
+        EstatisticasAcervo atual = repository.estatisticasAcervo();
+        atual.getDisponiveisPorTipo().forEach((tipo, quantidade) -> celula(tipo, false).add(quantidade));
+        atual.getEmprestadosPorTipo().forEach((tipo, quantidade) -> celula(tipo, true).add(quantidade));
+        return atual.getTotal();
+    }
+    
+    public void itemAdicionado(String tipo, boolean emprestado) {
+        celula(tipo, emprestado).increment();
+    }
+
+    public void itemRemovido(String tipo, boolean emprestado) {
+        celula(tipo, emprestado).decrement();
+    }
+
+    public void itemEmprestado(String tipo) {
+        LongAdder[] celula = celulas(tipo);
+        celula[EMPRESTADO].increment();
+        celula[DISPONIVEL].decrement();
+    }
+
+    public void itemDevolvido(String tipo) {
+        LongAdder[] celula = celulas(tipo);
+        celula[DISPONIVEL].increment();
+        celula[EMPRESTADO].decrement();
+    }
+
+    public long contar(String tipo, boolean emprestado) {
+        LongAdder[] celula = celulas.get(chave(tipo));
+        return celula == null ? 0 : celula[emprestado ? EMPRESTADO : DISPONIVEL].sum();
+    }
+
+    public long contarPorTipo(String tipo) {
+        return contar(tipo, false) + contar(tipo, true);
+    }
+
+    public long contarDisponiveis() {
+        return somar(DISPONIVEL);
+    }
+
+    public long contarEmprestados() {
+        return somar(EMPRESTADO);
+    }
+
+    public long getTotal() {
+        return contarDisponiveis() + contarEmprestados();
+    }
+
+    /**
+     * Contagens atuais no mesmo formato da agregacao feita pelo repositorio
+     */
+    public EstatisticasAcervo instantaneo() {
+        Map<String, Long> disponiveis = new LinkedHashMap<>();
+        Map<String, Long> emprestados = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder[]> tipo : celulas.entrySet()) {
+            disponiveis.put(tipo.getKey(), tipo.getValue()[DISPONIVEL].sum());
+            emprestados.put(tipo.getKey(), tipo.getValue()[EMPRESTADO].sum());
+        }
+        return new EstatisticasAcervo(disponiveis, emprestados);
+    }
+
+    private long somar(int situacao) {
+        long soma = 0;
+        for (LongAdder[] celula : celulas.values()) {
+            soma += celula[situacao].sum();
+        }
+        return soma;
+    }
+
+    private LongAdder celula(String tipo, boolean emprestado) {
+        return celulas(tipo)[emprestado ? EMPRESTADO : DISPONIVEL];
+    }
+
+    private LongAdder[] celulas(String tipo) {
+        return celulas.computeIfAbsent(chave(tipo), t -> new LongAdder[] { new LongAdder(), new LongAdder() });
+    }
+
+    private static String chave(String tipo) {
+        return tipo == null ? "" : tipo.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,75 @@
+package com.biblioteca.service;
+
+import com.biblioteca.repository.EmprestimoRepository;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quantidade de emprestimos ativos por usuario, mantida em memoria
+ *
+ * Montada uma vez a partir do repositorio de emprestimos; depois disso, cada
+ * emprestimo reserva uma vaga antes de acontecer e cada devolucao a libera,
+ * sem COUNT(*) no banco por requisicao. A reserva e um CAS no contador do
+ * usuario, entao emprestimos simultaneos nunca passam do limite.
+ */
+public class LimiteEmprestimos {
+
+    private final int maximo;
+    private final ConcurrentMap<String, AtomicInteger> ativos = new ConcurrentHashMap<>();
+
+    public LimiteEmprestimos(int maximo) {
+        this.maximo = maximo;
+    }
+
+    /**
+     * Descarta as contagens atuais e le as do repositorio
+     * @return quantidade total de emprestimos ativos
+     */
+    public long reconstruir(EmprestimoRepository repository) {
+        ativos.clear();
+        long total = 0;
+        for (Map.Entry<String, Integer> usuario : repository.contarAtivosPorUsuario().entrySet()) {
+            ativos.put(usuario.getKey(), new AtomicInteger(usuario.getValue()));
+            total += usuario.getValue();
+        }
+        return total;
+    }
+
+    /**
+     * Ocupa uma vaga do usuario, se ele ainda estiver abaixo do limite
+     * @return false se o limite ja foi atingido
+     */
+    public boolean reservar(String usuarioId) {
+        AtomicInteger contador = ativos.computeIfAbsent(usuarioId, u -> new AtomicInteger());
+        while (true) {
+            int atual = contador.get();
+            if (atual >= maximo) {
+                return false;
+            }
+            if (contador.compareAndSet(atual, atual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Devolve a vaga ocupada por um emprestimo encerrado (ou nao concluido)
+     */
+    public void liberar(String usuarioId) {
+        AtomicInteger contador = ativos.get(usuarioId);
+        if (contador != null) {
+            contador.updateAndGet(atual -> Math.max(0, atual - 1));
+        }
+    }
+
+    public int ativos(String usuarioId) {
+        AtomicInteger contador = ativos.get(usuarioId);
+        return contador == null ? 0 : contador.get();
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+}
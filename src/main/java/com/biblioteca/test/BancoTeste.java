@@ -0,0 +1,82 @@
+package com.biblioteca.test;
+
+import com.biblioteca.config.DatabaseConfig;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Utilitario para testes e benchmarks que precisam de um banco SQLite isolado
+ * Cria um arquivo temporario e aplica o schema de db/schema-sqlite.sql
+ */
+public class BancoTeste {
+    
+    private BancoTeste() {
+    }
+    
+    /**
+     * Cria um banco temporario com o schema aplicado e aponta a aplicacao para ele.
+     * Deve ser chamado antes do primeiro uso de DatabaseConfig.
+     * @return URL JDBC do banco criado
+     */
+    public static String criarBancoTemporario() {
+        try {
+            File arquivo = File.createTempFile("biblioteca-teste-", ".db");
+            arquivo.deleteOnExit();
+            String url = "jdbc:sqlite:" + arquivo.getAbsolutePath();
+            System.setProperty("db.url", url);
+            aplicarSchema();
+            return url;
+        } catch (IOException | SQLException e) {
+            throw new RuntimeException("Erro ao criar banco de teste: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Executa o script de schema statement a statement.
+     * Blocos BEGIN ... END (triggers) sao enviados inteiros.
+     * O script e idempotente, entao pode ser reaplicado sobre o mesmo banco.
+     */
+    static void aplicarSchema() throws IOException, SQLException {
+        try (InputStream input = BancoTeste.class.getClassLoader()
+                .getResourceAsStream("db/schema-sqlite.sql")) {
+            if (input == null) {
+                throw new IOException("Arquivo db/schema-sqlite.sql nao encontrado");
+            }
+            
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                 Connection conn = DatabaseConfig.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                
+                StringBuilder comando = new StringBuilder();
+                boolean dentroDeBloco = false;
+                String linha;
+                while ((linha = reader.readLine()) != null) {
+                    String trecho = linha.trim();
+                    if (trecho.isEmpty() || trecho.startsWith("--")) {
+                        continue;
+                    }
+                    comando.append(linha).append('\n');
+                    
+                    String maiusculo = trecho.toUpperCase();
+                    if (maiusculo.endsWith("BEGIN")) {
+                        dentroDeBloco = true;
+                    } else if (dentroDeBloco && maiusculo.equals("END;")) {
+                        dentroDeBloco = false;
+                    }
+                    
+                    if (!dentroDeBloco && trecho.endsWith(";")) {
+                        stmt.execute(comando.toString());
+                        comando.setLength(0);
+                    }
+                }
+            }
+        }
+    }
+}
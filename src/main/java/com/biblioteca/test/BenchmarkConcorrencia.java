@@ -0,0 +1,108 @@
+package com.biblioteca.test;
+
+import com.biblioteca.model.Livro;
+import com.biblioteca.repository.ItemRepository;
+import com.biblioteca.repository.ItemRepositoryImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark de leituras concorrentes no ItemRepositoryImpl
+ * Mede a vazao de buscarPorCodigo com 1, 2, 4... threads enquanto uma thread
+ * escritora empresta e devolve itens. Sem trava nas leituras, a vazao deve
+ * crescer com o numero de nucleos.
+ *
+ * Uso: java com.biblioteca.test.BenchmarkConcorrencia [quantidadeItens] [segundosPorRodada]
+ */
+public class BenchmarkConcorrencia {
+
+    public static void main(String[] args) throws InterruptedException {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int nucleos = Runtime.getRuntime().availableProcessors();
+
+        String[] codigos = new String[quantidade];
+        ItemRepositoryImpl repository = new ItemRepositoryImpl();
+        for (int i = 0; i < quantidade; i++) {
+            codigos[i] = String.format("LIV%07d", i);
+            repository.salvar(new Livro("Livro " + i, codigos[i], "Autor", 100, null));
+        }
+
+        System.out.println("==============================================");
+        System.out.println("  BENCHMARK - LEITURAS CONCORRENTES");
+        System.out.println("==============================================");
+        System.out.println("Itens: " + quantidade + ", nucleos: " + nucleos);
+
+        double base = 0;
+        for (int threads = 1; threads <= Math.max(2, nucleos * 2); threads *= 2) {
+            double vazao = medir(repository, codigos, threads, segundos);
+            if (base == 0) {
+                base = vazao;
+            }
+            System.out.printf("%2d threads: %,12.0f leituras/s (%.2fx)%n", threads, vazao, vazao / base);
+        }
+    }
+
+    private static double medir(ItemRepositoryImpl repository, String[] codigos, int threads, int segundos)
+            throws InterruptedException {
+        LongAdder leituras = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+        long fim = System.nanoTime() + segundos * 1_000_000_000L;
+
+        List<Thread> leitores = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread leitor = new Thread(() -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                aguardar(largada);
+                long feitas = 0;
+                while ((feitas & 1023) != 0 || System.nanoTime() < fim) {
+                    repository.buscarPorCodigo(codigos[aleatorio.nextInt(codigos.length)]);
+                    feitas++;
+                }
+                leituras.add(feitas);
+            });
+            leitor.start();
+            leitores.add(leitor);
+        }
+
+        // Escritor em paralelo: emprestimos e devolucoes continuos, alternando
+        // as transicoes atomicas e a regravacao do item com atualizar
+        Thread escritor = new Thread(() -> {
+            ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+            aguardar(largada);
+            while (System.nanoTime() < fim) {
+                String codigo = codigos[aleatorio.nextInt(codigos.length)];
+                if (aleatorio.nextBoolean()) {
+                    if (!repository.tentarEmprestar(codigo, ItemRepository.QUALQUER_VERSAO).isRealizada()) {
+                        repository.tentarDevolver(codigo, ItemRepository.QUALQUER_VERSAO);
+                    }
+                } else {
+                    repository.buscarPorCodigo(codigo).ifPresent(item -> {
+                        item.setEmprestado(!item.isEmprestado());
+                        repository.atualizar(item);
+                    });
+                }
+            }
+        });
+        escritor.start();
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Thread leitor : leitores) {
+            leitor.join();
+        }
+        escritor.join();
+        return leituras.sum() / ((System.nanoTime() - inicio) / 1_000_000_000.0);
+    }
+
+    private static void aguardar(CountDownLatch largada) {
+        try {
+            largada.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.biblioteca.test;
+
+import com.biblioteca.config.DatabaseConfig;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.repository.ItemRepository;
+import com.biblioteca.repository.ItemRepositorySQLite;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Benchmark da hidratacao de listagens no ItemRepositorySQLite
+ * Compara o padrao antigo (1 consulta + 1 consulta por item) com o LEFT JOIN unico
+ * 
+ * Uso: java com.biblioteca.test.BenchmarkHidratacao [quantidadeItens]
+ */
+public class BenchmarkHidratacao {
+    
+    private static final int ITERACOES = 5;
+    
+    public static void main(String[] args) throws SQLException {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        
+        BancoTeste.criarBancoTemporario();
+        popular(quantidade);
+        
+        ItemRepository repository = new ItemRepositorySQLite();
+        
+        // Aquecimento
+        listarNMais1();
+        repository.buscarTodos();
+        
+        long statementsAntes = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < ITERACOES; i++) {
+            statementsAntes = listarNMais1();
+        }
+        double msAntes = (System.nanoTime() - inicio) / 1_000_000.0 / ITERACOES;
+        
+        int retornados = 0;
+        inicio = System.nanoTime();
+        for (int i = 0; i < ITERACOES; i++) {
+            List<ItemBiblioteca> itens = repository.buscarTodos();
+            retornados = itens.size();
+        }
+        double msDepois = (System.nanoTime() - inicio) / 1_000_000.0 / ITERACOES;
+        
+        System.out.println("==============================================");
+        System.out.println("  BENCHMARK - HIDRATACAO DE LISTAGENS");
+        System.out.println("==============================================");
+        System.out.println("Itens no catalogo: " + quantidade + " (retornados: " + retornados + ")");
+        System.out.printf("Antes  (N+1):      %d statements, %.1f ms%n", statementsAntes, msAntes);
+        System.out.printf("Depois (LEFT JOIN): %d statement,  %.1f ms%n", 1, msDepois);
+        System.out.printf("Ganho: %.1fx%n", msAntes / msDepois);
+    }
+    
+    /**
+     * Reproduz a hidratacao antiga: SELECT na tabela principal e uma
+     * consulta ao subtipo para cada linha. Retorna o numero de statements.
+     */
+    private static long listarNMais1() throws SQLException {
+        long statements = 0;
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM itens_biblioteca ORDER BY codigo")) {
+            statements++;
+            while (rs.next()) {
+                String tabela;
+                switch (rs.getString("tipo")) {
+                    case "LIVRO": tabela = "livros"; break;
+                    case "REVISTA": tabela = "revistas"; break;
+                    default: tabela = "dvds"; break;
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT * FROM " + tabela + " WHERE item_id = ?")) {
+                    pstmt.setInt(1, rs.getInt("id"));
+                    try (ResultSet sub = pstmt.executeQuery()) {
+                        sub.next();
+                    }
+                }
+                statements++;
+            }
+        }
+        return statements;
+    }
+    
+    private static void popular(int quantidade) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement item = conn.prepareStatement(
+                     "INSERT INTO itens_biblioteca (id, codigo, titulo, tipo, emprestado) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement livro = conn.prepareStatement(
+                     "INSERT INTO livros (item_id, autor, numero_paginas, isbn) VALUES (?, ?, ?, ?)");
+                 PreparedStatement revista = conn.prepareStatement(
+                     "INSERT INTO revistas (item_id, edicao, mes_ano, editora) VALUES (?, ?, ?, ?)");
+                 PreparedStatement dvd = conn.prepareStatement(
+                     "INSERT INTO dvds (item_id, diretor, duracao_minutos, genero) VALUES (?, ?, ?, ?)")) {
+                
+                String[] tipos = {"LIVRO", "REVISTA", "DVD"};
+                for (int id = 1; id <= quantidade; id++) {
+                    String tipo = tipos[id % 3];
+                    item.setInt(1, id);
+                    item.setString(2, String.format("BEN%07d", id));
+                    item.setString(3, "Titulo " + id);
+                    item.setString(4, tipo);
+                    item.setBoolean(5, id % 4 == 0);
+                    item.addBatch();
+                    
+                    if ("LIVRO".equals(tipo)) {
+                        livro.setInt(1, id);
+                        livro.setString(2, "Autor " + id);
+                        livro.setInt(3, 100 + id % 500);
+                        livro.setString(4, "ISBN-" + id);
+                        livro.addBatch();
+                    } else if ("REVISTA".equals(tipo)) {
+                        revista.setInt(1, id);
+                        revista.setInt(2, id % 200 + 1);
+                        revista.setString(3, "01/2024");
+                        revista.setString(4, "Editora " + id % 50);
+                        revista.addBatch();
+                    } else {
+                        dvd.setInt(1, id);
+                        dvd.setString(2, "Diretor " + id);
+                        dvd.setInt(3, 90 + id % 60);
+                        dvd.setString(4, "Genero " + id % 10);
+                        dvd.addBatch();
+                    }
+                }
+                item.executeBatch();
+                livro.executeBatch();
+                revista.executeBatch();
+                dvd.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+}
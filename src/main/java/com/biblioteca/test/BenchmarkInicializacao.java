@@ -0,0 +1,111 @@
+package com.biblioteca.test;
+
+import com.biblioteca.model.DVD;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Revista;
+import com.biblioteca.repository.ItemRepositoryImpl;
+import com.biblioteca.repository.ItemRepositorySQLite;
+import com.biblioteca.repository.SnapshotCatalogo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark da inicializacao do catalogo em memoria
+ * Compara o tempo de carga a frio de um ItemRepositoryImpl a partir do SQLite
+ * (streamTodos) e a partir do snapshot mapeado em memoria (SnapshotCatalogo).
+ * Mede tambem so a leitura de cada fonte, sem montar os indices do repositorio.
+ *
+ * Uso: java com.biblioteca.test.BenchmarkInicializacao [quantidadeItens]
+ */
+public class BenchmarkInicializacao {
+
+    private static final int LOTE = 10000;
+
+    public static void main(String[] args) throws IOException {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        BancoTeste.criarBancoTemporario();
+        ItemRepositorySQLite sqlite = new ItemRepositorySQLite();
+        popular(sqlite, quantidade);
+
+        Path snapshot = Files.createTempFile("biblioteca-", ".snapshot");
+        snapshot.toFile().deleteOnExit();
+        long inicio = System.nanoTime();
+        try (Stream<ItemBiblioteca> itens = sqlite.streamTodos()) {
+            SnapshotCatalogo.gravar(snapshot, itens, 0);
+        }
+        double msGravacao = ms(inicio);
+
+        // Somente leitura e decodificacao
+        inicio = System.nanoTime();
+        long lidosSqlite;
+        try (Stream<ItemBiblioteca> itens = sqlite.streamTodos()) {
+            lidosSqlite = itens.count();
+        }
+        double msLeituraSqlite = ms(inicio);
+
+        long[] lidosSnapshot = new long[1];
+        inicio = System.nanoTime();
+        SnapshotCatalogo.carregar(snapshot, item -> lidosSnapshot[0]++);
+        double msLeituraSnapshot = ms(inicio);
+
+        // Carga completa em um repositorio em memoria vazio
+        ItemRepositoryImpl memoria = new ItemRepositoryImpl();
+        inicio = System.nanoTime();
+        sqlite.paraCada(memoria::salvar);
+        double msCargaSqlite = ms(inicio);
+        memoria = null;
+        System.gc();
+
+        memoria = new ItemRepositoryImpl();
+        inicio = System.nanoTime();
+        SnapshotCatalogo.carregar(snapshot, memoria::salvar);
+        double msCargaSnapshot = ms(inicio);
+
+        System.out.println("==============================================");
+        System.out.println("  BENCHMARK - INICIALIZACAO DO CATALOGO");
+        System.out.println("==============================================");
+        System.out.printf("Itens: %d, snapshot: %.1f MB (gravado em %.0f ms)%n",
+            quantidade, Files.size(snapshot) / 1048576.0, msGravacao);
+        System.out.printf("Leitura   SQLite:   %,10.0f ms (%d itens)%n", msLeituraSqlite, lidosSqlite);
+        System.out.printf("Leitura   snapshot: %,10.0f ms (%d itens) - %.1fx%n",
+            msLeituraSnapshot, lidosSnapshot[0], msLeituraSqlite / msLeituraSnapshot);
+        System.out.printf("Carga     SQLite:   %,10.0f ms%n", msCargaSqlite);
+        System.out.printf("Carga     snapshot: %,10.0f ms (%d itens) - %.1fx%n",
+            msCargaSnapshot, memoria.buscarTodos().size(), msCargaSqlite / msCargaSnapshot);
+    }
+
+    private static void popular(ItemRepositorySQLite repository, int quantidade) {
+        List<ItemBiblioteca> lote = new ArrayList<>(LOTE);
+        for (int i = 0; i < quantidade; i++) {
+            String codigo = String.format("ITM%07d", i);
+            ItemBiblioteca item;
+            switch (i % 3) {
+                case 0:
+                    item = new Livro("Livro " + i, codigo, "Autor " + (i % 1000), 100 + i % 500, "ISBN-" + i);
+                    break;
+                case 1:
+                    item = new Revista("Revista " + i, codigo, i % 200, "01/2024", "Editora " + (i % 50));
+                    break;
+                default:
+                    item = new DVD("Filme " + i, codigo, "Diretor " + (i % 300), 90, "Drama");
+            }
+            item.setEmprestado(i % 7 == 0);
+            lote.add(item);
+            if (lote.size() == LOTE) {
+                repository.salvarEmLote(lote, LOTE);
+                lote.clear();
+            }
+        }
+        repository.salvarEmLote(lote, LOTE);
+    }
+
+    private static double ms(long inicio) {
+        return (System.nanoTime() - inicio) / 1_000_000.0;
+    }
+}
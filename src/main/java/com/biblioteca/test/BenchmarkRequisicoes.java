@@ -0,0 +1,212 @@
+package com.biblioteca.test;
+
+import com.biblioteca.controller.BibliotecaController;
+import com.biblioteca.model.ItemBiblioteca;
+import com.biblioteca.model.Livro;
+import com.biblioteca.repository.EmprestimoRepositorySQLite;
+import com.biblioteca.repository.ItemRepositorySQLite;
+import com.biblioteca.service.BibliotecaService;
+import com.biblioteca.web.BibliotecaServer;
+import com.biblioteca.web.PoolRequisicoes;
+import com.biblioteca.web.motor.MotorHttp;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark de carga do servidor HTTP com JDBC bloqueante
+ * Sobe o BibliotecaServer sobre um SQLite temporario e dispara clientes
+ * simultaneos (com keep-alive) contra um caminho da API; o padrao,
+ * GET /api/itens?limit=100, faz uma consulta paginada por requisicao.
+ * Compara os motores HTTP (HttpServer do JDK e NIO) e, em cada um, o pool de
+ * threads da plataforma com uma thread virtual por requisicao, quando o
+ * runtime tem threads virtuais (Java 21+).
+ *
+ * Para cada rodada mostra o pico de requisicoes em andamento no servidor
+ * (executando ou na fila), a vazao, a latencia p99 e as recusas com 503.
+ *
+ * Uso: java com.biblioteca.test.BenchmarkRequisicoes [segundosPorRodada] [caminho] [clientes...]
+ */
+public class BenchmarkRequisicoes {
+
+    private static final int PORTA = 18089;
+    private static final int ITENS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        int segundos = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        String caminho = args.length > 1 ? args[1] : "/api/itens?limit=100";
+        int[] niveis = args.length > 2
+            ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] {16, 64, 256};
+
+        BancoTeste.criarBancoTemporario();
+        ItemRepositorySQLite repository = new ItemRepositorySQLite();
+        List<ItemBiblioteca> itens = new ArrayList<>(ITENS);
+        for (int i = 0; i < ITENS; i++) {
+            itens.add(new Livro("Livro " + i, String.format("ITM%07d", i), "Autor " + (i % 100), 100, null));
+        }
+        repository.salvarEmLote(itens, 1000);
+        BibliotecaController controller = new BibliotecaController(
+            new BibliotecaService(repository, new EmprestimoRepositorySQLite()));
+
+        System.out.println("==============================================");
+        System.out.println("  BENCHMARK - REQUISICOES HTTP SIMULTANEAS");
+        System.out.println("==============================================");
+        System.out.println("Java " + System.getProperty("java.version") + ", itens: " + ITENS
+            + ", " + segundos + " s por rodada, GET " + caminho);
+
+        boolean virtuais = PoolRequisicoes.suportaThreadsVirtuais();
+        for (String motor : new String[] {"httpserver", "nio"}) {
+            rodar(motor, "plataforma", controller, () -> new PoolRequisicoes(0, 0, 256, 60000, 1),
+                caminho, niveis, segundos);
+            if (virtuais) {
+                rodar(motor, "virtual", controller, () -> PoolRequisicoes.virtual(10000, 1),
+                    caminho, niveis, segundos);
+            }
+        }
+        if (!virtuais) {
+            System.out.println("\nThreads virtuais indisponiveis neste runtime (exigem Java 21+);"
+                + " com server.threads.virtuais=true o servidor usaria o pool da plataforma.");
+        }
+    }
+
+    private interface FabricaPool {
+        PoolRequisicoes criar();
+    }
+
+    private static void rodar(String motor, String modo, BibliotecaController controller, FabricaPool fabrica,
+                              String caminho, int[] niveis, int segundos) throws Exception {
+        System.out.println("\n--- Motor " + motor + ", threads " + modo + " ---");
+        System.out.println("clientes  pico em andamento       req/s    p99 (ms)    503");
+        for (int clientes : niveis) {
+            PoolRequisicoes pool = fabrica.criar();
+            BibliotecaServer server = new BibliotecaServer(controller, pool, MotorHttp.criar(motor, PORTA));
+            server.iniciar();
+            try {
+                Resultado r = medir(pool, caminho, clientes, segundos);
+                System.out.printf("%8d  %17d  %10.0f  %10.1f  %5d%n",
+                    clientes, r.picoEmAndamento, r.vazao, r.p99Ms, r.recusadas);
+            } finally {
+                server.parar();
+            }
+        }
+    }
+
+    private static Resultado medir(PoolRequisicoes pool, String caminho, int clientes, int segundos) throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        HttpRequest requisicao = HttpRequest.newBuilder(URI.create("http://localhost:" + PORTA + caminho))
+            .timeout(Duration.ofSeconds(30)).GET().build();
+
+        LongAdder concluidas = new LongAdder();
+        LongAdder recusadas = new LongAdder();
+        List<long[]> latencias = new ArrayList<>();
+        CountDownLatch largada = new CountDownLatch(1);
+        long fim = System.nanoTime() + segundos * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clientes; c++) {
+            long[] amostras = new long[1 << 16];
+            latencias.add(amostras);
+            Thread cliente = new Thread(() -> {
+                aguardar(largada);
+                int n = 0;
+                while (System.nanoTime() < fim) {
+                    long inicio = System.nanoTime();
+                    try {
+                        HttpResponse<Void> resposta = http.send(requisicao, HttpResponse.BodyHandlers.discarding());
+                        if (resposta.statusCode() == 503) {
+                            recusadas.increment();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        continue;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (n < amostras.length) {
+                        amostras[n] = System.nanoTime() - inicio;
+                    }
+                    n++;
+                    concluidas.increment();
+                }
+                // Marca o fim das amostras validas deste cliente
+                if (n < amostras.length) {
+                    amostras[n] = -1;
+                }
+            });
+            cliente.start();
+            threads.add(cliente);
+        }
+
+        // Amostra o que o servidor tem em maos: executando mais aguardando na fila
+        AtomicInteger pico = new AtomicInteger();
+        Thread amostrador = new Thread(() -> {
+            while (System.nanoTime() < fim) {
+                pico.accumulateAndGet(pool.getEmAndamento() + pool.getTamanhoFila(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        amostrador.setDaemon(true);
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        amostrador.start();
+        for (Thread cliente : threads) {
+            cliente.join();
+        }
+        double decorridos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        Resultado resultado = new Resultado();
+        resultado.picoEmAndamento = pico.get();
+        resultado.vazao = concluidas.sum() / decorridos;
+        resultado.p99Ms = percentil99(latencias) / 1_000_000.0;
+        resultado.recusadas = recusadas.sum();
+        return resultado;
+    }
+
+    private static long percentil99(List<long[]> latencias) {
+        List<Long> todas = new ArrayList<>();
+        for (long[] amostras : latencias) {
+            for (long amostra : amostras) {
+                if (amostra <= 0) {
+                    break;
+                }
+                todas.add(amostra);
+            }
+        }
+        if (todas.isEmpty()) {
+            return 0;
+        }
+        todas.sort(null);
+        return todas.get((int) Math.min(todas.size() - 1, Math.ceil(todas.size() * 0.99) - 1));
+    }
+
+    private static void aguardar(CountDownLatch largada) {
+        try {
+            largada.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Resultado {
+        int picoEmAndamento;
+        double vazao;
+        double p99Ms;
+        long recusadas;
+    }
+}
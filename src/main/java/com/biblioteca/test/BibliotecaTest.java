@@ -1,12 +1,72 @@
 package com.biblioteca.test;
 
+import com.biblioteca.config.ConnectionPool;
+import com.biblioteca.config.DatabaseConfig;
+import com.biblioteca.config.EscritorUnico;
+import com.biblioteca.controller.BibliotecaController;
 import com.biblioteca.exception.*;
 import com.biblioteca.model.*;
+import com.biblioteca.model.usuario.Bibliotecario;
+import com.biblioteca.model.usuario.Usuario;
+import com.biblioteca.model.usuario.UsuarioComum;
+import com.biblioteca.repository.CachingItemRepository;
+import com.biblioteca.repository.EmprestimoRepositoryImpl;
+import com.biblioteca.repository.EmprestimoRepositorySQLite;
+import com.biblioteca.repository.EstatisticasAcervo;
 import com.biblioteca.repository.ItemRepository;
 import com.biblioteca.repository.ItemRepositoryImpl;
+import com.biblioteca.repository.ItemRepositoryJournal;
+import com.biblioteca.repository.ItemRepositorySQLite;
+import com.biblioteca.repository.ResultadoLote;
+import com.biblioteca.repository.ResultadoTransicao;
 import com.biblioteca.service.BibliotecaService;
+import com.biblioteca.dto.EstatisticasDTO;
 import com.biblioteca.dto.ItemDTO;
 import com.biblioteca.dto.ItemResponseDTO;
+import com.biblioteca.dto.PaginaDTO;
+import com.biblioteca.web.ArquivosEstaticos;
+import com.biblioteca.web.BibliotecaServer;
+import com.biblioteca.web.PoolRequisicoes;
+import com.biblioteca.web.motor.MotorNio;
+import com.biblioteca.web.roteamento.Roteador;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Testes unitarios basicos para o sistema de biblioteca
@@ -17,6 +77,7 @@ public class BibliotecaTest {
     private static int totalTestes = 0;
     private static int testesPassaram = 0;
     private static int testesFalharam = 0;
+    private static boolean bancoTemporarioCriado = false;
     
     public static void main(String[] args) {
         System.out.println("==============================================");
@@ -29,6 +90,34 @@ public class BibliotecaTest {
         testarItemNaoEncontrado();
         testarItemDuplicado();
         testarValidacaoCampos();
+        testarPoolReutilizaConexoes();
+        testarPoolTimeoutAquisicao();
+        testarPerfilPragmas();
+        testarMigracaoSchema();
+        testarCacheStatements();
+        testarEscritorUnico();
+        testarSalvarEmLote();
+        testarPaginacaoPorCursor();
+        testarStreamTodos();
+        testarCacheDeItens();
+        testarBuscaTexto();
+        testarBuscaTextoSQLite();
+        testarIndicesSecundarios();
+        testarEscritasConcorrentes();
+        testarEmprestimosConcorrentes();
+        testarControleVersao();
+        testarControleVersaoSQLite();
+        testarJournal();
+        testarSnapshot();
+        testarEstatisticas();
+        testarContadoresAcervo();
+        testarLimiteEmprestimos();
+        testarRegistroEmprestimoAtomico();
+        testarMotorNioPipelining();
+        testarRoteador();
+        testarPoolRequisicoesSaturado();
+        testarFallbackThreadsVirtuais();
+        testarArquivosEstaticos();
         
         System.out.println("\n==============================================");
         System.out.println("  RESULTADO DOS TESTES");
@@ -163,6 +252,1160 @@ public class BibliotecaTest {
         }
     }
     
+    private static void testarPoolReutilizaConexoes() {
+        iniciarTeste("Pool de Conexoes - Reutiliza conexao devolvida");
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 2, 1000, true, 0);
+        try {
+            Connection primeiraFisica;
+            try (Connection conn = pool.obterConexao()) {
+                assertEquals(1, pool.getAtivas(), "Deveria haver 1 conexao ativa");
+                primeiraFisica = conn.unwrap(Connection.class);
+            }
+            try (Connection conn = pool.obterConexao()) {
+                assertEquals(0, pool.getOciosas(), "Conexao ociosa deveria ter sido reutilizada");
+                assertEquals(true, conn.unwrap(Connection.class) == primeiraFisica,
+                    "Segundo emprestimo deveria usar a mesma conexao fisica");
+                assertEquals(true, conn.isValid(1), "Conexao reutilizada deveria estar valida");
+            }
+            
+            assertEquals(1L, pool.getConexoesCriadas(), "Apenas uma conexao fisica deveria ser criada");
+            assertEquals(0, pool.getAtivas(), "Nenhuma conexao deveria estar ativa");
+            assertEquals(1, pool.getOciosas(), "Conexao deveria estar ociosa no pool");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            pool.fechar();
+        }
+    }
+    
+    private static void testarPoolTimeoutAquisicao() {
+        iniciarTeste("Pool de Conexoes - Timeout quando esgotado");
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 1, 50, true, 0);
+        try (Connection ocupada = pool.obterConexao()) {
+            assertEquals(true, ocupada.isValid(1), "Conexao emprestada deveria estar valida");
+            try {
+                pool.obterConexao().close();
+                testeFalhou(new Exception("Deveria ter lancado SQLException por timeout"));
+            } catch (SQLException e) {
+                // Esperado
+                testePassou();
+            }
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            pool.fechar();
+        }
+    }
+    
+    private static void testarPerfilPragmas() {
+        iniciarTeste("Pool de Conexoes - PRAGMAs aplicados em toda conexao");
+        try {
+            // Banco em arquivo: journal_mode=WAL nao se aplica a :memory:
+            garantirBancoTemporario();
+            Map<String, String> efetivos = DatabaseConfig.verificarPragmas();
+            assertEquals("wal", efetivos.get("journal_mode"), "journal_mode do perfil");
+            assertEquals("1", efetivos.get("synchronous"), "synchronous=NORMAL do perfil");
+            assertEquals("-20000", efetivos.get("cache_size"), "cache_size do perfil");
+            assertEquals("2", efetivos.get("temp_store"), "temp_store=MEMORY do perfil");
+            assertEquals("5000", efetivos.get("busy_timeout"), "busy_timeout do perfil");
+            
+            // Duas conexoes ao mesmo tempo forcam uma segunda conexao fisica;
+            // os PRAGMAs por conexao precisam valer nela tambem
+            try (Connection primeira = DatabaseConfig.getConnection();
+                 Connection segunda = DatabaseConfig.getConnection()) {
+                assertEquals(true, primeira.unwrap(Connection.class) != segunda.unwrap(Connection.class),
+                    "Conexoes simultaneas deveriam ser fisicas distintas");
+                for (Connection conn : Arrays.asList(primeira, segunda)) {
+                    assertEquals("1", lerPragma(conn, "synchronous"), "synchronous em cada conexao");
+                    assertEquals("-20000", lerPragma(conn, "cache_size"), "cache_size em cada conexao");
+                    assertEquals("2", lerPragma(conn, "temp_store"), "temp_store em cada conexao");
+                    assertEquals("5000", lerPragma(conn, "busy_timeout"), "busy_timeout em cada conexao");
+                }
+            }
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarMigracaoSchema() {
+        iniciarTeste("Banco de Dados - Migracao da coluna version em banco antigo");
+        ConnectionPool pool = null;
+        try {
+            Path arquivo = Files.createTempFile("biblioteca-antigo-", ".db");
+            arquivo.toFile().deleteOnExit();
+            pool = new ConnectionPool("jdbc:sqlite:" + arquivo.toAbsolutePath(), 1, 1000, true, 0);
+            try (Connection conn = pool.obterConexao();
+                 Statement stmt = conn.createStatement()) {
+                // Tabela como era antes do controle de versao
+                stmt.executeUpdate("CREATE TABLE itens_biblioteca (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "codigo VARCHAR(50) UNIQUE NOT NULL, titulo VARCHAR(255) NOT NULL, "
+                    + "tipo VARCHAR(20) NOT NULL, emprestado INTEGER DEFAULT 0)");
+                stmt.executeUpdate("INSERT INTO itens_biblioteca (codigo, titulo, tipo) VALUES ('LIV001', 'Antigo', 'LIVRO')");
+                
+                DatabaseConfig.migrarSchema(conn);
+                DatabaseConfig.migrarSchema(conn);
+                try (ResultSet rs = stmt.executeQuery("SELECT version FROM itens_biblioteca WHERE codigo = 'LIV001'")) {
+                    assertEquals(true, rs.next(), "Item antigo deveria continuar no banco");
+                    assertEquals(1L, rs.getLong(1), "Itens existentes deveriam comecar na versao 1");
+                }
+            }
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (pool != null) {
+                pool.fechar();
+            }
+        }
+    }
+    
+    private static String lerPragma(Connection conn, String nome) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + nome)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+    
+    private static void testarCacheStatements() {
+        iniciarTeste("Pool de Conexoes - Cache LRU de PreparedStatements");
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 1, 1000, true, 0, 2);
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = pool.obterConexao();
+                     PreparedStatement pstmt = conn.prepareStatement("SELECT ?")) {
+                    pstmt.setInt(1, i);
+                    pstmt.executeQuery().close();
+                }
+            }
+            assertEquals(1L, pool.getFalhasCacheStatements(), "Apenas o primeiro prepare deveria compilar");
+            assertEquals(2L, pool.getAcertosCacheStatements(), "Demais prepares deveriam vir do cache");
+            
+            // Excede a capacidade (2) e força o descarte do SQL menos usado
+            try (Connection conn = pool.obterConexao()) {
+                conn.prepareStatement("SELECT 1").close();
+                conn.prepareStatement("SELECT 2").close();
+                conn.prepareStatement("SELECT ?").close();
+            }
+            assertEquals(4L, pool.getFalhasCacheStatements(), "SQL descartado deveria ser recompilado");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            pool.fechar();
+        }
+    }
+    
+    private static void testarEscritorUnico() {
+        iniciarTeste("Escritor unico - Group commit, savepoint por operacao e encerramento");
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 1, 1000, true, 0);
+        EscritorUnico escritor = null;
+        try {
+            try (Connection conn = pool.obterConexao(); Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE escritas (valor INTEGER)");
+            }
+            
+            // Pedidos que chegam dentro da janela sao agrupados ate o lote maximo
+            escritor = new EscritorUnico(pool, 100, 5, 200, 1000);
+            List<CompletableFuture<Void>> futuros = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final int valor = i;
+                futuros.add(escritor.submeter(conn -> inserir(conn, valor)));
+            }
+            for (CompletableFuture<Void> futuro : futuros) {
+                futuro.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(20L, escritor.getEscritas(), "Todas as escritas deveriam ser gravadas");
+            assertEquals(4L, escritor.getTransacoes(), "20 escritas em lotes de 5 deveriam gerar 4 transacoes");
+            
+            // Sozinha, a escrita espera a janela por companhia antes do commit
+            long inicio = System.nanoTime();
+            escritor.submeter(conn -> inserir(conn, 100)).get(10, TimeUnit.SECONDS);
+            long esperaMs = (System.nanoTime() - inicio) / 1_000_000;
+            assertEquals(true, esperaMs >= 150, "Commit deveria aguardar a janela de agrupamento (" + esperaMs + " ms)");
+            
+            // A falha de uma operacao desfaz so o savepoint dela
+            CompletableFuture<Void> antes = escritor.submeter(conn -> inserir(conn, 201));
+            CompletableFuture<Void> falha = escritor.submeter(conn -> {
+                inserir(conn, 202);
+                conn.createStatement().execute("INSERT INTO tabela_inexistente VALUES (1)");
+            });
+            CompletableFuture<Void> depois = escritor.submeter(conn -> inserir(conn, 203));
+            antes.get(10, TimeUnit.SECONDS);
+            depois.get(10, TimeUnit.SECONDS);
+            assertEquals(true, falha.isCompletedExceptionally(), "Operacao com erro deveria falhar");
+            assertEquals(6L, escritor.getTransacoes(), "As tres operacoes deveriam estar no mesmo grupo");
+            assertEquals(Arrays.asList(201, 203), valoresGravados(pool, 200),
+                "Somente a insercao da operacao com erro deveria ser desfeita");
+            escritor.encerrar();
+            
+            // Pedidos disputando com encerrar(): todo futuro termina (gravado ou recusado)
+            for (int rodada = 0; rodada < 20; rodada++) {
+                EscritorUnico disputado = new EscritorUnico(pool, 1000, 50, 1, 1000);
+                List<CompletableFuture<Void>> pedidos = Collections.synchronizedList(new ArrayList<>());
+                CountDownLatch largada = new CountDownLatch(1);
+                ExecutorService submissores = Executors.newFixedThreadPool(4);
+                for (int t = 0; t < 4; t++) {
+                    submissores.submit(() -> {
+                        largada.await();
+                        for (int i = 0; i < 200; i++) {
+                            pedidos.add(disputado.submeter(conn -> inserir(conn, -1)));
+                        }
+                        return null;
+                    });
+                }
+                largada.countDown();
+                disputado.encerrar();
+                submissores.shutdown();
+                submissores.awaitTermination(10, TimeUnit.SECONDS);
+                for (CompletableFuture<Void> pedido : pedidos) {
+                    try {
+                        pedido.get(2, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        assertEquals(RejectedExecutionException.class, e.getCause().getClass(),
+                            "Pedido apos o encerramento deveria ser recusado");
+                    } catch (TimeoutException e) {
+                        throw new RuntimeException("Pedido enfileirado durante o encerramento nunca foi concluido");
+                    }
+                }
+            }
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (escritor != null) {
+                escritor.encerrar();
+            }
+            pool.fechar();
+        }
+    }
+    
+    private static void inserir(Connection conn, int valor) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO escritas (valor) VALUES (?)")) {
+            pstmt.setInt(1, valor);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    private static List<Integer> valoresGravados(ConnectionPool pool, int minimo) throws SQLException {
+        List<Integer> valores = new ArrayList<>();
+        try (Connection conn = pool.obterConexao();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT valor FROM escritas WHERE valor > ? ORDER BY valor")) {
+            pstmt.setInt(1, minimo);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    valores.add(rs.getInt(1));
+                }
+            }
+        }
+        return valores;
+    }
+    
+    private static void testarSalvarEmLote() {
+        iniciarTeste("Salvar em Lote - Reporta falhas por item");
+        try {
+            ItemRepository repository = new ItemRepositoryImpl();
+            repository.salvar(new Livro("Existente", "LIV100", "Autor", 100, null));
+            
+            ResultadoLote resultado = repository.salvarEmLote(Arrays.asList(
+                new Livro("Novo", "LIV101", "Autor", 100, null),
+                new DVD("Filme", "DVD101", "Diretor", 90, "Drama"),
+                new Livro("Duplicado", "LIV100", "Autor", 100, null),
+                null
+            ), 2);
+            
+            assertEquals(2, resultado.getTotalSalvos(), "Dois itens deveriam ser salvos");
+            assertEquals(2, resultado.getFalhas().size(), "Duas falhas deveriam ser reportadas");
+            assertEquals("LIV100", resultado.getFalhas().get(0).getCodigo(), "Falha deveria apontar o codigo duplicado");
+            assertEquals(true, repository.buscarPorCodigo("DVD101").isPresent(), "DVD deveria ter sido salvo");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarPaginacaoPorCursor() {
+        iniciarTeste("Paginacao por Cursor - Percorre o acervo em ordem");
+        try {
+            ItemRepository repository = new ItemRepositoryImpl();
+            BibliotecaService service = new BibliotecaService(repository);
+            for (String codigo : new String[] {"LIV003", "LIV001", "LIV005", "LIV002", "LIV004"}) {
+                service.adicionarItem(criarLivroDTO(codigo, "Livro " + codigo));
+            }
+            
+            PaginaDTO<ItemResponseDTO> pagina = service.listarPagina(null, 2);
+            assertEquals("LIV001", pagina.getItens().get(0).getCodigo(), "Primeira pagina deveria comecar em LIV001");
+            assertEquals(true, pagina.isTemProxima(), "Deveria haver proxima pagina");
+            
+            pagina = service.listarPagina(pagina.getProximoCursor(), 2);
+            assertEquals("LIV003", pagina.getItens().get(0).getCodigo(), "Segunda pagina deveria comecar em LIV003");
+            
+            pagina = service.listarPagina(pagina.getProximoCursor(), 2);
+            assertEquals(1, pagina.getItens().size(), "Ultima pagina deveria ter 1 item");
+            assertEquals(false, pagina.isTemProxima(), "Nao deveria haver proxima pagina");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarStreamTodos() {
+        iniciarTeste("Stream do Acervo - Percorre sem materializar lista");
+        try {
+            ItemRepository repository = new ItemRepositoryImpl();
+            repository.salvar(new Livro("Livro", "LIV200", "Autor", 100, null));
+            repository.salvar(new DVD("Filme", "DVD200", "Diretor", 90, "Drama"));
+            
+            try (Stream<ItemBiblioteca> itens = repository.streamTodos()) {
+                assertEquals(0L, itens.filter(ItemBiblioteca::isEmprestado).count(),
+                    "Nenhum item deveria estar emprestado");
+            }
+            
+            AtomicInteger visitados = new AtomicInteger();
+            repository.paraCada(item -> visitados.incrementAndGet());
+            assertEquals(2, visitados.get(), "Todos os itens deveriam ser visitados");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarCacheDeItens() {
+        iniciarTeste("Cache de Itens - Acertos, cache negativo, invalidacao, TTL e copias");
+        try {
+            CachingItemRepository repository = new CachingItemRepository(new ItemRepositoryImpl(), 1024 * 1024, 0, true);
+            BibliotecaService service = new BibliotecaService(repository);
+            
+            // Duplicata verificada no adicionar: miss guardado como ausente e invalidado no salvar
+            service.adicionarItem(criarLivroDTO("LIV300", "Cacheado"));
+            assertEquals(1L, repository.getFalhas(), "Primeira busca deveria ser uma falha");
+            
+            // Emprestimo e devolucao sao transicoes atomicas: nao leem pelo cache, so invalidam
+            service.emprestarItem("LIV300");
+            service.devolverItem("LIV300");
+            assertEquals(1L, repository.getFalhas(), "Transicoes nao deveriam consultar o cache");
+            
+            repository.buscarPorCodigo("LIV300");
+            repository.buscarPorCodigo("LIV300");
+            repository.buscarPorCodigo("INEXISTENTE");
+            repository.buscarPorCodigo("INEXISTENTE");
+            assertEquals(2L, repository.getAcertos(), "Deveria acertar o item e o codigo ausente");
+            assertEquals(false, repository.buscarPorCodigo("LIV300").get().isEmprestado(),
+                "Cache nao deveria manter estado antigo");
+            
+            // Quem chama altera o item antes de atualizar: o cache entrega copias
+            repository.buscarPorCodigo("LIV300").get().setTitulo("Alterado fora do repositorio");
+            assertEquals("Cacheado", repository.buscarPorCodigo("LIV300").get().getTitulo(),
+                "Alteracao no item devolvido nao deveria afetar o cache");
+            
+            // Sem cache negativo e com TTL, escritas de outra instancia aparecem
+            ItemRepositoryImpl compartilhado = new ItemRepositoryImpl();
+            CachingItemRepository instancia = new CachingItemRepository(compartilhado, 1024 * 1024, 50, false);
+            assertEquals(false, instancia.buscarPorCodigo("LIV301").isPresent(), "Item ainda nao existe");
+            compartilhado.salvar(new Livro("Criado em outra instancia", "LIV301", "Autor Teste", 100, null));
+            assertEquals(true, instancia.buscarPorCodigo("LIV301").isPresent(), "Ausencia nao deveria ser guardada");
+            compartilhado.remover("LIV301", ItemRepository.QUALQUER_VERSAO);
+            assertEquals(true, instancia.buscarPorCodigo("LIV301").isPresent(), "Entrada valida ainda em cache");
+            Thread.sleep(80);
+            assertEquals(false, instancia.buscarPorCodigo("LIV301").isPresent(), "Entrada expirada deveria ser relida");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarBuscaTexto() {
+        iniciarTeste("Busca Textual - Ignora acentos e ordena por relevancia");
+        try {
+            ItemRepository repository = new ItemRepositoryImpl();
+            repository.salvar(new Livro("Programação Funcional", "LIV400", "Ana Souza", 200, null));
+            repository.salvar(new Livro("Algoritmos", "LIV401", "Paulo Programador", 300, null));
+            repository.salvar(new DVD("Cidade de Deus", "DVD400", "Fernando Meirelles", 130, "Drama"));
+            
+            assertEquals(1, repository.buscarTexto("PROGRAMACAO", 10).size(),
+                "Busca sem acento deveria encontrar apenas o titulo acentuado");
+            assertEquals("LIV400", repository.buscarTexto("progr", 10).get(0).getCodigo(),
+                "Termo no titulo deveria vir antes de termo no autor");
+            assertEquals(2, repository.buscarTexto("progr", 10).size(), "Prefixo deveria casar titulo e autor");
+            assertEquals("DVD400", repository.buscarTexto("drama meirel", 10).get(0).getCodigo(),
+                "Todos os termos deveriam ser procurados nos campos do DVD");
+            assertEquals(0, repository.buscarTexto("drama souza", 10).size(), "Todos os termos sao obrigatorios");
+            assertEquals(0, repository.buscarTexto("  ?! ", 10).size(), "Consulta sem termos nao deveria casar");
+            assertEquals(0, repository.buscarTexto("progr algoritmos", 10).size(),
+                "So o ultimo termo deveria casar como prefixo");
+            assertEquals("LIV401", repository.buscarTexto("algoritmos progr", 10).get(0).getCodigo(),
+                "Termo completo deveria usar a lista exata");
+            assertEquals(0, repository.buscarTexto("pr", 10).size(), "Prefixo curto demais deveria ser exato");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarBuscaTextoSQLite() {
+        iniciarTeste("Busca Textual - Indice FTS5 mantido pelos triggers do SQLite");
+        try {
+            garantirBancoTemporario();
+            ItemRepositorySQLite repository = new ItemRepositorySQLite();
+            repository.salvar(new Livro("Programação Quântica", "BTS001", "Zuleica Borba", 200, null));
+            repository.salvar(new Revista("Revista Oceânica", "BTS002", 7, "05/2024", "Xilografia"));
+            repository.salvar(new DVD("Filme Noturno", "BTS003", "Vardeman", 95, "Documentário"));
+            
+            assertEquals(Arrays.asList("BTS001"), codigos(repository.buscarTexto("PROGRAMACAO quantica", 10)),
+                "Busca sem acento deveria encontrar o titulo acentuado");
+            assertEquals(Arrays.asList("BTS001"), codigos(repository.buscarTexto("zuleica", 10)),
+                "Autor deveria ser indexado pelo trigger de livros");
+            assertEquals(Arrays.asList("BTS002"), codigos(repository.buscarTexto("xilografia", 10)),
+                "Editora deveria ser indexada pelo trigger de revistas");
+            assertEquals(Arrays.asList("BTS003"), codigos(repository.buscarTexto("documentario vardem", 10)),
+                "Diretor e genero deveriam ser indexados pelo trigger de DVDs");
+            assertEquals(0, repository.buscarTexto("vardem documentario", 10).size(),
+                "So o ultimo termo deveria casar como prefixo");
+            
+            // Novo titulo substitui o antigo no indice, sem perder o autor
+            ItemBiblioteca livro = repository.buscarPorCodigo("BTS001").get();
+            livro.setTitulo("Compilação Estelar");
+            repository.atualizar(livro);
+            assertEquals(0, repository.buscarTexto("quantica", 10).size(), "Titulo antigo deveria sair do indice");
+            assertEquals(Arrays.asList("BTS001"), codigos(repository.buscarTexto("compilacao estelar", 10)),
+                "Novo titulo deveria entrar no indice");
+            assertEquals(Arrays.asList("BTS001"), codigos(repository.buscarTexto("zuleica", 10)),
+                "Autor deveria continuar indexado apos trocar o titulo");
+            
+            try (Connection conn = DatabaseConfig.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE livros SET autor = 'Yara Quintela' "
+                    + "WHERE item_id = (SELECT id FROM itens_biblioteca WHERE codigo = 'BTS001')");
+                stmt.executeUpdate("UPDATE dvds SET diretor = 'Wenceslau', genero = 'Drama' "
+                    + "WHERE item_id = (SELECT id FROM itens_biblioteca WHERE codigo = 'BTS003')");
+            }
+            assertEquals(0, repository.buscarTexto("zuleica", 10).size(), "Autor antigo deveria sair do indice");
+            assertEquals(Arrays.asList("BTS001"), codigos(repository.buscarTexto("quintela", 10)),
+                "Novo autor deveria entrar no indice");
+            assertEquals(Arrays.asList("BTS003"), codigos(repository.buscarTexto("wenceslau drama", 10)),
+                "Novo diretor e genero deveriam entrar no indice");
+            
+            assertEquals(true, repository.remover("BTS002", ItemRepository.QUALQUER_VERSAO), "Remocao deveria funcionar");
+            assertEquals(0, repository.buscarTexto("xilografia", 10).size(), "Item removido deveria sair do indice");
+            
+            // Banco anterior a busca textual: o script reindexa o que falta
+            try (Connection conn = DatabaseConfig.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM itens_busca "
+                    + "WHERE rowid = (SELECT id FROM itens_biblioteca WHERE codigo = 'BTS003')");
+            }
+            assertEquals(0, repository.buscarTexto("wenceslau", 10).size(), "Item fora do indice nao deveria casar");
+            BancoTeste.aplicarSchema();
+            assertEquals(Arrays.asList("BTS003"), codigos(repository.buscarTexto("wenceslau drama", 10)),
+                "Reaplicar o schema deveria reindexar o item");
+            assertEquals(Arrays.asList("BTS001"), codigos(repository.buscarTexto("estelar", 10)),
+                "Reaplicar o schema nao deveria duplicar itens ja indexados");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static List<String> codigos(List<ItemBiblioteca> itens) {
+        List<String> codigos = new ArrayList<>();
+        for (ItemBiblioteca item : itens) {
+            codigos.add(item.getCodigo());
+        }
+        return codigos;
+    }
+    
+    private static void testarIndicesSecundarios() {
+        iniciarTeste("Indices Secundarios - Acompanham emprestimo e remocao");
+        try {
+            ItemRepositoryImpl repository = new ItemRepositoryImpl();
+            BibliotecaService service = new BibliotecaService(repository);
+            service.adicionarItem(criarLivroDTO("LIV501", "Livro A"));
+            service.adicionarItem(criarLivroDTO("LIV500", "Livro B"));
+            repository.salvar(new DVD("Filme", "DVD500", "Diretor", 90, "Drama"));
+            
+            service.emprestarItem("LIV501");
+            assertEquals("LIV501", repository.buscarEmprestados().get(0).getCodigo(), "Item emprestado deveria ser indexado");
+            assertEquals(2, repository.contarDisponiveis(), "Dois itens deveriam estar disponiveis");
+            assertEquals("LIV500", repository.buscarPorTipo("livro").get(0).getCodigo(), "Indice por tipo deveria manter a ordem de codigo");
+            
+            // Mesmo codigo salvo com outro tipo sai do indice antigo
+            repository.salvar(new DVD("Outro", "LIV500", "Diretor", 90, "Drama"));
+            assertEquals(1, repository.contarPorTipo("LIVRO"), "Codigo deveria sair do indice de livros");
+            assertEquals(2, repository.contarPorTipo("DVD"), "Codigo deveria entrar no indice de DVDs");
+            
+            service.devolverItem("LIV501");
+            repository.remover("DVD500");
+            assertEquals(0, repository.contarEmprestados(), "Nenhum item deveria estar emprestado");
+            assertEquals(2, repository.buscarDisponiveis().size(), "Item removido deveria sair do indice");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarEscritasConcorrentes() {
+        iniciarTeste("Concorrencia - Escritas paralelas mantem indices consistentes");
+        try {
+            ItemRepositoryImpl repository = new ItemRepositoryImpl();
+            int threads = 8;
+            int codigos = 64;
+            AtomicInteger inseridos = new AtomicInteger();
+            CountDownLatch largada = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> tarefas = new ArrayList<>();
+            
+            for (int t = 0; t < threads; t++) {
+                final long semente = t;
+                tarefas.add(executor.submit(() -> {
+                    Random aleatorio = new Random(semente);
+                    largada.await();
+                    for (int i = 0; i < 5000; i++) {
+                        String codigo = String.format("CON%02d", aleatorio.nextInt(codigos));
+                        ItemBiblioteca item = aleatorio.nextBoolean()
+                            ? new Livro("Livro " + codigo, codigo, "Autor", 100, null)
+                            : new DVD("Filme " + codigo, codigo, "Diretor", 90, "Drama");
+                        item.setEmprestado(aleatorio.nextBoolean());
+                        switch (aleatorio.nextInt(4)) {
+                            case 0:
+                                repository.salvar(item);
+                                break;
+                            case 1:
+                                inseridos.addAndGet(repository.salvarEmLote(Arrays.asList(item)).getTotalSalvos());
+                                break;
+                            case 2:
+                                try {
+                                    repository.atualizar(item);
+                                } catch (IllegalStateException | ConflitoVersaoException e) {
+                                    // Codigo removido ou regravado por outra thread
+                                }
+                                break;
+                            default:
+                                repository.remover(codigo);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            
+            int total = repository.buscarTodos().size();
+            assertEquals(total, repository.contarDisponiveis() + repository.contarEmprestados(),
+                "Indices de situacao deveriam cobrir o acervo");
+            assertEquals(total, repository.contarPorTipo("LIVRO") + repository.contarPorTipo("DVD"),
+                "Indices de tipo deveriam cobrir o acervo");
+            for (ItemBiblioteca item : repository.buscarEmprestados()) {
+                assertEquals(true, item.isEmprestado(), "Indice de emprestados com item disponivel: " + item.getCodigo());
+            }
+            for (ItemBiblioteca item : repository.buscarTodos()) {
+                assertEquals(1, repository.buscarTexto(item.getCodigo(), 10).size(),
+                    "Indice textual deveria conter exatamente o item " + item.getCodigo());
+            }
+            
+            // Insercoes disputando o mesmo codigo: exatamente uma vence
+            AtomicInteger vencedores = new AtomicInteger();
+            CountDownLatch disputa = new CountDownLatch(1);
+            ExecutorService concorrentes = Executors.newFixedThreadPool(threads);
+            List<Future<?>> insercoes = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                insercoes.add(concorrentes.submit(() -> {
+                    disputa.await();
+                    for (int i = 0; i < 500; i++) {
+                        vencedores.addAndGet(repository.salvarEmLote(Arrays.asList(
+                            new Livro("Disputado", "DSP" + i, "Autor", 1, null))).getTotalSalvos());
+                    }
+                    return null;
+                }));
+            }
+            disputa.countDown();
+            for (Future<?> insercao : insercoes) {
+                insercao.get(60, TimeUnit.SECONDS);
+            }
+            concorrentes.shutdown();
+            assertEquals(500, vencedores.get(), "Cada codigo disputado deveria ser inserido uma unica vez");
+            
+            // Emprestimos e devolucoes disputando com atualizar de copias: uma
+            // copia lida antes da transicao tem versao antiga e deve ser recusada,
+            // nunca substituir o item e apagar a transicao
+            int transicionados = 16;
+            AtomicInteger[] saldo = new AtomicInteger[transicionados];
+            for (int i = 0; i < transicionados; i++) {
+                saldo[i] = new AtomicInteger();
+                repository.salvar(new Livro("Transicao", "TRN" + i, "Autor", 100, null));
+            }
+            CountDownLatch mistura = new CountDownLatch(1);
+            ExecutorService misturadas = Executors.newFixedThreadPool(threads);
+            List<Future<?>> operacoes = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final boolean substituidora = t % 2 == 0;
+                final long semente = 100 + t;
+                operacoes.add(misturadas.submit(() -> {
+                    Random aleatorio = new Random(semente);
+                    mistura.await();
+                    for (int i = 0; i < 20000; i++) {
+                        int indice = aleatorio.nextInt(transicionados);
+                        String codigo = "TRN" + indice;
+                        if (substituidora) {
+                            ItemBiblioteca atual = repository.buscarPorCodigo(codigo).get();
+                            long versao = atual.getVersao();
+                            boolean emprestado = atual.isEmprestado();
+                            Livro copia = new Livro("Transicao " + i, codigo, "Autor", 100, null);
+                            copia.setVersao(versao);
+                            copia.setEmprestado(emprestado);
+                            try {
+                                repository.atualizar(copia);
+                            } catch (ConflitoVersaoException e) {
+                                // Transicao ou outra copia gravada no meio
+                            }
+                        } else if (aleatorio.nextBoolean()) {
+                            if (repository.tentarEmprestar(codigo, ItemRepository.QUALQUER_VERSAO).isRealizada()) {
+                                saldo[indice].incrementAndGet();
+                            }
+                        } else if (repository.tentarDevolver(codigo, ItemRepository.QUALQUER_VERSAO).isRealizada()) {
+                            saldo[indice].decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            mistura.countDown();
+            for (Future<?> operacao : operacoes) {
+                operacao.get(60, TimeUnit.SECONDS);
+            }
+            misturadas.shutdown();
+            for (int i = 0; i < transicionados; i++) {
+                assertEquals(saldo[i].get() == 1, repository.buscarPorCodigo("TRN" + i).get().isEmprestado(),
+                    "Transicao realizada deveria continuar visivel em TRN" + i + " (saldo " + saldo[i].get() + ")");
+            }
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarEmprestimosConcorrentes() {
+        iniciarTeste("Concorrencia - Apenas um emprestimo simultaneo vence");
+        try {
+            ItemRepositoryImpl repository = new ItemRepositoryImpl();
+            BibliotecaService service = new BibliotecaService(repository);
+            int itens = 200;
+            for (int i = 0; i < itens; i++) {
+                repository.salvar(new Livro("Livro", "EMP" + i, "Autor", 100, null));
+            }
+            
+            int threads = 8;
+            AtomicInteger sucessos = new AtomicInteger();
+            AtomicInteger recusados = new AtomicInteger();
+            CountDownLatch largada = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < itens; i++) {
+                        try {
+                            service.emprestarItem("EMP" + i);
+                            sucessos.incrementAndGet();
+                        } catch (OperacaoInvalidaException e) {
+                            recusados.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            
+            assertEquals(itens, sucessos.get(), "Cada item deveria ser emprestado exatamente uma vez");
+            assertEquals(itens * (threads - 1), recusados.get(), "Demais tentativas deveriam ser recusadas");
+            assertEquals(itens, repository.contarEmprestados(), "Indice de emprestados deveria ter todos os itens");
+            
+            ResultadoTransicao resultado = repository.tentarDevolver("INEXISTENTE");
+            assertEquals(ResultadoTransicao.Situacao.NAO_ENCONTRADO, resultado.getSituacao(),
+                "Codigo inexistente deveria ser reportado");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarControleVersao() {
+        iniciarTeste("Versao - Gravacao com versao desatualizada e recusada");
+        try {
+            ItemRepositoryImpl repository = new ItemRepositoryImpl();
+            BibliotecaService service = new BibliotecaService(repository);
+            service.adicionarItem(criarLivroDTO("VER001", "Livro Versionado"));
+            
+            long versao = service.buscarPorCodigo("VER001").get().getVersao();
+            assertEquals(ItemBiblioteca.VERSAO_INICIAL, versao, "Item novo deveria estar na versao inicial");
+            
+            Usuario leitor = new UsuarioComum("u-leitor", "Leitor", "leitor@teste.com", "senha123");
+            ItemResponseDTO emprestado = service.emprestarItem("VER001", versao, leitor);
+            assertEquals(versao + 1, emprestado.getVersao(), "Emprestimo deveria incrementar a versao");
+            
+            // Segundo cliente ainda com a versao lida antes do emprestimo
+            try {
+                service.devolverItem("VER001", versao, leitor);
+                throw new RuntimeException("Devolucao com versao antiga deveria falhar");
+            } catch (ConflitoVersaoException e) {
+                assertEquals(versao + 1, e.getVersaoAtual(), "Conflito deveria informar a versao atual");
+            }
+            try {
+                service.removerItem("VER001", versao);
+                throw new RuntimeException("Remocao com versao antiga deveria falhar");
+            } catch (ConflitoVersaoException e) {
+                // esperado
+            }
+            
+            // Copia lida antes de outra gravacao nao pode sobrescrever
+            Livro copia = new Livro("Titulo Antigo", "VER001", "Autor Teste", 100, "123-456");
+            copia.setVersao(versao);
+            try {
+                repository.atualizar(copia);
+                throw new RuntimeException("Atualizacao com versao antiga deveria falhar");
+            } catch (ConflitoVersaoException e) {
+                // esperado
+            }
+            assertEquals("Livro Versionado", service.buscarPorCodigo("VER001").get().getTitulo(),
+                "Titulo nao deveria ter sido sobrescrito");
+            
+            ItemResponseDTO devolvido = service.devolverItem("VER001", emprestado.getVersao(), leitor);
+            assertEquals(true, service.removerItem("VER001", devolvido.getVersao()), "Remocao com versao atual deveria funcionar");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarControleVersaoSQLite() {
+        iniciarTeste("Versao - UPDATE e DELETE versionados no SQLite");
+        try {
+            garantirBancoTemporario();
+            ItemRepositorySQLite repository = new ItemRepositorySQLite();
+            repository.salvar(new Livro("Livro Versionado", "SQLV001", "Autor Teste", 100, "123-456"));
+            
+            ItemBiblioteca primeiro = repository.buscarPorCodigo("SQLV001").get();
+            ItemBiblioteca segundo = repository.buscarPorCodigo("SQLV001").get();
+            long versao = primeiro.getVersao();
+            assertEquals(ItemBiblioteca.VERSAO_INICIAL, versao, "Item novo deveria estar na versao inicial");
+            
+            primeiro.setTitulo("Titulo Novo");
+            repository.atualizar(primeiro);
+            assertEquals(versao + 1, primeiro.getVersao(), "Atualizacao deveria incrementar a versao");
+            
+            // Segundo cliente ainda com a versao lida antes da atualizacao
+            segundo.setTitulo("Titulo Antigo");
+            try {
+                repository.atualizar(segundo);
+                throw new RuntimeException("Atualizacao com versao antiga deveria falhar");
+            } catch (ConflitoVersaoException e) {
+                assertEquals(versao + 1, e.getVersaoAtual(), "Conflito deveria informar a versao atual");
+            }
+            assertEquals("Titulo Novo", repository.buscarPorCodigo("SQLV001").get().getTitulo(),
+                "Titulo nao deveria ter sido sobrescrito");
+            
+            try {
+                repository.remover("SQLV001", versao);
+                throw new RuntimeException("Remocao com versao antiga deveria falhar");
+            } catch (ConflitoVersaoException e) {
+                assertEquals(versao + 1, e.getVersaoAtual(), "Conflito deveria informar a versao atual");
+            }
+            assertEquals(true, repository.buscarPorCodigo("SQLV001").isPresent(), "Item nao deveria ter sido removido");
+            
+            assertEquals(true, repository.remover("SQLV001", versao + 1), "Remocao com versao atual deveria funcionar");
+            assertEquals(false, repository.remover("SQLV001", versao + 1), "Item ausente nao e conflito");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarJournal() {
+        iniciarTeste("Journal - Reabertura reconstroi o acervo");
+        Path arquivo = null;
+        try {
+            arquivo = Files.createTempFile("biblioteca", ".journal");
+            ItemRepositoryJournal journal = new ItemRepositoryJournal(arquivo, true, 0);
+            BibliotecaService service = new BibliotecaService(journal);
+            for (int i = 0; i < 20; i++) {
+                service.adicionarItem(criarLivroDTO(String.format("JOU%02d", i), "Livro Journal " + i));
+            }
+            service.emprestarItem("JOU01");
+            service.emprestarItem("JOU02");
+            service.devolverItem("JOU02");
+            service.removerItem("JOU03");
+            ItemBiblioteca renomeado = journal.buscarPorCodigo("JOU04").get();
+            renomeado.setTitulo("Titulo Alterado");
+            journal.atualizar(renomeado);
+            journal.fechar();
+            
+            // Escrita interrompida: registro pela metade no fim do arquivo
+            Files.write(arquivo, new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+            
+            ItemRepositoryJournal reaberto = new ItemRepositoryJournal(arquivo, true, 0);
+            try {
+                assertEquals(19, reaberto.buscarTodos().size(), "Itens deveriam ser reconstruidos");
+                assertEquals(true, reaberto.buscarPorCodigo("JOU01").get().isEmprestado(), "Emprestimo deveria persistir");
+                assertEquals(false, reaberto.buscarPorCodigo("JOU02").get().isEmprestado(), "Devolucao deveria persistir");
+                assertEquals(ItemBiblioteca.VERSAO_INICIAL + 2, reaberto.buscarPorCodigo("JOU02").get().getVersao(),
+                    "Versao deveria persistir");
+                assertEquals(false, reaberto.buscarPorCodigo("JOU03").isPresent(), "Remocao deveria persistir");
+                assertEquals("Titulo Alterado", reaberto.buscarPorCodigo("JOU04").get().getTitulo(),
+                    "Atualizacao deveria persistir");
+                assertEquals(1, reaberto.buscarEmprestados().size(), "Indices deveriam ser reconstruidos");
+                
+                // O fim invalido foi descartado e o journal continua gravavel
+                reaberto.salvar(new Livro("Depois da Queda", "JOU99", "Autor", 100, null));
+            } finally {
+                reaberto.fechar();
+            }
+            ItemRepositoryJournal terceiro = new ItemRepositoryJournal(arquivo, true, 0);
+            try {
+                assertEquals(20, terceiro.buscarTodos().size(), "Escrita apos o reparo deveria persistir");
+            } finally {
+                terceiro.fechar();
+            }
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (arquivo != null) {
+                try {
+                    Files.deleteIfExists(arquivo);
+                } catch (IOException e) {
+                    // arquivo temporario
+                }
+            }
+        }
+    }
+    
+    private static void testarSnapshot() {
+        iniciarTeste("Snapshot - Inicializacao a partir do snapshot e do final do journal");
+        Path pasta = null;
+        try {
+            pasta = Files.createTempDirectory("biblioteca-snapshot");
+            Path journal = pasta.resolve("biblioteca.journal");
+            Path snapshot = pasta.resolve("biblioteca.snapshot");
+            ItemRepositoryJournal repository = new ItemRepositoryJournal(journal, snapshot, true, 0, 0);
+            for (int i = 0; i < 50; i++) {
+                repository.salvar(new Livro("Livro " + i, String.format("SNP%02d", i), "Autor", 100, null));
+            }
+            repository.tentarEmprestar("SNP00");
+            long tamanhoAntes = Files.size(journal);
+            repository.gravarSnapshot();
+            assertEquals(true, Files.size(journal) < tamanhoAntes, "Journal deveria ser reescrito apos o snapshot");
+            
+            // Escritas depois do snapshot ficam so no journal
+            repository.tentarEmprestar("SNP01");
+            repository.remover("SNP02");
+            repository.salvar(new DVD("Filme Novo", "SNP99", "Diretor", 90, "Drama"));
+            repository.fechar();
+            
+            ItemRepositoryJournal reaberto = new ItemRepositoryJournal(journal, snapshot, true, 0, 0);
+            try {
+                assertEquals(50L, reaberto.getItensDoSnapshot(), "Itens deveriam vir do snapshot");
+                assertEquals(3L, reaberto.getRegistrosReaplicados(), "So o final do journal deveria ser reaplicado");
+                assertEquals(50, reaberto.buscarTodos().size(), "Acervo deveria refletir snapshot e journal");
+                assertEquals(2, reaberto.buscarEmprestados().size(), "Emprestimos deveriam persistir");
+                assertEquals(false, reaberto.buscarPorCodigo("SNP02").isPresent(), "Remocao deveria persistir");
+                assertEquals("DVD", reaberto.buscarPorCodigo("SNP99").get().getTipo(), "Subtipo deveria persistir");
+            } finally {
+                reaberto.fechar();
+            }
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (pasta != null) {
+                try (Stream<Path> arquivos = Files.list(pasta)) {
+                    for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+                        Files.deleteIfExists(arquivo);
+                    }
+                    Files.deleteIfExists(pasta);
+                } catch (IOException e) {
+                    // pasta temporaria
+                }
+            }
+        }
+    }
+    
+    private static void testarEstatisticas() {
+        iniciarTeste("Estatisticas - Contagens por tipo e situacao");
+        try {
+            BibliotecaService service = new BibliotecaService(new ItemRepositoryImpl());
+            service.adicionarItem(criarLivroDTO("EST001", "Livro Um"));
+            service.adicionarItem(criarLivroDTO("EST002", "Livro Dois"));
+            service.adicionarItem(criarLivroDTO("EST003", "Livro Tres"));
+            service.emprestarItem("EST002");
+            service.removerItem("EST003");
+            
+            EstatisticasDTO estatisticas = service.obterEstatisticas();
+            assertEquals(2L, estatisticas.getTotal(), "Total deveria desconsiderar o item removido");
+            assertEquals(1L, estatisticas.getDisponiveis(), "Deveria haver 1 item disponivel");
+            assertEquals(1L, estatisticas.getEmprestados(), "Deveria haver 1 item emprestado");
+            assertEquals(2L, estatisticas.getPorTipo().get("LIVRO"), "Contagem de livros incorreta");
+            assertEquals(0L, estatisticas.getPorTipo().get("DVD"), "Tipos sem itens deveriam contar zero");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarContadoresAcervo() {
+        iniciarTeste("Contadores - Reconstruidos na inicializacao e mantidos a cada escrita");
+        try {
+            AtomicInteger percursos = new AtomicInteger();
+            // A reconstrucao deve usar a agregacao, sem percorrer os itens
+            ItemRepositoryImpl repository = new ItemRepositoryImpl() {
+                @Override
+                public Stream<ItemBiblioteca> streamTodos() {
+                    percursos.incrementAndGet();
+                    return super.streamTodos();
+                }
+            };
+            for (int i = 0; i < 40; i++) {
+                Livro livro = new Livro("Livro " + i, String.format("CNT%02d", i), "Autor", 100, null);
+                livro.setEmprestado(i % 4 == 0);
+                repository.salvar(livro);
+            }
+            repository.salvar(new DVD("Filme", "CNT99", "Diretor", 90, "Drama"));
+            
+            // Acervo ja existente e contado ao criar o servico
+            BibliotecaService service = new BibliotecaService(repository);
+            assertEquals(41L, service.obterEstatisticas().getTotal(), "Contadores deveriam refletir o acervo inicial");
+            assertEquals(10L, service.obterEstatisticas().getEmprestados(), "Emprestados iniciais incorretos");
+            assertEquals(0, percursos.get(), "Reconstrucao nao deveria carregar os itens");
+            EstatisticasAcervo inicial = repository.estatisticasAcervo();
+            assertEquals(10L, inicial.getEmprestadosPorTipo().get("LIVRO"), "Livros emprestados por celula");
+            assertEquals(30L, inicial.getDisponiveisPorTipo().get("LIVRO"), "Livros disponiveis por celula");
+            assertEquals(1L, inicial.getDisponiveisPorTipo().get("DVD"), "DVDs disponiveis por celula");
+            
+            // Emprestimos, devolucoes e remocoes concorrentes sobre os mesmos itens
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int semente = t;
+                tarefas.add(executor.submit(() -> {
+                    Random random = new Random(semente);
+                    for (int i = 0; i < 500; i++) {
+                        String codigo = String.format("CNT%02d", random.nextInt(40));
+                        try {
+                            if (random.nextInt(50) == 0) {
+                                service.removerItem(codigo);
+                            } else if (random.nextBoolean()) {
+                                service.emprestarItem(codigo);
+                            } else {
+                                service.devolverItem(codigo);
+                            }
+                        } catch (BibliotecaException e) {
+                            // item ja removido ou em outra situacao
+                        }
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+            executor.shutdown();
+            
+            EstatisticasDTO contadores = service.obterEstatisticas();
+            EstatisticasAcervo real = repository.estatisticasAcervo();
+            assertEquals(real.getTotal(), contadores.getTotal(), "Total divergente do repositorio");
+            assertEquals(real.getDisponiveis(), contadores.getDisponiveis(), "Disponiveis divergentes do repositorio");
+            assertEquals(real.getEmprestados(), contadores.getEmprestados(), "Emprestados divergentes do repositorio");
+            assertEquals(real.getPorTipo(), contadores.getPorTipo(), "Contagem por tipo divergente do repositorio");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarLimiteEmprestimos() {
+        iniciarTeste("Emprestimos - Registro por usuario e limite de emprestimos ativos");
+        try {
+            ItemRepositoryImpl repository = new ItemRepositoryImpl();
+            EmprestimoRepositoryImpl emprestimos = new EmprestimoRepositoryImpl();
+            BibliotecaService service = new BibliotecaService(repository, emprestimos);
+            for (int i = 0; i < 20; i++) {
+                service.adicionarItem(criarLivroDTO(String.format("LIM%02d", i), "Livro " + i));
+            }
+            Usuario maria = new UsuarioComum("u-maria", "Maria", "maria@teste.com", "senha123");
+            Usuario pedro = new UsuarioComum("u-pedro", "Pedro", "pedro@teste.com", "senha123");
+            
+            // Pedidos simultaneos do mesmo usuario nao passam do limite
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            AtomicInteger realizados = new AtomicInteger();
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final String codigo = String.format("LIM%02d", i);
+                tarefas.add(executor.submit(() -> {
+                    try {
+                        service.emprestarItem(codigo, ItemRepository.QUALQUER_VERSAO, maria);
+                        realizados.incrementAndGet();
+                    } catch (OperacaoInvalidaException e) {
+                        // limite atingido
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+            executor.shutdown();
+            assertEquals(5, realizados.get(), "Somente 5 emprestimos deveriam ser aceitos");
+            assertEquals(5, service.contarEmprestimosAtivos("u-maria"), "Contador do usuario incorreto");
+            assertEquals(5, service.listarEmprestimosDoUsuario(maria).size(), "Meus emprestimos deveria listar 5");
+            assertEquals(5, repository.buscarEmprestados().size(), "Itens recusados nao deveriam ficar emprestados");
+            
+            // Outro usuario nao devolve o item de Maria
+            String deMaria = service.listarEmprestimosDoUsuario(maria).get(0).getCodigoItem();
+            try {
+                service.devolverItem(deMaria, ItemRepository.QUALQUER_VERSAO, pedro);
+                throw new RuntimeException("Devolucao por outro usuario deveria falhar");
+            } catch (PermissaoNegadaException e) {
+                // esperado
+            }
+            
+            // A devolucao libera a vaga
+            service.devolverItem(deMaria, ItemRepository.QUALQUER_VERSAO, maria);
+            assertEquals(4, service.contarEmprestimosAtivos("u-maria"), "Devolucao deveria liberar a vaga");
+            service.emprestarItem("LIM15", ItemRepository.QUALQUER_VERSAO, maria);
+            assertEquals(0, service.listarEmprestimosDoUsuario(pedro).size(), "Pedro nao deveria ter emprestimos");
+            
+            // Sem usuario nao ha emprestimo nem devolucao fora do limite e da posse
+            try {
+                service.emprestarItem("LIM16", ItemRepository.QUALQUER_VERSAO, null);
+                throw new RuntimeException("Emprestimo sem usuario deveria falhar");
+            } catch (AutenticacaoException e) {
+                // esperado
+            }
+            String outroDeMaria = service.listarEmprestimosDoUsuario(maria).get(0).getCodigoItem();
+            try {
+                service.devolverItem(outroDeMaria, ItemRepository.QUALQUER_VERSAO, null);
+                throw new RuntimeException("Devolucao sem usuario deveria falhar");
+            } catch (AutenticacaoException e) {
+                // esperado
+            }
+            assertEquals(false, repository.buscarPorCodigo("LIM16").get().isEmprestado(),
+                "Pedido sem usuario nao deveria emprestar o item");
+            assertEquals(5, service.contarEmprestimosAtivos("u-maria"), "Pedido sem usuario nao deveria mexer na vaga");
+            
+            // Os contadores sao remontados a partir dos registros
+            BibliotecaService reiniciado = new BibliotecaService(repository, emprestimos);
+            assertEquals(5, reiniciado.contarEmprestimosAtivos("u-maria"), "Contador deveria ser reconstruido");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
+    private static void testarRegistroEmprestimoAtomico() {
+        iniciarTeste("Emprestimos - Registro gravado junto com a troca de situacao do item");
+        try {
+            // Em memoria
+            ItemRepositoryImpl repository = new ItemRepositoryImpl();
+            EmprestimoRepositoryImpl emprestimos = new EmprestimoRepositoryImpl();
+            BibliotecaService service = new BibliotecaService(repository, emprestimos);
+            service.adicionarItem(criarLivroDTO("ATM001", "Livro Atomico"));
+            service.adicionarItem(criarLivroDTO("ATM002", "Livro Orfao"));
+            Usuario ana = new UsuarioComum("u-ana", "Ana", "ana@teste.com", "senha123");
+            Usuario bibliotecaria = new Bibliotecario("u-bib", "Bia", "bia@teste.com", "senha123");
+            
+            // Falha no registro desfaz a troca: item disponivel na versao original
+            emprestimos.registrar(new Emprestimo("u-outro", "ATM001"));
+            long versao = repository.buscarPorCodigo("ATM001").get().getVersao();
+            try {
+                service.emprestarItem("ATM001", ItemRepository.QUALQUER_VERSAO, ana);
+                throw new RuntimeException("Emprestimo com registro ativo duplicado deveria falhar");
+            } catch (IllegalStateException e) {
+                // esperado
+            }
+            ItemBiblioteca item = repository.buscarPorCodigo("ATM001").get();
+            assertEquals(false, item.isEmprestado(), "Falha no registro deveria desfazer o emprestimo");
+            assertEquals(versao, item.getVersao(), "Falha no registro deveria restaurar a versao");
+            assertEquals(1L, repository.buscarDisponiveis().stream()
+                .filter(i -> i.getCodigo().equals("ATM001")).count(), "Item deveria continuar entre os disponiveis");
+            assertEquals(0, service.contarEmprestimosAtivos("u-ana"), "Falha no registro deveria liberar a vaga");
+            
+            // Item emprestado sem registro so volta por quem pode devolver qualquer item
+            service.emprestarItem("ATM002");
+            try {
+                service.devolverItem("ATM002", ItemRepository.QUALQUER_VERSAO, ana);
+                throw new RuntimeException("Devolucao sem emprestimo registrado deveria falhar");
+            } catch (PermissaoNegadaException e) {
+                // esperado
+            }
+            assertEquals(true, repository.buscarPorCodigo("ATM002").get().isEmprestado(),
+                "Devolucao recusada deveria manter o item emprestado");
+            service.devolverItem("ATM002", ItemRepository.QUALQUER_VERSAO, bibliotecaria);
+            service.emprestarItem("ATM002", ItemRepository.QUALQUER_VERSAO, ana);
+            assertEquals(1, service.contarEmprestimosAtivos("u-ana"), "Item devolvido deveria poder ser emprestado");
+            
+            // No SQLite, item e emprestimo sao gravados na mesma operacao do escritor
+            garantirBancoTemporario();
+            ItemRepositorySQLite repositorySQLite = new ItemRepositorySQLite();
+            EmprestimoRepositorySQLite emprestimosSQLite = new EmprestimoRepositorySQLite();
+            BibliotecaService serviceSQLite = new BibliotecaService(repositorySQLite, emprestimosSQLite);
+            serviceSQLite.adicionarItem(criarLivroDTO("ATM101", "Livro Atomico SQLite"));
+            Usuario bruno = new UsuarioComum("u-bruno", "Bruno", "bruno@teste.com", "senha123");
+            
+            serviceSQLite.emprestarItem("ATM101", ItemRepository.QUALQUER_VERSAO, ana);
+            assertEquals(true, repositorySQLite.buscarPorCodigo("ATM101").get().isEmprestado(), "Item deveria estar emprestado");
+            assertEquals("u-ana", emprestimosSQLite.buscarAtivoPorItem("ATM101").get().getUsuarioId(),
+                "Emprestimo deveria estar registrado");
+            
+            long versaoEmprestado = repositorySQLite.buscarPorCodigo("ATM101").get().getVersao();
+            try {
+                serviceSQLite.devolverItem("ATM101", ItemRepository.QUALQUER_VERSAO, bruno);
+                throw new RuntimeException("Devolucao por outro usuario deveria falhar");
+            } catch (PermissaoNegadaException e) {
+                // esperado
+            }
+            ItemBiblioteca recusado = repositorySQLite.buscarPorCodigo("ATM101").get();
+            assertEquals(true, recusado.isEmprestado(), "Devolucao recusada deveria manter o item emprestado");
+            assertEquals(versaoEmprestado, recusado.getVersao(), "Devolucao recusada nao deveria mudar a versao");
+            assertEquals(true, emprestimosSQLite.buscarAtivoPorItem("ATM101").isPresent(),
+                "Devolucao recusada deveria manter o emprestimo ativo");
+            
+            serviceSQLite.devolverItem("ATM101", ItemRepository.QUALQUER_VERSAO, ana);
+            assertEquals(false, repositorySQLite.buscarPorCodigo("ATM101").get().isEmprestado(), "Item deveria estar disponivel");
+            assertEquals(false, emprestimosSQLite.buscarAtivoPorItem("ATM101").isPresent(), "Emprestimo deveria estar encerrado");
+            
+            serviceSQLite.emprestarItem("ATM101", ItemRepository.QUALQUER_VERSAO, bruno);
+            assertEquals("u-bruno", emprestimosSQLite.buscarAtivoPorItem("ATM101").get().getUsuarioId(),
+                "Item devolvido deveria poder ser emprestado de novo");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        }
+    }
+    
     // Metodos auxiliares
     
     private static ItemDTO criarLivroDTO(String codigo, String titulo) {
@@ -176,6 +1419,313 @@ public class BibliotecaTest {
         return dto;
     }
     
+    private static void testarMotorNioPipelining() {
+        iniciarTeste("Motor NIO - Keep-alive e pipelining com respostas em ordem");
+        MotorNio motor = null;
+        try {
+            motor = new MotorNio(0, 4096, 65536, 30000);
+            ExecutorService trabalhadores = Executors.newFixedThreadPool(4);
+            // A primeira requisicao demora mais, como um handler preso no JDBC
+            motor.registrar("/lento", troca -> trabalhadores.execute(() -> {
+                try {
+                    Thread.sleep(100);
+                    responderTexto(troca, "lento");
+                } catch (Exception e) {
+                    troca.close();
+                }
+            }));
+            motor.registrar("/", troca -> trabalhadores.execute(() -> {
+                try {
+                    String corpo = new String(troca.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                    responderTexto(troca, troca.getRequestMethod() + " " + troca.getRequestURI().getPath() + " " + corpo);
+                } catch (IOException e) {
+                    troca.close();
+                }
+            }));
+            motor.iniciar();
+            
+            String respostas;
+            try (Socket socket = new Socket("localhost", motor.getPorta())) {
+                OutputStream saida = socket.getOutputStream();
+                // Tres requisicoes em uma unica escrita, sem esperar as respostas
+                saida.write(("GET /lento HTTP/1.1\r\nHost: teste\r\n\r\n"
+                    + "POST /eco HTTP/1.1\r\nHost: teste\r\nContent-Length: 3\r\n\r\nabc"
+                    + "GET /fim HTTP/1.1\r\nHost: teste\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+                saida.flush();
+                socket.setSoTimeout(5000);
+                respostas = new String(lerAteFechar(socket.getInputStream()), StandardCharsets.UTF_8);
+            }
+            trabalhadores.shutdown();
+            
+            int lento = respostas.indexOf("\r\n\r\nlento");
+            int eco = respostas.indexOf("\r\n\r\nPOST /eco abc");
+            int fim = respostas.indexOf("\r\n\r\nGET /fim ");
+            if (lento < 0 || eco < 0 || fim < 0) {
+                throw new RuntimeException("Respostas incompletas: " + respostas);
+            }
+            assertEquals(true, lento < eco && eco < fim, "Respostas deveriam sair na ordem das requisicoes");
+            assertEquals(3, respostas.split("HTTP/1.1 200 OK").length - 1, "Deveria haver tres respostas 200");
+            assertEquals(true, respostas.contains("Connection: close"), "Ultima resposta deveria fechar a conexao");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (motor != null) {
+                motor.parar();
+            }
+        }
+    }
+    
+    private static void testarRoteador() {
+        iniciarTeste("Roteador - Parametros, prioridade de segmentos fixos, 404 e 405");
+        MotorNio motor = null;
+        try {
+            AtomicInteger passagens = new AtomicInteger();
+            Roteador roteador = new Roteador(null, null)
+                .usar((troca, rota, cadeia) -> {
+                    passagens.incrementAndGet();
+                    cadeia.seguir(troca);
+                });
+            roteador.get("/api/itens/busca", troca -> responderTexto(troca, "busca"));
+            roteador.get("/api/itens/{codigo}", troca -> responderTexto(troca, "item " + Roteador.parametro(troca, "codigo")));
+            roteador.post("/api/itens/{codigo}/emprestar",
+                troca -> responderTexto(troca, "emprestar " + Roteador.parametro(troca, "codigo")));
+            
+            motor = new MotorNio(0, 4096, 65536, 30000);
+            motor.registrar("/", roteador);
+            motor.iniciar();
+            HttpClient http = HttpClient.newHttpClient();
+            String base = "http://localhost:" + motor.getPorta();
+            
+            HttpResponse<String> busca = http.send(HttpRequest.newBuilder(URI.create(base + "/api/itens/busca")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals("busca", busca.body(), "Segmento fixo deveria ter prioridade sobre {codigo}");
+            
+            HttpResponse<String> item = http.send(HttpRequest.newBuilder(URI.create(base + "/api/itens/LIV001")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals("item LIV001", item.body(), "Parametro {codigo} nao extraido");
+            
+            HttpResponse<String> emprestar = http.send(HttpRequest.newBuilder(URI.create(base + "/api/itens/LIV001/emprestar"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals("emprestar LIV001", emprestar.body(), "Rota com parametro no meio do caminho falhou");
+            
+            HttpResponse<String> metodo = http.send(HttpRequest.newBuilder(URI.create(base + "/api/itens/LIV001"))
+                .DELETE().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(405, metodo.statusCode(), "Metodo nao registrado deveria responder 405");
+            assertEquals("GET", metodo.headers().firstValue("Allow").orElse(null), "Allow deveria listar os metodos da rota");
+            
+            HttpResponse<String> inexistente = http.send(HttpRequest.newBuilder(URI.create(base + "/api/outra")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(404, inexistente.statusCode(), "Caminho sem rota deveria responder 404");
+            assertEquals(5, passagens.get(), "Todas as requisicoes deveriam passar pelo middleware");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (motor != null) {
+                motor.parar();
+            }
+        }
+    }
+    
+    private static void testarPoolRequisicoesSaturado() {
+        iniciarTeste("Pool de Requisicoes - 503 com Retry-After quando saturado");
+        // Uma thread e uma vaga na fila: duas tarefas presas bastam para saturar
+        PoolRequisicoes pool = new PoolRequisicoes(1, 1, 1, 60000, 7);
+        CountDownLatch liberar = new CountDownLatch(1);
+        BibliotecaServer server = null;
+        try {
+            BibliotecaController controller = new BibliotecaController(new BibliotecaService(new ItemRepositoryImpl()));
+            MotorNio motor = new MotorNio(0, 4096, 65536, 30000);
+            server = new BibliotecaServer(controller, pool, motor);
+            server.iniciar();
+            
+            CountDownLatch emExecucao = new CountDownLatch(1);
+            pool.execute(() -> {
+                emExecucao.countDown();
+                aguardar(liberar);
+            });
+            assertEquals(true, emExecucao.await(2, TimeUnit.SECONDS), "Tarefa deveria ocupar a unica thread");
+            pool.execute(() -> aguardar(liberar));
+            assertEquals(1, pool.getTamanhoFila(), "Segunda tarefa deveria ocupar a fila");
+            
+            HttpClient http = HttpClient.newHttpClient();
+            String base = "http://localhost:" + motor.getPorta();
+            HttpResponse<String> recusada = http.send(HttpRequest.newBuilder(URI.create(base + "/api/itens")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, recusada.statusCode(), "Pool saturado deveria responder 503");
+            assertEquals("7", recusada.headers().firstValue("Retry-After").orElse(null),
+                "Retry-After deveria vir do pool");
+            assertEquals(true, recusada.body().contains("SERVIDOR_SOBRECARREGADO"), "Codigo de erro ausente: " + recusada.body());
+            assertEquals(1L, pool.getRejeitadas(), "Recusa deveria ser contada");
+            
+            // /health roda fora do pool e continua respondendo
+            HttpResponse<String> saude = http.send(HttpRequest.newBuilder(URI.create(base + "/health")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, saude.statusCode(), "Health deveria responder com o pool saturado");
+            
+            liberar.countDown();
+            long limite = System.currentTimeMillis() + 2000;
+            while (pool.getTamanhoFila() > 0 && System.currentTimeMillis() < limite) {
+                Thread.sleep(10);
+            }
+            HttpResponse<String> atendida = http.send(HttpRequest.newBuilder(URI.create(base + "/api/itens")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, atendida.statusCode(), "Com a fila livre a requisicao deveria ser atendida");
+            assertEquals(1L, pool.getRejeitadas(), "Nenhuma recusa nova esperada");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            liberar.countDown();
+            if (server != null) {
+                server.parar();
+            } else {
+                pool.encerrar(1000);
+            }
+        }
+    }
+    
+    private static void testarFallbackThreadsVirtuais() {
+        iniciarTeste("Pool de Requisicoes - Fallback sem threads virtuais");
+        PoolRequisicoes pool = null;
+        try {
+            // newVirtualThreadPerTaskExecutor so existe (sem preview) a partir do Java 21
+            boolean esperaVirtuais = Runtime.version().feature() >= 21;
+            assertEquals(esperaVirtuais, PoolRequisicoes.suportaThreadsVirtuais(),
+                "Deteccao de threads virtuais no Java " + Runtime.version());
+            
+            AtomicInteger poolsPlataforma = new AtomicInteger();
+            pool = PoolRequisicoes.virtualOuPlataforma(4, 2, () -> {
+                poolsPlataforma.incrementAndGet();
+                return new PoolRequisicoes(1, 2, 4, 1000, 2);
+            });
+            assertEquals(esperaVirtuais, pool.isVirtual(), "Modo do pool escolhido");
+            assertEquals(esperaVirtuais ? 0 : 1, poolsPlataforma.get(), "Pool da plataforma criado so no fallback");
+            assertEquals(esperaVirtuais ? "virtual" : "plataforma", pool.estatisticas().get("modo"), "Modo nas estatisticas");
+            assertEquals(2, pool.getRetryAfterSegundos(), "Retry-After deveria ser mantido");
+            
+            CountDownLatch executada = new CountDownLatch(1);
+            pool.execute(executada::countDown);
+            assertEquals(true, executada.await(2, TimeUnit.SECONDS), "Tarefa deveria rodar no pool escolhido");
+            
+            if (!esperaVirtuais) {
+                try {
+                    PoolRequisicoes.virtual(4, 2).encerrar(1000);
+                    throw new RuntimeException("virtual() deveria recusar um runtime sem threads virtuais");
+                } catch (UnsupportedOperationException e) {
+                    // Esperado
+                }
+            }
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (pool != null) {
+                pool.encerrar(1000);
+            }
+        }
+    }
+    
+    private static void aguardar(CountDownLatch trava) {
+        try {
+            trava.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void testarArquivosEstaticos() {
+        iniciarTeste("Arquivos estaticos - Gzip, ETag, 304 e URLs versionadas");
+        MotorNio motor = null;
+        try {
+            StringBuilder script = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                script.append("console.log('linha ").append(i).append("');\n");
+            }
+            Map<String, byte[]> conteudos = new HashMap<>();
+            conteudos.put("index.html", "<script src=\"app.js\"></script>".getBytes(StandardCharsets.UTF_8));
+            conteudos.put("app.js", script.toString().getBytes(StandardCharsets.UTF_8));
+            ArquivosEstaticos estaticos = new ArquivosEstaticos(conteudos, 3600);
+            
+            Roteador roteador = new Roteador(null, null);
+            estaticos.registrar(roteador);
+            motor = new MotorNio(0, 4096, 65536, 30000);
+            motor.registrar("/", roteador);
+            motor.iniciar();
+            HttpClient http = HttpClient.newHttpClient();
+            String base = "http://localhost:" + motor.getPorta();
+            
+            HttpResponse<String> pagina = http.send(HttpRequest.newBuilder(URI.create(base + "/")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            String etag = estaticos.getEtag("app.js");
+            String versionado = "app.js?v=" + etag.replace("\"", "");
+            assertEquals(true, pagina.body().contains("src=\"" + versionado + "\""), "Pagina deveria referenciar a URL versionada");
+            assertEquals("no-cache", pagina.headers().firstValue("Cache-Control").orElse(null), "Pagina deveria revalidar");
+            
+            HttpResponse<byte[]> compactado = http.send(HttpRequest.newBuilder(URI.create(base + "/" + versionado))
+                .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("gzip", compactado.headers().firstValue("Content-Encoding").orElse(null), "Deveria servir gzip");
+            assertEquals(true, compactado.body().length < conteudos.get("app.js").length, "Variante gzip deveria ser menor");
+            try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(compactado.body()))) {
+                assertEquals(script.toString(), new String(entrada.readAllBytes(), StandardCharsets.UTF_8),
+                    "Gzip deveria descompactar no conteudo original");
+            }
+            assertEquals("public, max-age=3600, immutable", compactado.headers().firstValue("Cache-Control").orElse(null),
+                "URL versionada deveria ter cache longo");
+            
+            HttpResponse<String> semGzip = http.send(HttpRequest.newBuilder(URI.create(base + "/app.js")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(script.toString(), semGzip.body(), "Sem Accept-Encoding o conteudo sai sem compressao");
+            assertEquals(etag, semGzip.headers().firstValue("ETag").orElse(null), "ETag da variante sem compressao");
+            
+            HttpResponse<String> naoModificado = http.send(HttpRequest.newBuilder(URI.create(base + "/app.js"))
+                .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(304, naoModificado.statusCode(), "If-None-Match com o ETag atual deveria responder 304");
+            assertEquals(1L, estaticos.estatisticas().get("naoModificados"), "304 deveria ser contado");
+            
+            testePassou();
+        } catch (Exception e) {
+            testeFalhou(e);
+        } finally {
+            if (motor != null) {
+                motor.parar();
+            }
+        }
+    }
+    
+    private static void responderTexto(com.sun.net.httpserver.HttpExchange troca, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        troca.sendResponseHeaders(200, bytes.length);
+        try (OutputStream corpo = troca.getResponseBody()) {
+            corpo.write(bytes);
+        }
+    }
+    
+    private static byte[] lerAteFechar(InputStream entrada) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] bloco = new byte[4096];
+        int lidos;
+        while ((lidos = entrada.read(bloco)) >= 0) {
+            bytes.write(bloco, 0, lidos);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Aponta DatabaseConfig para um banco temporario, uma unica vez por execucao
+     */
+    private static void garantirBancoTemporario() {
+        if (!bancoTemporarioCriado) {
+            BancoTeste.criarBancoTemporario();
+            bancoTemporarioCriado = true;
+        }
+    }
+    
     private static void iniciarTeste(String nome) {
         totalTestes++;
         System.out.print("[" + totalTestes + "] " + nome + "... ");
@@ -0,0 +1,373 @@
+package com.biblioteca.web;
+
+import com.biblioteca.config.ConfigManager;
+import com.biblioteca.util.Logger;
+import com.biblioteca.web.roteamento.Rota;
+import com.biblioteca.web.roteamento.Roteador;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Arquivos estaticos da interface web, carregados uma unica vez do classpath
+ *
+ * Cada arquivo fica em memoria com uma variante gzip pre-calculada (quando
+ * ela e menor) e um ETag derivado do SHA-256 do conteudo. As respostas
+ * honram If-None-Match com 304 e nao tocam no disco.
+ *
+ * As paginas HTML saem com as referencias aos outros arquivos versionadas
+ * pelo hash (app.js?v=...), e sao revalidadas a cada acesso (no-cache). Os
+ * arquivos pedidos com a versao atual recebem Cache-Control de longa
+ * duracao: um conteudo novo muda a URL nas paginas.
+ */
+public class ArquivosEstaticos {
+
+    private static final Logger logger = Logger.getLogger(ArquivosEstaticos.class);
+    private static final String PAGINA_INICIAL = "index.html";
+    private static final String PARAMETRO_VERSAO = "v=";
+    // Abaixo disso o gzip nao compensa o cabecalho e o custo de descompactar
+    private static final int MINIMO_GZIP = 256;
+
+    private final Map<String, Arquivo> arquivos;
+    private final long maxAgeSegundos;
+    private final LongAdder respostas = new LongAdder();
+    private final LongAdder naoModificados = new LongAdder();
+
+    /**
+     * Carrega os arquivos do diretorio "web" do classpath, com o max-age de
+     * server.estaticos.max.age.s
+     */
+    public static ArquivosEstaticos doClasspath() {
+        return doClasspath("web",
+            ConfigManager.getInstance().getInt("server.estaticos.max.age.s", 31536000));
+    }
+
+    /**
+     * Carrega os arquivos de um diretorio do classpath (em pasta ou dentro do jar)
+     * Diretorio ausente resulta em um cache vazio, com um aviso no log.
+     */
+    public static ArquivosEstaticos doClasspath(String diretorio, long maxAgeSegundos) {
+        Map<String, byte[]> conteudos = new TreeMap<>();
+        URL url = ArquivosEstaticos.class.getClassLoader().getResource(diretorio);
+        if (url == null) {
+            logger.warn("Diretório de arquivos estáticos não encontrado no classpath: " + diretorio);
+            return new ArquivosEstaticos(conteudos, maxAgeSegundos);
+        }
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                lerDoJar(uri, conteudos);
+            } else {
+                lerDiretorio(Paths.get(uri), conteudos);
+            }
+        } catch (IOException | URISyntaxException e) {
+            logger.error("Erro ao carregar arquivos estáticos: " + e.getMessage());
+        }
+        return new ArquivosEstaticos(conteudos, maxAgeSegundos);
+    }
+
+    /**
+     * @param conteudos nome do arquivo (sem diretorio) para o conteudo
+     */
+    public ArquivosEstaticos(Map<String, byte[]> conteudos, long maxAgeSegundos) {
+        this.maxAgeSegundos = maxAgeSegundos;
+        Map<String, String> versoes = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entrada : conteudos.entrySet()) {
+            if (!entrada.getKey().endsWith(".html")) {
+                versoes.put(entrada.getKey(), hash(entrada.getValue()));
+            }
+        }
+        Map<String, Arquivo> carregados = new LinkedHashMap<>();
+        long bytes = 0;
+        long bytesGzip = 0;
+        for (Map.Entry<String, byte[]> entrada : conteudos.entrySet()) {
+            String nome = entrada.getKey();
+            boolean pagina = nome.endsWith(".html");
+            byte[] conteudo = pagina ? versionarReferencias(entrada.getValue(), versoes) : entrada.getValue();
+            Arquivo arquivo = new Arquivo(nome, conteudo, pagina ? null : versoes.get(nome));
+            carregados.put(nome, arquivo);
+            bytes += conteudo.length;
+            bytesGzip += arquivo.gzip != null ? arquivo.gzip.length : conteudo.length;
+        }
+        this.arquivos = Collections.unmodifiableMap(carregados);
+        logger.info("Arquivos estáticos em memória: " + arquivos.size() + " (" + bytes + " bytes, "
+            + bytesGzip + " com gzip)");
+    }
+
+    /**
+     * Uma rota GET por arquivo, e "/" para o index.html. Sao atendidas fora
+     * do pool de requisicoes: a resposta ja esta pronta em memoria.
+     */
+    public void registrar(Roteador roteador) {
+        for (Arquivo arquivo : arquivos.values()) {
+            roteador.get("/" + arquivo.nome, arquivo)
+                .autenticacao(Rota.Autenticacao.NENHUMA)
+                .semPool();
+        }
+        Arquivo inicial = arquivos.get(PAGINA_INICIAL);
+        if (inicial != null) {
+            roteador.get("/", inicial)
+                .autenticacao(Rota.Autenticacao.NENHUMA)
+                .semPool();
+        }
+    }
+
+    public int getQuantidade() {
+        return arquivos.size();
+    }
+
+    /**
+     * Valor do ETag servido para o arquivo sem compressao, ou null se nao existir
+     */
+    public String getEtag(String nome) {
+        Arquivo arquivo = arquivos.get(nome);
+        return arquivo == null ? null : arquivo.etag;
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> estatisticas = new LinkedHashMap<>();
+        estatisticas.put("arquivos", arquivos.size());
+        estatisticas.put("respostas", respostas.sum());
+        estatisticas.put("naoModificados", naoModificados.sum());
+        return estatisticas;
+    }
+
+    private static void lerDoJar(URI uri, Map<String, byte[]> conteudos) throws IOException {
+        FileSystem jar;
+        boolean abertoAqui;
+        try {
+            jar = FileSystems.newFileSystem(uri, Collections.emptyMap());
+            abertoAqui = true;
+        } catch (FileSystemAlreadyExistsException e) {
+            // Aberto por outro codigo: usa o mesmo e deixa o fechamento com ele
+            jar = FileSystems.getFileSystem(uri);
+            abertoAqui = false;
+        }
+        try {
+            lerDiretorio(jar.provider().getPath(uri), conteudos);
+        } finally {
+            if (abertoAqui) {
+                jar.close();
+            }
+        }
+    }
+
+    private static void lerDiretorio(Path diretorio, Map<String, byte[]> conteudos) throws IOException {
+        try (Stream<Path> caminhos = Files.list(diretorio)) {
+            for (Path caminho : caminhos.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                conteudos.put(caminho.getFileName().toString(), Files.readAllBytes(caminho));
+            }
+        }
+    }
+
+    /**
+     * Troca href="app.js" e src="app.js" por app.js?v=<hash> no HTML
+     */
+    private static byte[] versionarReferencias(byte[] html, Map<String, String> versoes) {
+        String texto = new String(html, StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> versao : versoes.entrySet()) {
+            String nome = versao.getKey();
+            String versionado = nome + "?" + PARAMETRO_VERSAO + versao.getValue();
+            texto = texto.replace("href=\"" + nome + "\"", "href=\"" + versionado + "\"")
+                .replace("src=\"" + nome + "\"", "src=\"" + versionado + "\"");
+        }
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String hash(byte[] conteudo) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(conteudo);
+            // 96 bits bastam para distinguir versoes do mesmo arquivo
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] conteudo) {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(conteudo.length / 2 + 32);
+        try (GZIPOutputStream compactador = new GZIPOutputStream(saida)) {
+            compactador.write(conteudo);
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao compactar arquivo estático", e);
+        }
+        return saida.toByteArray();
+    }
+
+    /**
+     * Tipo de conteudo pela extensao do arquivo
+     */
+    static String determinarContentType(String nome) {
+        if (nome.endsWith(".html")) return "text/html; charset=UTF-8";
+        if (nome.endsWith(".css")) return "text/css; charset=UTF-8";
+        if (nome.endsWith(".js")) return "application/javascript; charset=UTF-8";
+        if (nome.endsWith(".json")) return "application/json; charset=UTF-8";
+        if (nome.endsWith(".svg")) return "image/svg+xml";
+        if (nome.endsWith(".png")) return "image/png";
+        if (nome.endsWith(".ico")) return "image/x-icon";
+        return "text/plain; charset=UTF-8";
+    }
+
+    /**
+     * true se o cliente aceita gzip (Accept-Encoding sem gzip;q=0)
+     */
+    static boolean aceitaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacao : acceptEncoding.split(",")) {
+            String[] partes = codificacao.trim().split(";");
+            String nome = partes[0].trim();
+            if (nome.equalsIgnoreCase("gzip") || nome.equals("*")) {
+                for (int i = 1; i < partes.length; i++) {
+                    String parametro = partes[i].trim().replace(" ", "");
+                    if (parametro.startsWith("q=") && qualidadeZero(parametro.substring(2))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean qualidadeZero(String valor) {
+        try {
+            return Double.parseDouble(valor) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * true se algum ETag de If-None-Match (ou "*") casa com o da variante
+     * A comparacao e fraca, como manda o If-None-Match: W/ e ignorado.
+     */
+    static boolean casaIfNoneMatch(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.equals("*")) {
+                return true;
+            }
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Arquivo em memoria; serve a si mesmo como handler da rota
+     */
+    private class Arquivo implements HttpHandler {
+        final String nome;
+        final String contentType;
+        final byte[] conteudo;
+        // null se o gzip nao reduzir o tamanho
+        final byte[] gzip;
+        final String etag;
+        final String etagGzip;
+        // Hash das URLs versionadas (?v=); null para paginas HTML
+        final String versao;
+
+        Arquivo(String nome, byte[] conteudo, String versao) {
+            this.nome = nome;
+            this.contentType = determinarContentType(nome);
+            this.conteudo = conteudo;
+            this.versao = versao;
+            String hash = versao != null ? versao : hash(conteudo);
+            this.etag = "\"" + hash + "\"";
+            byte[] compactado = conteudo.length >= MINIMO_GZIP ? ArquivosEstaticos.gzip(conteudo) : null;
+            if (compactado != null && compactado.length < conteudo.length) {
+                this.gzip = compactado;
+                // Representacao diferente, ETag diferente
+                this.etagGzip = "\"" + hash + "-gz\"";
+            } else {
+                this.gzip = null;
+                this.etagGzip = null;
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            respostas.increment();
+            Headers requisicao = exchange.getRequestHeaders();
+            boolean comGzip = gzip != null && aceitaGzip(requisicao.getFirst("Accept-Encoding"));
+            String etagResposta = comGzip ? etagGzip : etag;
+
+            Headers cabecalhos = exchange.getResponseHeaders();
+            cabecalhos.set("ETag", etagResposta);
+            cabecalhos.set("Cache-Control", cacheControl(exchange.getRequestURI().getRawQuery()));
+            if (gzip != null) {
+                cabecalhos.set("Vary", "Accept-Encoding");
+            }
+
+            String ifNoneMatch = requisicao.getFirst("If-None-Match");
+            // O ETag da outra variante tambem vale: o conteudo e o mesmo
+            if (casaIfNoneMatch(ifNoneMatch, etagResposta)
+                    || (etagGzip != null && casaIfNoneMatch(ifNoneMatch, comGzip ? etag : etagGzip))) {
+                naoModificados.increment();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] corpo = comGzip ? gzip : conteudo;
+            cabecalhos.set("Content-Type", contentType);
+            if (comGzip) {
+                cabecalhos.set("Content-Encoding", "gzip");
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, corpo.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(corpo);
+            }
+        }
+
+        /**
+         * Cache longo so para a URL versionada com o hash atual; o resto
+         * (paginas, URL sem versao ou com versao antiga) revalida com o ETag
+         */
+        private String cacheControl(String query) {
+            if (versao != null && query != null && query.equals(PARAMETRO_VERSAO + versao)) {
+                return "public, max-age=" + maxAgeSegundos + ", immutable";
+            }
+            return "no-cache";
+        }
+    }
+}
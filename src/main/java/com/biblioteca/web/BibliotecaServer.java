@@ -1,33 +1,42 @@
 package com.biblioteca.web;
 
+import com.biblioteca.config.ConfigManager;
 import com.biblioteca.controller.AutenticacaoController;
 import com.biblioteca.controller.BibliotecaController;
+import com.biblioteca.dto.EmprestimoDTO;
+import com.biblioteca.dto.EstatisticasDTO;
 import com.biblioteca.dto.ItemDTO;
 import com.biblioteca.dto.ItemResponseDTO;
 import com.biblioteca.dto.LoginDTO;
 import com.biblioteca.dto.LoginResponseDTO;
+import com.biblioteca.dto.PaginaDTO;
 import com.biblioteca.exception.*;
 import com.biblioteca.model.ItemBiblioteca;
 import com.biblioteca.model.usuario.Usuario;
+import com.biblioteca.repository.ItemRepository;
 import com.biblioteca.repository.UsuarioRepository;
 import com.biblioteca.repository.UsuarioRepositoryImpl;
 import com.biblioteca.service.AutenticacaoService;
 import com.biblioteca.util.Logger;
+import com.biblioteca.web.motor.MotorHttp;
+import com.biblioteca.web.roteamento.AutenticacaoMiddleware;
+import com.biblioteca.web.roteamento.CorsMiddleware;
+import com.biblioteca.web.roteamento.MetricasMiddleware;
+import com.biblioteca.web.roteamento.Rota;
+import com.biblioteca.web.roteamento.Roteador;
 import com.biblioteca.web.response.ApiResponse;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Servidor HTTP para a aplicação de biblioteca.
@@ -38,9 +47,18 @@ import java.util.Map;
  */
 public class BibliotecaServer {
     private static final Logger logger = Logger.getLogger(BibliotecaServer.class);
-    private final HttpServer server;
+    private static final int LIMITE_PADRAO_PAGINA =
+        ConfigManager.getInstance().getInt("api.paginacao.limite.padrao", 50);
+    private final MotorHttp motor;
     private final BibliotecaController controller;
     private final AutenticacaoController autenticacaoController;
+    private final PoolRequisicoes pool;
+    private final CorsMiddleware cors = new CorsMiddleware();
+    private final MetricasMiddleware metricas = new MetricasMiddleware();
+    private final ArquivosEstaticos estaticos = ArquivosEstaticos.doClasspath();
+    // Estatisticas do armazenamento em uso (pool e escritor do SQLite, journal...),
+    // informadas por quem monta o servidor
+    private final Map<String, Supplier<Map<String, Object>>> estatisticasArmazenamento = new ConcurrentHashMap<>();
     private final int porta;
 
     /**
@@ -51,41 +69,81 @@ public class BibliotecaServer {
      * @throws IOException Se houver erro ao criar servidor
      */
     public BibliotecaServer(BibliotecaController controller, int porta) throws IOException {
+        this(controller, porta, PoolRequisicoes.doConfig());
+    }
+
+    /**
+     * Construtor do servidor com um pool de requisições próprio.
+     * 
+     * @param controller Controlador de biblioteca
+     * @param porta Porta do servidor
+     * @param pool Pool onde os handlers são executados
+     * @throws IOException Se houver erro ao criar servidor
+     */
+    public BibliotecaServer(BibliotecaController controller, int porta, PoolRequisicoes pool) throws IOException {
+        this(controller, pool, MotorHttp.doConfig(porta));
+    }
+
+    /**
+     * Construtor do servidor sobre um motor HTTP específico.
+     * 
+     * @param controller Controlador de biblioteca
+     * @param pool Pool onde os handlers são executados
+     * @param motor Motor HTTP (HttpServer do JDK ou NIO) que recebe as rotas
+     */
+    public BibliotecaServer(BibliotecaController controller, PoolRequisicoes pool, MotorHttp motor) {
         this.controller = controller;
-        this.porta = porta;
+        this.porta = motor.getPorta();
         
         // Inicializar controller de autenticação
         UsuarioRepository usuarioRepo = new UsuarioRepositoryImpl();
         AutenticacaoService autenticacaoService = new AutenticacaoService(usuarioRepo);
         this.autenticacaoController = new AutenticacaoController(autenticacaoService);
         
-        this.server = HttpServer.create(new InetSocketAddress(porta), 0);
+        this.pool = pool;
+        this.motor = motor;
         configurarRotas();
-        logger.info("Servidor HTTP criado na porta " + porta);
+        logger.info("Servidor HTTP criado na porta " + porta + " (motor " + motor.getNome() + ")");
     }
 
     /**
      * Configura as rotas da API REST.
+     * Um único contexto ("/") no motor; o Roteador escolhe a rota pelo
+     * método e caminho e passa pelos middlewares (métricas, CORS e
+     * autenticação) antes do handler, já na thread do pool.
      */
     private void configurarRotas() {
-        // Health check endpoint
-        server.createContext("/health", new HealthCheckHandler());
+        Roteador roteador = new Roteador(pool, this::enviarSobrecarga)
+            .usar(metricas)
+            .usar(cors)
+            .usar(new AutenticacaoMiddleware(autenticacaoController));
         
-        // Recursos estáticos
-        server.createContext("/", new StaticFileHandler());
+        // Health check endpoint: atendido na thread de despacho, fora do pool,
+        // para continuar respondendo mesmo com o pool saturado
+        roteador.get("/health", new HealthCheckHandler()).semPool().autenticacao(Rota.Autenticacao.NENHUMA);
+        
+        // Recursos estáticos, já em memória; caminhos fora da lista recebem 404
+        estaticos.registrar(roteador);
         
         // API REST endpoints - Autenticação
-        server.createContext("/api/auth/login", new LoginHandler());
-        server.createContext("/api/auth/logout", new LogoutHandler());
-        server.createContext("/api/auth/me", new MeHandler());
+        roteador.post("/api/auth/login", new LoginHandler()).autenticacao(Rota.Autenticacao.NENHUMA);
+        roteador.post("/api/auth/logout", new LogoutHandler()).autenticacao(Rota.Autenticacao.NENHUMA);
+        roteador.get("/api/auth/me", new MeHandler()).autenticacao(Rota.Autenticacao.OBRIGATORIA);
         
         // API REST endpoints - Itens
-        server.createContext("/api/itens", new ListarItensHandler());
-        server.createContext("/api/item/adicionar", new AdicionarItemHandler());
-        server.createContext("/api/item/emprestar", new EmprestarItemHandler());
-        server.createContext("/api/item/devolver", new DevolverItemHandler());
-        server.createContext("/api/item/remover", new RemoverItemHandler());
+        roteador.get("/api/itens", new ListarItensHandler());
+        roteador.get("/api/itens/busca", new BuscarItensHandler());
+        roteador.get("/api/itens/{codigo}", new ItemHandler());
+        roteador.get("/api/estatisticas", new EstatisticasHandler());
+        roteador.post("/api/item/adicionar", new AdicionarItemHandler());
+        roteador.post("/api/item/emprestar", new EmprestarItemHandler()).autenticacao(Rota.Autenticacao.OBRIGATORIA);
+        roteador.post("/api/item/devolver", new DevolverItemHandler()).autenticacao(Rota.Autenticacao.OBRIGATORIA);
+        roteador.post("/api/item/remover", new RemoverItemHandler());
+        
+        // API REST endpoints - Empréstimos
+        roteador.get("/api/emprestimos/meus", new MeusEmprestimosHandler()).autenticacao(Rota.Autenticacao.OBRIGATORIA);
         
+        motor.registrar("/", roteador);
         logger.debug("Rotas configuradas com sucesso");
     }
 
@@ -93,8 +151,8 @@ public class BibliotecaServer {
      * Inicia o servidor.
      */
     public void iniciar() {
-        server.setExecutor(null);
-        server.start();
+        // A thread de despacho do motor so escolhe a rota e repassa ao pool (ver Roteador)
+        motor.iniciar();
         logger.info("=".repeat(60));
         logger.info("Servidor iniciado com sucesso!");
         logger.info("Acesse: http://localhost:" + porta);
@@ -103,11 +161,24 @@ public class BibliotecaServer {
         logger.info("=".repeat(60));
     }
 
+    /**
+     * Inclui no /health as estatísticas de um componente de armazenamento.
+     * O servidor não conhece o repositório em uso: só quem o montou sabe se
+     * há pool SQLite, journal ou cache para reportar.
+     * 
+     * @param nome Chave no payload do /health
+     * @param fonte Chamada a cada health check
+     */
+    public void registrarEstatisticas(String nome, Supplier<Map<String, Object>> fonte) {
+        estatisticasArmazenamento.put(nome, fonte);
+    }
+
     /**
      * Para o servidor.
      */
     public void parar() {
-        server.stop(0);
+        motor.parar();
+        pool.encerrar(5000);
         logger.info("Servidor parado");
     }
 
@@ -124,6 +195,13 @@ public class BibliotecaServer {
             healthData.put("service", "Biblioteca API");
             healthData.put("version", "2.0");
             healthData.put("timestamp", System.currentTimeMillis());
+            for (Map.Entry<String, Supplier<Map<String, Object>>> fonte : estatisticasArmazenamento.entrySet()) {
+                healthData.put(fonte.getKey(), fonte.getValue().get());
+            }
+            healthData.put("motor", motor.getNome());
+            healthData.put("requisicoes", pool.estatisticas());
+            healthData.put("rotas", metricas.estatisticas());
+            healthData.put("estaticos", estaticos.estatisticas());
             
             ApiResponse<Map<String, Object>> response = ApiResponse.sucesso(healthData, "Serviço operacional");
             enviarResposta(exchange, 200, response.toJSON());
@@ -131,15 +209,16 @@ public class BibliotecaServer {
     }
 
     /**
-     * Handler para listar todos os itens.
+     * Handler para listar itens.
+     * Sem parâmetros devolve o acervo completo; com ?limit=&after= devolve
+     * uma página ordenada por código e o cursor da próxima.
      */
     class ListarItensHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
+            Map<String, String> parametros = extrairParametrosQuery(exchange);
+            if (parametros.containsKey("limit") || parametros.containsKey("after")) {
+                listarPagina(exchange, parametros);
                 return;
             }
 
@@ -161,24 +240,110 @@ public class BibliotecaServer {
     }
 
     /**
-     * Handler para adicionar um novo item.
+     * Responde uma página de itens (paginação por cursor).
      */
-    class AdicionarItemHandler implements HttpHandler {
+    private void listarPagina(HttpExchange exchange, Map<String, String> parametros) throws IOException {
+        try {
+            int limite = Integer.parseInt(parametros.getOrDefault("limit", String.valueOf(LIMITE_PADRAO_PAGINA)));
+            PaginaDTO<ItemResponseDTO> pagina = controller.listarPagina(parametros.get("after"), limite);
+            logger.debug("Retornada pagina com " + pagina.getItens().size() + " itens");
+            ApiResponse<PaginaDTO<ItemResponseDTO>> response = ApiResponse.sucesso(pagina, "Itens recuperados com sucesso");
+            enviarResposta(exchange, 200, response.toJSON());
+        } catch (NumberFormatException e) {
+            ApiResponse<Void> response = ApiResponse.erro("Parametro 'limit' deve ser numerico");
+            enviarResposta(exchange, 400, response.toJSON());
+        } catch (ValidacaoException e) {
+            logger.warn("Paginacao invalida: " + e.getMessage());
+            ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+            enviarResposta(exchange, 400, response.toJSON());
+        } catch (Exception e) {
+            logger.error("Erro ao listar pagina de itens: " + e.getMessage());
+            ApiResponse<Void> response = ApiResponse.erro("Erro ao listar itens: " + e.getMessage());
+            enviarResposta(exchange, 500, response.toJSON());
+        }
+    }
+
+    /**
+     * Handler para busca textual: GET /api/itens/busca?q=termos&limit=n
+     * Os itens vêm ordenados por relevância.
+     */
+    class BuscarItensHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
+            try {
+                Map<String, String> parametros = extrairParametrosQuery(exchange);
+                int limite = Integer.parseInt(parametros.getOrDefault("limit", String.valueOf(LIMITE_PADRAO_PAGINA)));
+                List<ItemResponseDTO> itens = controller.buscarTexto(parametros.get("q"), limite);
+                logger.debug("Busca '" + parametros.get("q") + "' retornou " + itens.size() + " itens");
+                ApiResponse<List<ItemResponseDTO>> response = ApiResponse.sucesso(itens, "Busca realizada com sucesso");
+                enviarResposta(exchange, 200, response.toJSON());
+            } catch (NumberFormatException e) {
+                ApiResponse<Void> response = ApiResponse.erro("Parametro 'limit' deve ser numerico");
+                enviarResposta(exchange, 400, response.toJSON());
+            } catch (ValidacaoException e) {
+                logger.warn("Busca invalida: " + e.getMessage());
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 400, response.toJSON());
+            } catch (Exception e) {
+                logger.error("Erro ao buscar itens: " + e.getMessage());
+                ApiResponse<Void> response = ApiResponse.erro("Erro ao buscar itens: " + e.getMessage());
+                enviarResposta(exchange, 500, response.toJSON());
             }
+        }
+    }
 
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use POST");
-                enviarResposta(exchange, 405, response.toJSON());
-                return;
+    /**
+     * Handler para as contagens do acervo: GET /api/estatisticas
+     * Os totais são agregados pelo repositório, sem listar os itens.
+     */
+    class EstatisticasHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                EstatisticasDTO estatisticas = controller.obterEstatisticas();
+                ApiResponse<EstatisticasDTO> response = ApiResponse.sucesso(estatisticas, "Estatisticas calculadas com sucesso");
+                enviarResposta(exchange, 200, response.toJSON());
+            } catch (Exception e) {
+                logger.error("Erro ao obter estatisticas: " + e.getMessage());
+                ApiResponse<Void> response = ApiResponse.erro("Erro ao obter estatisticas: " + e.getMessage());
+                enviarResposta(exchange, 500, response.toJSON());
             }
+        }
+    }
 
+    /**
+     * Handler para consultar um item: GET /api/itens/{codigo}
+     * A versão atual vai no ETag, para uso no If-Match das alterações.
+     */
+    class ItemHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String codigo = Roteador.parametro(exchange, "codigo");
+            try {
+                ItemResponseDTO item = controller.buscarPorCodigo(codigo);
+                ApiResponse<ItemResponseDTO> response = ApiResponse.sucesso(item, "Item recuperado com sucesso");
+                exchange.getResponseHeaders().set("ETag", etag(item.getVersao()));
+                enviarResposta(exchange, 200, response.toJSON());
+            } catch (ItemNaoEncontradoException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 404, response.toJSON());
+            } catch (ValidacaoException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 400, response.toJSON());
+            } catch (Exception e) {
+                logger.error("Erro ao buscar item: " + e.getMessage());
+                ApiResponse<Void> response = ApiResponse.erro("Erro ao buscar item: " + e.getMessage());
+                enviarResposta(exchange, 500, response.toJSON());
+            }
+        }
+    }
+
+    /**
+     * Handler para adicionar um novo item.
+     */
+    class AdicionarItemHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
             try {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 logger.debug("Corpo da requisição: " + body);
@@ -211,28 +376,24 @@ public class BibliotecaServer {
     class EmprestarItemHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
-            }
-
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use POST");
-                enviarResposta(exchange, 405, response.toJSON());
-                return;
-            }
-
             try {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 String id = extrairCampo(body, "id");
                 
-                controller.emprestarItem(id);
+                ItemResponseDTO item = controller.emprestarItem(id, lerIfMatch(exchange), AutenticacaoMiddleware.usuario(exchange));
                 logger.info("Item emprestado: ID=" + id);
                 
-                ApiResponse<Void> response = ApiResponse.sucesso(null, "Item emprestado com sucesso");
+                ApiResponse<ItemResponseDTO> response = ApiResponse.sucesso(item, "Item emprestado com sucesso");
+                exchange.getResponseHeaders().set("ETag", etag(item.getVersao()));
                 enviarResposta(exchange, 200, response.toJSON());
+            } catch (ConflitoVersaoException e) {
+                enviarConflito(exchange, e);
+            } catch (PermissaoNegadaException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 403, response.toJSON());
+            } catch (ValidacaoException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 400, response.toJSON());
             } catch (ItemNaoEncontradoException e) {
                 logger.warn("Item não encontrado para empréstimo: " + e.getMessage());
                 ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
@@ -255,28 +416,24 @@ public class BibliotecaServer {
     class DevolverItemHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
-            }
-
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use POST");
-                enviarResposta(exchange, 405, response.toJSON());
-                return;
-            }
-
             try {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 String id = extrairCampo(body, "id");
                 
-                controller.devolverItem(id);
+                ItemResponseDTO item = controller.devolverItem(id, lerIfMatch(exchange), AutenticacaoMiddleware.usuario(exchange));
                 logger.info("Item devolvido: ID=" + id);
                 
-                ApiResponse<Void> response = ApiResponse.sucesso(null, "Item devolvido com sucesso");
+                ApiResponse<ItemResponseDTO> response = ApiResponse.sucesso(item, "Item devolvido com sucesso");
+                exchange.getResponseHeaders().set("ETag", etag(item.getVersao()));
                 enviarResposta(exchange, 200, response.toJSON());
+            } catch (ConflitoVersaoException e) {
+                enviarConflito(exchange, e);
+            } catch (PermissaoNegadaException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 403, response.toJSON());
+            } catch (ValidacaoException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 400, response.toJSON());
             } catch (ItemNaoEncontradoException e) {
                 logger.warn("Item não encontrado para devolução: " + e.getMessage());
                 ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
@@ -294,33 +451,47 @@ public class BibliotecaServer {
     }
 
     /**
-     * Handler para remover um item.
+     * Handler para os empréstimos ativos do usuário autenticado: GET /api/emprestimos/meus
      */
-    class RemoverItemHandler implements HttpHandler {
+    class MeusEmprestimosHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
-            }
-
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use POST");
-                enviarResposta(exchange, 405, response.toJSON());
-                return;
+            try {
+                Usuario usuario = AutenticacaoMiddleware.usuario(exchange);
+                List<EmprestimoDTO> emprestimos = controller.listarMeusEmprestimos(usuario);
+                ApiResponse<List<EmprestimoDTO>> response = ApiResponse.sucesso(emprestimos, "Empréstimos listados com sucesso");
+                enviarResposta(exchange, 200, response.toJSON());
+            } catch (PermissaoNegadaException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 403, response.toJSON());
+            } catch (Exception e) {
+                logger.error("Erro ao listar empréstimos: " + e.getMessage());
+                ApiResponse<Void> response = ApiResponse.erro("Erro ao listar empréstimos: " + e.getMessage());
+                enviarResposta(exchange, 500, response.toJSON());
             }
+        }
+    }
 
+    /**
+     * Handler para remover um item.
+     */
+    class RemoverItemHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
             try {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 String id = extrairCampo(body, "id");
                 
-                controller.removerItem(id);
+                controller.removerItem(id, lerIfMatch(exchange));
                 logger.info("Item removido: ID=" + id);
                 
                 ApiResponse<Void> response = ApiResponse.sucesso(null, "Item removido com sucesso");
                 enviarResposta(exchange, 200, response.toJSON());
+            } catch (ConflitoVersaoException e) {
+                enviarConflito(exchange, e);
+            } catch (ValidacaoException e) {
+                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
+                enviarResposta(exchange, 400, response.toJSON());
             } catch (ItemNaoEncontradoException e) {
                 logger.warn("Item não encontrado para remoção: " + e.getMessage());
                 ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
@@ -334,47 +505,60 @@ public class BibliotecaServer {
     }
 
     /**
-     * Handler para servir arquivos estáticos.
+     * Responde 503 com Retry-After quando a fila do pool está cheia.
+     * Roda na thread de despacho, fora da cadeia de middlewares.
      */
-    class StaticFileHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            String path = exchange.getRequestURI().getPath();
-            if (path.equals("/")) {
-                path = "/index.html";
-            }
+    private void enviarSobrecarga(HttpExchange exchange) throws IOException {
+        logger.debug("Requisição recusada (pool saturado): " + exchange.getRequestURI());
+        cors.aplicar(exchange);
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(pool.getRetryAfterSegundos()));
+        ApiResponse<Void> response = ApiResponse.erro("SERVIDOR_SOBRECARREGADO",
+            "Servidor sobrecarregado. Tente novamente em instantes");
+        enviarResposta(exchange, 503, response.toJSON());
+    }
 
-            Path filePath = Paths.get("src/main/resources/web" + path);
-            
-            if (Files.exists(filePath) && !Files.isDirectory(filePath)) {
-                byte[] content = Files.readAllBytes(filePath);
-                String contentType = determinarContentType(path);
-                
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.sendResponseHeaders(200, content.length);
-                
-                try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(content);
-                }
-                logger.debug("Arquivo servido: " + path);
-            } else {
-                String response = "404 - Arquivo não encontrado";
-                exchange.sendResponseHeaders(404, response.length());
-                try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(response.getBytes());
-                }
-                logger.warn("Arquivo não encontrado: " + path);
+    /**
+     * Lê a versão exigida no cabeçalho If-Match ("3", W/"3" ou 3).
+     * Sem cabeçalho, ou com "*", a operação aceita qualquer versão.
+     * 
+     * @throws ValidacaoException Se o valor não for uma versão
+     */
+    private long lerIfMatch(HttpExchange exchange) {
+        String valor = exchange.getRequestHeaders().getFirst("If-Match");
+        if (valor == null || valor.trim().isEmpty() || valor.trim().equals("*")) {
+            return ItemRepository.QUALQUER_VERSAO;
+        }
+        String versao = valor.trim();
+        if (versao.startsWith("W/")) {
+            versao = versao.substring(2);
+        }
+        if (versao.length() >= 2 && versao.startsWith("\"") && versao.endsWith("\"")) {
+            versao = versao.substring(1, versao.length() - 1);
+        }
+        try {
+            long numero = Long.parseLong(versao);
+            if (numero < 0) {
+                throw new NumberFormatException(versao);
             }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new ValidacaoException("If-Match", "deve conter a versão do item");
         }
     }
 
+    private String etag(long versao) {
+        return "\"" + versao + "\"";
+    }
+
     /**
-     * Habilita CORS para permitir requisições do frontend.
+     * Responde 412 quando o If-Match não confere, informando a versão atual
+     * no ETag para o cliente reler o item.
      */
-    private void habilitarCORS(HttpExchange exchange) {
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type");
+    private void enviarConflito(HttpExchange exchange, ConflitoVersaoException e) throws IOException {
+        logger.warn("Conflito de versão: " + e.getMessage());
+        exchange.getResponseHeaders().set("ETag", etag(e.getVersaoAtual()));
+        ApiResponse<Void> response = ApiResponse.erro(e.getCodigo(), e.getMessage());
+        enviarResposta(exchange, 412, response.toJSON());
     }
 
     /**
@@ -395,19 +579,6 @@ public class BibliotecaServer {
     class LoginHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
-            }
-
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use POST");
-                enviarResposta(exchange, 405, response.toJSON());
-                return;
-            }
-
             try {
                 String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
                 logger.debug("Login requisitado");
@@ -439,19 +610,6 @@ public class BibliotecaServer {
     class LogoutHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
-            }
-
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use POST");
-                enviarResposta(exchange, 405, response.toJSON());
-                return;
-            }
-
             try {
                 String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
                 if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -476,23 +634,9 @@ public class BibliotecaServer {
     class MeHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            habilitarCORS(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                enviarResposta(exchange, 204, "");
-                return;
-            }
-
             try {
-                String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
-                if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                    ApiResponse<Void> response = ApiResponse.erro("Token não fornecido");
-                    enviarResposta(exchange, 401, response.toJSON());
-                    return;
-                }
-                
-                String token = authHeader.substring(7);
-                Usuario usuario = autenticacaoController.validarToken(token);
+                // Rota com autenticação obrigatória: o middleware já validou o token
+                Usuario usuario = AutenticacaoMiddleware.usuario(exchange);
                 
                 // Criar response DTO manualmente
                 Map<String, Object> usuarioData = new HashMap<>();
@@ -502,10 +646,6 @@ public class BibliotecaServer {
                 
                 ApiResponse<Map<String, Object>> response = ApiResponse.sucesso(usuarioData, "Usuário recuperado com sucesso");
                 enviarResposta(exchange, 200, response.toJSON());
-            } catch (AutenticacaoException e) {
-                logger.warn("Token inválido: " + e.getMessage());
-                ApiResponse<Void> response = ApiResponse.erro(e.getMessage());
-                enviarResposta(exchange, 401, response.toJSON());
             } catch (Exception e) {
                 logger.error("Erro ao obter usuário: " + e.getMessage());
                 ApiResponse<Void> response = ApiResponse.erro("Erro ao obter usuário: " + e.getMessage());
@@ -515,14 +655,22 @@ public class BibliotecaServer {
     }
 
     /**
-     * Determina o tipo de conteúdo baseado na extensão do arquivo.
+     * Extrai os parâmetros da query string da requisição.
      */
-    private String determinarContentType(String path) {
-        if (path.endsWith(".html")) return "text/html; charset=UTF-8";
-        if (path.endsWith(".css")) return "text/css; charset=UTF-8";
-        if (path.endsWith(".js")) return "application/javascript; charset=UTF-8";
-        if (path.endsWith(".json")) return "application/json; charset=UTF-8";
-        return "text/plain; charset=UTF-8";
+    private Map<String, String> extrairParametrosQuery(HttpExchange exchange) {
+        Map<String, String> parametros = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parametros;
+        }
+        for (String par : query.split("&")) {
+            int separador = par.indexOf('=');
+            String chave = separador >= 0 ? par.substring(0, separador) : par;
+            String valor = separador >= 0 ? par.substring(separador + 1) : "";
+            parametros.put(URLDecoder.decode(chave, StandardCharsets.UTF_8),
+                           URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
     }
 
     /**
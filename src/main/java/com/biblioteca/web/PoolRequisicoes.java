@@ -0,0 +1,261 @@
+package com.biblioteca.web;
+
+import com.biblioteca.config.ConfigManager;
+import com.biblioteca.util.Logger;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Pool limitado de threads para atender as requisicoes HTTP
+ *
+ * A thread de despacho do HttpServer so entrega a requisicao ao pool; o
+ * handler (e o JDBC bloqueante dele) roda em uma das threads de trabalho.
+ * Com todas as threads ocupadas a requisicao espera na fila; com a fila
+ * cheia, execute lanca RejectedExecutionException e o servidor responde 503
+ * em vez de acumular trabalho sem limite.
+ *
+ * No modo virtual (Java 21+), cada requisicao ganha uma thread virtual: o
+ * JDBC bloqueante libera a thread do sistema enquanto espera. O limite passa
+ * a ser de requisicoes em andamento (um semaforo), com a mesma recusa 503.
+ * A fabrica de threads virtuais e obtida por reflexao, pois o projeto
+ * compila para Java 11.
+ */
+public class PoolRequisicoes implements Executor {
+
+    private static final Logger logger = Logger.getLogger(PoolRequisicoes.class);
+
+    // Pool de threads da plataforma; null no modo virtual
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService virtuais;
+    private final Semaphore vagas;
+    private final int maxSimultaneas;
+    private final int capacidadeFila;
+    private final int retryAfterSegundos;
+    private final LongAdder rejeitadas = new LongAdder();
+    private final LongAdder concluidasVirtuais = new LongAdder();
+
+    /**
+     * Pool conforme server.pool.* e server.threads.virtuais. Se threads
+     * virtuais forem pedidas e o runtime nao as suportar, usa o pool da
+     * plataforma.
+     */
+    public static PoolRequisicoes doConfig() {
+        ConfigManager config = ConfigManager.getInstance();
+        int retryAfter = config.getInt("server.pool.retry.after.s", 1);
+        Supplier<PoolRequisicoes> plataforma = () -> new PoolRequisicoes(
+            config.getInt("server.pool.threads.core", 0),
+            config.getInt("server.pool.threads.max", 0),
+            config.getInt("server.pool.fila.capacidade", 256),
+            config.getInt("server.pool.ocioso.ms", 60000),
+            retryAfter
+        );
+        if (config.getBoolean("server.threads.virtuais", false)) {
+            return virtualOuPlataforma(config.getInt("server.threads.virtuais.max.simultaneas", 10000),
+                retryAfter, plataforma);
+        }
+        return plataforma.get();
+    }
+
+    /**
+     * Threads virtuais se o runtime as suportar; senao, o pool da plataforma
+     * @param plataforma cria o pool usado quando nao ha threads virtuais
+     */
+    public static PoolRequisicoes virtualOuPlataforma(int maxSimultaneas, int retryAfterSegundos,
+                                                      Supplier<PoolRequisicoes> plataforma) {
+        if (suportaThreadsVirtuais()) {
+            return virtual(maxSimultaneas, retryAfterSegundos);
+        }
+        logger.warn("Threads virtuais indisponiveis no Java " + System.getProperty("java.version")
+            + "; usando o pool de threads da plataforma");
+        return plataforma.get();
+    }
+
+    /**
+     * Uma thread virtual por requisicao, com ate maxSimultaneas em andamento
+     * @throws UnsupportedOperationException se o runtime nao tiver threads virtuais
+     */
+    public static PoolRequisicoes virtual(int maxSimultaneas, int retryAfterSegundos) {
+        ExecutorService virtuais = criarExecutorVirtual();
+        if (virtuais == null) {
+            throw new UnsupportedOperationException("Threads virtuais exigem Java 21 ou superior");
+        }
+        return new PoolRequisicoes(virtuais, maxSimultaneas, retryAfterSegundos);
+    }
+
+    public static boolean suportaThreadsVirtuais() {
+        ExecutorService teste = criarExecutorVirtual();
+        if (teste == null) {
+            return false;
+        }
+        teste.shutdown();
+        return true;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), se existir e estiver habilitado
+     */
+    private static ExecutorService criarExecutorVirtual() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Java anterior ao 21, ou 19/20 sem --enable-preview
+            return null;
+        }
+    }
+
+    private PoolRequisicoes(ExecutorService virtuais, int maxSimultaneas, int retryAfterSegundos) {
+        this.executor = null;
+        this.virtuais = virtuais;
+        this.vagas = new Semaphore(maxSimultaneas);
+        this.maxSimultaneas = maxSimultaneas;
+        this.capacidadeFila = 0;
+        this.retryAfterSegundos = retryAfterSegundos;
+        logger.info("Pool de requisicoes: threads virtuais, ate " + maxSimultaneas + " requisicoes simultaneas");
+    }
+
+    /**
+     * @param threadsCore threads mantidas mesmo ociosas (0 = 2 por nucleo, no minimo 4)
+     * @param threadsMax threads criadas com a fila cheia (0 = o dobro de threadsCore)
+     * @param capacidadeFila requisicoes aguardando thread antes de recusar com 503
+     * @param ociosoMs tempo ate encerrar uma thread acima de threadsCore sem trabalho
+     * @param retryAfterSegundos valor do cabecalho Retry-After nas recusas
+     */
+    public PoolRequisicoes(int threadsCore, int threadsMax, int capacidadeFila, long ociosoMs, int retryAfterSegundos) {
+        int core = threadsCore > 0 ? threadsCore : Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        int max = Math.max(core, threadsMax > 0 ? threadsMax : 2 * core);
+        this.capacidadeFila = capacidadeFila;
+        this.retryAfterSegundos = retryAfterSegundos;
+        this.virtuais = null;
+        this.vagas = null;
+        this.maxSimultaneas = max + capacidadeFila;
+        this.executor = new ThreadPoolExecutor(core, max, ociosoMs, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacidadeFila), new FabricaThreads(), new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Pool de requisicoes: " + core + " a " + max + " threads, fila de " + capacidadeFila);
+    }
+
+    /**
+     * @throws RejectedExecutionException se a fila estiver cheia ou o pool encerrado
+     */
+    @Override
+    public void execute(Runnable tarefa) {
+        if (virtuais != null) {
+            executarVirtual(tarefa);
+            return;
+        }
+        try {
+            executor.execute(tarefa);
+        } catch (RejectedExecutionException e) {
+            rejeitadas.increment();
+            throw e;
+        }
+    }
+
+    private void executarVirtual(Runnable tarefa) {
+        if (!vagas.tryAcquire()) {
+            rejeitadas.increment();
+            throw new RejectedExecutionException("Limite de " + maxSimultaneas + " requisicoes simultaneas atingido");
+        }
+        try {
+            virtuais.execute(() -> {
+                try {
+                    tarefa.run();
+                } finally {
+                    concluidasVirtuais.increment();
+                    vagas.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            vagas.release();
+            rejeitadas.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Para de aceitar requisicoes e espera as em andamento terminarem
+     */
+    public void encerrar(long esperaMs) {
+        ExecutorService alvo = virtuais != null ? virtuais : executor;
+        alvo.shutdown();
+        try {
+            if (!alvo.awaitTermination(esperaMs, TimeUnit.MILLISECONDS)) {
+                alvo.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            alvo.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtuais != null;
+    }
+
+    /**
+     * Requisicoes sendo executadas agora (sem contar as da fila)
+     */
+    public int getEmAndamento() {
+        return virtuais != null ? maxSimultaneas - vagas.availablePermits() : executor.getActiveCount();
+    }
+
+    public int getRetryAfterSegundos() {
+        return retryAfterSegundos;
+    }
+
+    public int getTamanhoFila() {
+        return virtuais != null ? 0 : executor.getQueue().size();
+    }
+
+    public long getRejeitadas() {
+        return rejeitadas.sum();
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        if (virtuais != null) {
+            dados.put("modo", "virtual");
+            dados.put("emAndamento", getEmAndamento());
+            dados.put("maxSimultaneas", maxSimultaneas);
+            dados.put("concluidas", concluidasVirtuais.sum());
+            dados.put("rejeitadas", getRejeitadas());
+            return dados;
+        }
+        dados.put("modo", "plataforma");
+        dados.put("threads", executor.getPoolSize());
+        dados.put("threadsAtivas", executor.getActiveCount());
+        dados.put("threadsMaximo", executor.getMaximumPoolSize());
+        dados.put("fila", getTamanhoFila());
+        dados.put("filaCapacidade", capacidadeFila);
+        dados.put("concluidas", executor.getCompletedTaskCount());
+        dados.put("rejeitadas", getRejeitadas());
+        return dados;
+    }
+
+    /**
+     * Threads nomeadas (http-trabalhador-N), para aparecerem nos logs e dumps
+     */
+    private static class FabricaThreads implements ThreadFactory {
+        private final AtomicInteger sequencia = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable tarefa) {
+            Thread thread = new Thread(tarefa, "http-trabalhador-" + sequencia.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
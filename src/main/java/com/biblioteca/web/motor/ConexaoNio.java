@@ -0,0 +1,378 @@
+package com.biblioteca.web.motor;
+
+import com.biblioteca.util.Logger;
+import com.sun.net.httpserver.Headers;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado de uma conexao do MotorNio
+ *
+ * Os bytes lidos acumulam em um buffer direto; quando ele contem uma
+ * requisicao completa, ela e separada, a leitura e suspensa e a requisicao
+ * vai para o handler. A resposta volta pela fila do motor, e escrita pela
+ * thread seletora e so entao a proxima requisicao do buffer (pipelining) e
+ * processada. Assim as respostas saem na ordem das requisicoes.
+ *
+ * Os metodos sem indicacao em contrario rodam na thread seletora.
+ */
+class ConexaoNio {
+
+    private static final Logger logger = Logger.getLogger(ConexaoNio.class);
+
+    private final MotorNio motor;
+    private final SocketChannel canal;
+    private final SelectionKey chave;
+    private final int tamanhoBuffer;
+    private final int corpoMaximo;
+    private final InetSocketAddress enderecoLocal;
+    private final InetSocketAddress enderecoRemoto;
+
+    // Bytes recebidos e ainda nao consumidos, de 0 ate position()
+    private ByteBuffer entrada;
+    private ByteBuffer cabecalho;
+    // Corpo da resposta: o handler escreve aqui (SaidaNio)
+    private ByteBuffer corpo;
+    private ByteBuffer[] saida;
+    private boolean emAtendimento;
+    private boolean manterAberta = true;
+    private boolean abortar;
+    private long ultimaAtividade = System.currentTimeMillis();
+
+    ConexaoNio(MotorNio motor, SocketChannel canal, SelectionKey chave, int tamanhoBuffer, int corpoMaximo)
+            throws IOException {
+        this.motor = motor;
+        this.canal = canal;
+        this.chave = chave;
+        this.tamanhoBuffer = tamanhoBuffer;
+        this.corpoMaximo = corpoMaximo;
+        this.enderecoLocal = (InetSocketAddress) canal.getLocalAddress();
+        this.enderecoRemoto = (InetSocketAddress) canal.getRemoteAddress();
+        this.entrada = ByteBuffer.allocateDirect(tamanhoBuffer);
+        this.cabecalho = ByteBuffer.allocateDirect(512);
+        this.corpo = ByteBuffer.allocateDirect(tamanhoBuffer);
+    }
+
+    void ler() throws IOException {
+        int lidos = canal.read(entrada);
+        if (lidos < 0) {
+            fechar();
+            return;
+        }
+        ultimaAtividade = System.currentTimeMillis();
+        processar();
+    }
+
+    /**
+     * Despacha a proxima requisicao do buffer, se ja estiver completa
+     */
+    private void processar() {
+        if (emAtendimento || !canal.isOpen()) {
+            return;
+        }
+        RequisicaoNio requisicao;
+        try {
+            requisicao = extrairRequisicao();
+        } catch (ErroRequisicao e) {
+            responderErro(e.status, e.getMessage());
+            return;
+        }
+        if (requisicao == null) {
+            return;
+        }
+        emAtendimento = true;
+        manterAberta = requisicao.manterAberta;
+        chave.interestOps(0);
+        corpo.clear();
+        motor.despachar(new TrocaNio(this, requisicao, corpo));
+    }
+
+    /**
+     * @return a requisicao, ou null se os bytes dela ainda nao chegaram
+     */
+    private RequisicaoNio extrairRequisicao() throws ErroRequisicao {
+        int preenchido = entrada.position();
+        int fimCabecalho = procurarFimCabecalho(preenchido);
+        if (fimCabecalho < 0) {
+            if (preenchido == entrada.capacity()) {
+                throw new ErroRequisicao(431, "Cabecalhos da requisicao muito grandes");
+            }
+            return null;
+        }
+
+        String[] linhas = texto(0, fimCabecalho - 4).split("\r\n");
+        int primeira = 0;
+        // Linhas em branco antes da requisicao sao toleradas (RFC 7230, 3.5)
+        while (primeira < linhas.length - 1 && linhas[primeira].isEmpty()) {
+            primeira++;
+        }
+        String[] partes = linhas[primeira].split(" ");
+        if (partes.length != 3 || !partes[2].startsWith("HTTP/1.")) {
+            throw new ErroRequisicao(400, "Linha de requisicao invalida");
+        }
+        URI uri;
+        try {
+            uri = new URI(partes[1]);
+        } catch (URISyntaxException e) {
+            throw new ErroRequisicao(400, "URI invalida");
+        }
+
+        Headers cabecalhos = new Headers();
+        for (int i = primeira + 1; i < linhas.length; i++) {
+            int separador = linhas[i].indexOf(':');
+            if (separador <= 0) {
+                throw new ErroRequisicao(400, "Cabecalho invalido");
+            }
+            cabecalhos.add(linhas[i].substring(0, separador).trim(), linhas[i].substring(separador + 1).trim());
+        }
+        if (cabecalhos.getFirst("Transfer-Encoding") != null) {
+            throw new ErroRequisicao(501, "Transfer-Encoding nao suportado; envie Content-Length");
+        }
+
+        long tamanhoCorpo = 0;
+        String contentLength = cabecalhos.getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                tamanhoCorpo = Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                throw new ErroRequisicao(400, "Content-Length invalido");
+            }
+            if (tamanhoCorpo < 0) {
+                throw new ErroRequisicao(400, "Content-Length invalido");
+            }
+        }
+        if (tamanhoCorpo > corpoMaximo) {
+            throw new ErroRequisicao(413, "Corpo da requisicao maior que " + corpoMaximo + " bytes");
+        }
+
+        int fim = fimCabecalho + (int) tamanhoCorpo;
+        if (fim > entrada.capacity()) {
+            ampliarEntrada(fim);
+            return null;
+        }
+        if (preenchido < fim) {
+            return null;
+        }
+        byte[] corpoRequisicao = copiar(fimCabecalho, fim);
+        consumir(fim);
+
+        String conexao = cabecalhos.getFirst("Connection");
+        boolean manter = "HTTP/1.1".equals(partes[2])
+            ? !"close".equalsIgnoreCase(conexao)
+            : "keep-alive".equalsIgnoreCase(conexao);
+        return new RequisicaoNio(partes[0], uri, partes[2], cabecalhos, corpoRequisicao, manter);
+    }
+
+    /**
+     * @return posicao logo apos o CRLF CRLF que encerra os cabecalhos, ou -1
+     */
+    private int procurarFimCabecalho(int preenchido) {
+        for (int i = 3; i < preenchido; i++) {
+            if (entrada.get(i) == '\n' && entrada.get(i - 1) == '\r'
+                    && entrada.get(i - 2) == '\n' && entrada.get(i - 3) == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private String texto(int inicio, int fim) {
+        return new String(copiar(inicio, fim), StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] copiar(int inicio, int fim) {
+        ByteBuffer trecho = entrada.duplicate();
+        trecho.position(inicio);
+        trecho.limit(fim);
+        byte[] bytes = new byte[fim - inicio];
+        trecho.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Descarta os bytes da requisicao separada, mantendo as seguintes
+     */
+    private void consumir(int fim) {
+        entrada.flip();
+        entrada.position(fim);
+        entrada.compact();
+        // Volta ao buffer padrao depois de uma requisicao com corpo grande
+        if (entrada.capacity() > tamanhoBuffer && entrada.position() <= tamanhoBuffer) {
+            ByteBuffer padrao = ByteBuffer.allocateDirect(tamanhoBuffer);
+            entrada.flip();
+            padrao.put(entrada);
+            entrada = padrao;
+        }
+    }
+
+    private void ampliarEntrada(int capacidade) {
+        ByteBuffer maior = ByteBuffer.allocateDirect(capacidade);
+        entrada.flip();
+        maior.put(entrada);
+        entrada = maior;
+    }
+
+    /**
+     * Monta o cabecalho da resposta e a entrega a thread seletora.
+     * Roda na thread do handler.
+     */
+    void responder(int codigo, Headers cabecalhosResposta, ByteBuffer corpoResposta, boolean enviarCorpo) {
+        corpo = corpoResposta;
+        corpo.flip();
+
+        StringBuilder texto = new StringBuilder(256);
+        texto.append("HTTP/1.1 ").append(codigo).append(' ').append(razao(codigo)).append("\r\n");
+        texto.append("Date: ").append(motor.getData()).append("\r\n");
+        for (Map.Entry<String, List<String>> cabecalhoResposta : cabecalhosResposta.entrySet()) {
+            String nome = cabecalhoResposta.getKey();
+            if (nome.equalsIgnoreCase("Content-Length") || nome.equalsIgnoreCase("Connection")) {
+                continue;
+            }
+            for (String valor : cabecalhoResposta.getValue()) {
+                texto.append(nome).append(": ").append(valor).append("\r\n");
+            }
+        }
+        if (codigo >= 200 && codigo != 204 && codigo != 304) {
+            texto.append("Content-Length: ").append(corpo.remaining()).append("\r\n");
+        }
+        if (!manterAberta) {
+            texto.append("Connection: close\r\n");
+        }
+        texto.append("\r\n");
+
+        byte[] bytes = texto.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (bytes.length > cabecalho.capacity()) {
+            cabecalho = ByteBuffer.allocateDirect(Math.max(bytes.length, 2 * cabecalho.capacity()));
+        }
+        cabecalho.clear();
+        cabecalho.put(bytes).flip();
+
+        saida = enviarCorpo && corpo.hasRemaining() ? new ByteBuffer[] {cabecalho, corpo} : new ByteBuffer[] {cabecalho};
+        motor.agendar(this);
+    }
+
+    /**
+     * O handler encerrou a troca sem resposta: a conexao e fechada.
+     * Roda na thread do handler.
+     */
+    void abortar() {
+        abortar = true;
+        motor.agendar(this);
+    }
+
+    private void responderErro(int codigo, String mensagem) {
+        logger.debug("Requisicao recusada com " + codigo + ": " + mensagem);
+        emAtendimento = true;
+        manterAberta = false;
+        chave.interestOps(0);
+        Headers cabecalhosErro = new Headers();
+        cabecalhosErro.set("Content-Type", "text/plain; charset=UTF-8");
+        corpo.clear();
+        corpo.put(mensagem.getBytes(StandardCharsets.UTF_8));
+        responder(codigo, cabecalhosErro, corpo, true);
+    }
+
+    /**
+     * Comeca a escrever a resposta entregue pelo handler
+     */
+    void enviarResposta() {
+        if (abortar) {
+            fechar();
+            return;
+        }
+        try {
+            escrever();
+        } catch (IOException e) {
+            logger.debug("Falha ao enviar resposta: " + e.getMessage());
+            fechar();
+        }
+    }
+
+    void escrever() throws IOException {
+        if (!canal.isOpen()) {
+            return;
+        }
+        canal.write(saida);
+        if (saida[saida.length - 1].hasRemaining()) {
+            chave.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        concluirResposta();
+    }
+
+    private void concluirResposta() {
+        saida = null;
+        emAtendimento = false;
+        ultimaAtividade = System.currentTimeMillis();
+        if (corpo.capacity() > tamanhoBuffer) {
+            corpo = ByteBuffer.allocateDirect(tamanhoBuffer);
+        }
+        if (!manterAberta) {
+            fechar();
+            return;
+        }
+        chave.interestOps(SelectionKey.OP_READ);
+        // Requisicoes enviadas em sequencia (pipelining) ja podem estar no buffer
+        processar();
+    }
+
+    boolean isOciosa(long agora, long ociosoMs) {
+        return !emAtendimento && agora - ultimaAtividade > ociosoMs;
+    }
+
+    void fechar() {
+        chave.cancel();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            logger.debug("Erro ao fechar conexao: " + e.getMessage());
+        }
+    }
+
+    InetSocketAddress getEnderecoLocal() {
+        return enderecoLocal;
+    }
+
+    InetSocketAddress getEnderecoRemoto() {
+        return enderecoRemoto;
+    }
+
+    private static String razao(int codigo) {
+        switch (codigo) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 412: return "Precondition Failed";
+            case 413: return "Payload Too Large";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "";
+        }
+    }
+
+    private static class ErroRequisicao extends Exception {
+        final int status;
+
+        ErroRequisicao(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+}
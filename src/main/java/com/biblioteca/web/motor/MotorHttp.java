@@ -0,0 +1,45 @@
+package com.biblioteca.web.motor;
+
+import com.biblioteca.config.ConfigManager;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+
+/**
+ * Motor HTTP onde o BibliotecaServer registra as rotas
+ *
+ * Os handlers continuam sendo com.sun.net.httpserver.HttpHandler, de modo que
+ * as mesmas rotas rodam em qualquer motor: o HttpServer do JDK
+ * (MotorHttpServer) ou o motor proprio sobre seletores NIO (MotorNio).
+ */
+public interface MotorHttp {
+
+    /**
+     * Associa o handler a um prefixo de caminho; vence o prefixo mais longo
+     */
+    void registrar(String caminho, HttpHandler handler);
+
+    void iniciar();
+
+    void parar();
+
+    int getPorta();
+
+    String getNome();
+
+    /**
+     * Motor escolhido em server.motor (httpserver ou nio)
+     */
+    static MotorHttp doConfig(int porta) throws IOException {
+        return criar(ConfigManager.getInstance().get("server.motor", "httpserver"), porta);
+    }
+
+    static MotorHttp criar(String nome, int porta) throws IOException {
+        if (MotorNio.NOME.equalsIgnoreCase(nome)) {
+            return new MotorNio(porta);
+        }
+        if (MotorHttpServer.NOME.equalsIgnoreCase(nome)) {
+            return new MotorHttpServer(porta);
+        }
+        throw new IllegalArgumentException("Motor HTTP desconhecido: " + nome + " (use httpserver ou nio)");
+    }
+}
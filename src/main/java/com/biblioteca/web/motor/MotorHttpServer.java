@@ -0,0 +1,50 @@
+package com.biblioteca.web.motor;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Motor sobre o com.sun.net.httpserver.HttpServer do JDK
+ * Cada rota vira um contexto; a thread de despacho do HttpServer chama o
+ * handler diretamente.
+ */
+public class MotorHttpServer implements MotorHttp {
+
+    static final String NOME = "httpserver";
+
+    private final HttpServer server;
+    private final int porta;
+
+    public MotorHttpServer(int porta) throws IOException {
+        this.porta = porta;
+        this.server = HttpServer.create(new InetSocketAddress(porta), 0);
+    }
+
+    @Override
+    public void registrar(String caminho, HttpHandler handler) {
+        server.createContext(caminho, handler);
+    }
+
+    @Override
+    public void iniciar() {
+        server.setExecutor(null);
+        server.start();
+    }
+
+    @Override
+    public void parar() {
+        server.stop(0);
+    }
+
+    @Override
+    public int getPorta() {
+        return porta;
+    }
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+}
@@ -0,0 +1,265 @@
+package com.biblioteca.web.motor;
+
+import com.biblioteca.config.ConfigManager;
+import com.biblioteca.util.Logger;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Motor HTTP/1.1 sobre seletores NIO
+ *
+ * Uma unica thread seletora aceita conexoes, le as requisicoes e escreve as
+ * respostas; os handlers sao chamados nela (o BibliotecaServer os repassa ao
+ * pool de requisicoes). As conexoes ficam abertas (keep-alive) e aceitam
+ * pipelining: requisicoes enviadas em sequencia sao atendidas uma de cada vez,
+ * respondidas na ordem de chegada.
+ *
+ * Cada conexao le para um ByteBuffer direto e o handler escreve o corpo da
+ * resposta direto em outro, enviado junto com o cabecalho em uma escrita
+ * com gather, sem copias intermediarias.
+ */
+public class MotorNio implements MotorHttp {
+
+    static final String NOME = "nio";
+
+    private static final Logger logger = Logger.getLogger(MotorNio.class);
+    private static final long INTERVALO_VARREDURA_MS = 1000;
+
+    private final int porta;
+    private final int tamanhoBuffer;
+    private final int corpoMaximo;
+    private final long ociosoMs;
+    private final ServerSocketChannel servidor;
+    private final Selector selector;
+    // Rotas da mais longa para a mais curta: a primeira que casar vence
+    private final List<Rota> rotas = new ArrayList<>();
+    // Conexoes com resposta pronta (ou a encerrar), entregues pelos handlers
+    private final Queue<ConexaoNio> prontas = new ConcurrentLinkedQueue<>();
+    private volatile boolean ativo;
+    private volatile String data;
+    private Thread seletora;
+
+    /**
+     * Motor com os valores de server.nio.*
+     */
+    public MotorNio(int porta) throws IOException {
+        this(porta,
+            ConfigManager.getInstance().getInt("server.nio.buffer.bytes", 16384),
+            ConfigManager.getInstance().getInt("server.nio.corpo.maximo.bytes", 1048576),
+            ConfigManager.getInstance().getInt("server.nio.ocioso.ms", 30000));
+    }
+
+    /**
+     * @param tamanhoBuffer buffer de leitura por conexao (limita o tamanho dos cabecalhos)
+     * @param corpoMaximo maior corpo de requisicao aceito (acima disso, 413)
+     * @param ociosoMs tempo ate fechar uma conexao keep-alive sem requisicoes
+     */
+    public MotorNio(int porta, int tamanhoBuffer, int corpoMaximo, long ociosoMs) throws IOException {
+        this.tamanhoBuffer = tamanhoBuffer;
+        this.corpoMaximo = corpoMaximo;
+        this.ociosoMs = ociosoMs;
+        this.selector = Selector.open();
+        this.servidor = ServerSocketChannel.open();
+        servidor.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        servidor.bind(new InetSocketAddress(porta), 1024);
+        servidor.configureBlocking(false);
+        servidor.register(selector, SelectionKey.OP_ACCEPT);
+        // Com porta 0 o sistema escolhe uma livre
+        this.porta = ((InetSocketAddress) servidor.getLocalAddress()).getPort();
+        atualizarData();
+    }
+
+    @Override
+    public synchronized void registrar(String caminho, HttpHandler handler) {
+        rotas.removeIf(rota -> rota.caminho.equals(caminho));
+        rotas.add(new Rota(caminho, handler));
+        rotas.sort((a, b) -> b.caminho.length() - a.caminho.length());
+    }
+
+    @Override
+    public synchronized void iniciar() {
+        ativo = true;
+        seletora = new Thread(this::executar, "http-nio-seletor");
+        seletora.setDaemon(true);
+        seletora.start();
+        logger.info("Motor NIO ouvindo na porta " + porta + " (buffer de " + tamanhoBuffer + " bytes)");
+    }
+
+    @Override
+    public void parar() {
+        ativo = false;
+        selector.wakeup();
+        if (seletora != null) {
+            try {
+                seletora.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public int getPorta() {
+        return porta;
+    }
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+
+    private void executar() {
+        long proximaVarredura = System.currentTimeMillis() + INTERVALO_VARREDURA_MS;
+        while (ativo) {
+            try {
+                selector.select(INTERVALO_VARREDURA_MS);
+
+                ConexaoNio pronta;
+                while ((pronta = prontas.poll()) != null) {
+                    pronta.enviarResposta();
+                }
+
+                Iterator<SelectionKey> chaves = selector.selectedKeys().iterator();
+                while (chaves.hasNext()) {
+                    SelectionKey chave = chaves.next();
+                    chaves.remove();
+                    if (!chave.isValid()) {
+                        continue;
+                    }
+                    if (chave.isAcceptable()) {
+                        aceitar();
+                    } else {
+                        ConexaoNio conexao = (ConexaoNio) chave.attachment();
+                        try {
+                            if (chave.isReadable()) {
+                                conexao.ler();
+                            } else if (chave.isWritable()) {
+                                conexao.escrever();
+                            }
+                        } catch (IOException e) {
+                            logger.debug("Conexao encerrada: " + e.getMessage());
+                            conexao.fechar();
+                        }
+                    }
+                }
+
+                long agora = System.currentTimeMillis();
+                if (agora >= proximaVarredura) {
+                    atualizarData();
+                    fecharOciosas(agora);
+                    proximaVarredura = agora + INTERVALO_VARREDURA_MS;
+                }
+            } catch (IOException | RuntimeException e) {
+                // A thread seletora nao pode morrer: registra e segue atendendo
+                logger.error("Erro no seletor HTTP: " + e.getMessage());
+            }
+        }
+        encerrarConexoes();
+    }
+
+    private void aceitar() throws IOException {
+        SocketChannel canal;
+        while ((canal = servidor.accept()) != null) {
+            canal.configureBlocking(false);
+            canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey chave = canal.register(selector, SelectionKey.OP_READ);
+            chave.attach(new ConexaoNio(this, canal, chave, tamanhoBuffer, corpoMaximo));
+        }
+    }
+
+    /**
+     * Fecha as conexoes keep-alive paradas ha mais de ociosoMs
+     */
+    private void fecharOciosas(long agora) {
+        for (SelectionKey chave : selector.keys()) {
+            Object anexo = chave.attachment();
+            if (anexo instanceof ConexaoNio && ((ConexaoNio) anexo).isOciosa(agora, ociosoMs)) {
+                ((ConexaoNio) anexo).fechar();
+            }
+        }
+    }
+
+    private void encerrarConexoes() {
+        for (SelectionKey chave : selector.keys()) {
+            if (chave.attachment() instanceof ConexaoNio) {
+                ((ConexaoNio) chave.attachment()).fechar();
+            }
+        }
+        try {
+            servidor.close();
+            selector.close();
+        } catch (IOException e) {
+            logger.warn("Erro ao fechar o seletor HTTP: " + e.getMessage());
+        }
+        logger.info("Motor NIO parado");
+    }
+
+    /**
+     * Chamado na thread seletora com uma requisicao completa
+     */
+    void despachar(TrocaNio troca) {
+        String caminho = troca.getRequestURI().getPath();
+        HttpHandler handler = null;
+        synchronized (this) {
+            for (Rota rota : rotas) {
+                if (caminho != null && caminho.startsWith(rota.caminho)) {
+                    handler = rota.handler;
+                    break;
+                }
+            }
+        }
+        if (handler == null) {
+            troca.responderSemCorpo(404);
+            return;
+        }
+        try {
+            handler.handle(troca);
+        } catch (Exception e) {
+            logger.error("Erro ao atender " + caminho + ": " + e.getMessage());
+            troca.close();
+        }
+    }
+
+    /**
+     * Entrega a resposta pronta (de qualquer thread) para a thread seletora
+     */
+    void agendar(ConexaoNio conexao) {
+        prontas.add(conexao);
+        selector.wakeup();
+    }
+
+    /**
+     * Valor do cabecalho Date, atualizado uma vez por segundo
+     */
+    String getData() {
+        return data;
+    }
+
+    private void atualizarData() {
+        data = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+    }
+
+    private static class Rota {
+        final String caminho;
+        final HttpHandler handler;
+
+        Rota(String caminho, HttpHandler handler) {
+            this.caminho = caminho;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.biblioteca.web.motor;
+
+import com.sun.net.httpserver.Headers;
+import java.net.URI;
+
+/**
+ * Requisicao HTTP ja separada do fluxo da conexao
+ */
+class RequisicaoNio {
+
+    final String metodo;
+    final URI uri;
+    final String protocolo;
+    final Headers cabecalhos;
+    final byte[] corpo;
+    final boolean manterAberta;
+
+    RequisicaoNio(String metodo, URI uri, String protocolo, Headers cabecalhos, byte[] corpo, boolean manterAberta) {
+        this.metodo = metodo;
+        this.uri = uri;
+        this.protocolo = protocolo;
+        this.cabecalhos = cabecalhos;
+        this.corpo = corpo;
+        this.manterAberta = manterAberta;
+    }
+}
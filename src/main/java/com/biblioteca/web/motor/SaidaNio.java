@@ -0,0 +1,61 @@
+package com.biblioteca.web.motor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Corpo da resposta escrito direto no ByteBuffer (direto) da conexao,
+ * que depois vai ao socket sem copia. Dobra o buffer quando enche.
+ */
+class SaidaNio extends OutputStream {
+
+    private final TrocaNio troca;
+    private ByteBuffer buffer;
+
+    SaidaNio(TrocaNio troca, ByteBuffer buffer) {
+        this.troca = troca;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        garantirEspaco(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int inicio, int tamanho) throws IOException {
+        garantirEspaco(tamanho);
+        buffer.put(bytes, inicio, tamanho);
+    }
+
+    /**
+     * Fechar o corpo conclui a troca, como no HttpServer do JDK
+     */
+    @Override
+    public void close() {
+        troca.close();
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    private void garantirEspaco(int tamanho) throws IOException {
+        if (troca.isConcluida()) {
+            throw new IOException("Resposta ja enviada");
+        }
+        if (buffer.remaining() >= tamanho) {
+            return;
+        }
+        int capacidade = buffer.capacity();
+        while (capacidade - buffer.position() < tamanho) {
+            capacidade *= 2;
+        }
+        ByteBuffer maior = ByteBuffer.allocateDirect(capacidade);
+        buffer.flip();
+        maior.put(buffer);
+        buffer = maior;
+    }
+}
@@ -0,0 +1,175 @@
+package com.biblioteca.web.motor;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HttpExchange de uma requisicao do MotorNio, para os handlers existentes
+ * rodarem sem mudanca
+ *
+ * O corpo da resposta e acumulado inteiro (SaidaNio) e enviado ao fechar a
+ * troca, sempre com Content-Length. Por isso o tamanho passado em
+ * sendResponseHeaders so importa quando e -1 (resposta sem corpo).
+ * Nao ha HttpContext: getHttpContext devolve null.
+ */
+class TrocaNio extends HttpExchange {
+
+    private final ConexaoNio conexao;
+    private final RequisicaoNio requisicao;
+    private final Headers cabecalhosResposta = new Headers();
+    private final SaidaNio saida;
+    private InputStream entradaFiltrada;
+    private OutputStream saidaFiltrada;
+    private Map<String, Object> atributos;
+    private int codigo = -1;
+    private boolean semCorpo;
+    private boolean concluida;
+
+    TrocaNio(ConexaoNio conexao, RequisicaoNio requisicao, ByteBuffer corpo) {
+        this.conexao = conexao;
+        this.requisicao = requisicao;
+        this.saida = new SaidaNio(this, corpo);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requisicao.cabecalhos;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return cabecalhosResposta;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return requisicao.uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return requisicao.metodo;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        if (entradaFiltrada == null) {
+            entradaFiltrada = new ByteArrayInputStream(requisicao.corpo);
+        }
+        return entradaFiltrada;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return saidaFiltrada != null ? saidaFiltrada : saida;
+    }
+
+    @Override
+    public void sendResponseHeaders(int codigo, long tamanho) throws IOException {
+        if (this.codigo != -1) {
+            throw new IOException("Cabecalhos da resposta ja enviados");
+        }
+        this.codigo = codigo;
+        semCorpo = tamanho == -1 || codigo < 200 || codigo == 204 || codigo == 304;
+    }
+
+    /**
+     * Resposta vazia gerada pelo proprio motor (ex.: 404 sem rota)
+     */
+    void responderSemCorpo(int codigo) {
+        try {
+            sendResponseHeaders(codigo, -1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        close();
+    }
+
+    /**
+     * Envia a resposta; sem sendResponseHeaders antes, fecha a conexao
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (concluida) {
+                return;
+            }
+            concluida = true;
+        }
+        if (codigo == -1) {
+            conexao.abortar();
+            return;
+        }
+        boolean enviarCorpo = !semCorpo && !"HEAD".equals(requisicao.metodo);
+        conexao.responder(codigo, cabecalhosResposta, saida.getBuffer(), enviarCorpo);
+    }
+
+    synchronized boolean isConcluida() {
+        return concluida;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return conexao.getEnderecoRemoto();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return codigo;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return conexao.getEnderecoLocal();
+    }
+
+    @Override
+    public String getProtocol() {
+        return requisicao.protocolo;
+    }
+
+    @Override
+    public Object getAttribute(String nome) {
+        return atributos == null ? null : atributos.get(nome);
+    }
+
+    @Override
+    public void setAttribute(String nome, Object valor) {
+        if (atributos == null) {
+            atributos = new HashMap<>();
+        }
+        atributos.put(nome, valor);
+    }
+
+    @Override
+    public void setStreams(InputStream entrada, OutputStream saida) {
+        if (entrada != null) {
+            this.entradaFiltrada = entrada;
+        }
+        if (saida != null) {
+            this.saidaFiltrada = saida;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
@@ -1,7 +1,13 @@
 package com.biblioteca.web.response;
 
+import com.biblioteca.dto.EmprestimoDTO;
+import com.biblioteca.dto.EstatisticasDTO;
 import com.biblioteca.dto.ItemResponseDTO;
+import com.biblioteca.dto.LoginResponseDTO;
+import com.biblioteca.dto.UsuarioResponseDTO;
+import com.biblioteca.dto.PaginaDTO;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Padrao de resposta para APIs
@@ -87,8 +93,14 @@ public class ApiResponse<T> {
             json.append(",\"dados\":");
             if (dados instanceof List) {
                 json.append(converterListaParaJSON((List<?>) dados));
+            } else if (dados instanceof PaginaDTO) {
+                json.append(converterPaginaParaJSON((PaginaDTO<?>) dados));
             } else if (dados instanceof ItemResponseDTO) {
                 json.append(converterItemParaJSON((ItemResponseDTO) dados));
+            } else if (dados instanceof LoginResponseDTO) {
+                json.append(converterLoginParaJSON((LoginResponseDTO) dados));
+            } else if (dados instanceof EstatisticasDTO) {
+                json.append(converterEstatisticasParaJSON((EstatisticasDTO) dados));
             } else {
                 json.append("\"").append(escaparJSON(dados.toString())).append("\"");
             }
@@ -103,6 +115,8 @@ public class ApiResponse<T> {
         for (int i = 0; i < lista.size(); i++) {
             if (lista.get(i) instanceof ItemResponseDTO) {
                 json.append(converterItemParaJSON((ItemResponseDTO) lista.get(i)));
+            } else if (lista.get(i) instanceof EmprestimoDTO) {
+                json.append(converterEmprestimoParaJSON((EmprestimoDTO) lista.get(i)));
             }
             if (i < lista.size() - 1) json.append(",");
         }
@@ -110,17 +124,79 @@ public class ApiResponse<T> {
         return json.toString();
     }
     
+    private String converterPaginaParaJSON(PaginaDTO<?> pagina) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"itens\":").append(converterListaParaJSON(pagina.getItens())).append(",");
+        json.append("\"limite\":").append(pagina.getLimite()).append(",");
+        json.append("\"proximoCursor\":");
+        if (pagina.getProximoCursor() != null) {
+            json.append("\"").append(escaparJSON(pagina.getProximoCursor())).append("\"");
+        } else {
+            json.append("null");
+        }
+        json.append("}");
+        return json.toString();
+    }
+    
     private String converterItemParaJSON(ItemResponseDTO item) {
         StringBuilder json = new StringBuilder("{");
         json.append("\"codigo\":\"").append(escaparJSON(item.getCodigo())).append("\",");
         json.append("\"titulo\":\"").append(escaparJSON(item.getTitulo())).append("\",");
         json.append("\"tipo\":\"").append(escaparJSON(item.getTipo())).append("\",");
         json.append("\"detalhes\":\"").append(escaparJSON(item.getDetalhes())).append("\",");
-        json.append("\"emprestado\":").append(item.isEmprestado());
+        json.append("\"emprestado\":").append(item.isEmprestado()).append(",");
+        json.append("\"versao\":").append(item.getVersao());
         json.append("}");
         return json.toString();
     }
     
+    private String converterLoginParaJSON(LoginResponseDTO login) {
+        UsuarioResponseDTO usuario = login.getUsuario();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"token\":\"").append(escaparJSON(login.getToken())).append("\",");
+        json.append("\"usuario\":{");
+        json.append("\"id\":\"").append(escaparJSON(usuario.getId())).append("\",");
+        json.append("\"nome\":\"").append(escaparJSON(usuario.getNome())).append("\",");
+        json.append("\"email\":\"").append(escaparJSON(usuario.getEmail())).append("\",");
+        json.append("\"tipo\":\"").append(escaparJSON(usuario.getTipo())).append("\",");
+        json.append("\"descricaoTipo\":\"").append(escaparJSON(usuario.getDescricaoTipo())).append("\",");
+        json.append("\"ativo\":").append(usuario.isAtivo());
+        json.append("}}");
+        return json.toString();
+    }
+    
+    private String converterEmprestimoParaJSON(EmprestimoDTO emprestimo) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"id\":").append(emprestimo.getId()).append(",");
+        json.append("\"codigoItem\":\"").append(escaparJSON(emprestimo.getCodigoItem())).append("\",");
+        json.append("\"usuarioId\":\"").append(escaparJSON(emprestimo.getUsuarioId())).append("\",");
+        json.append("\"dataEmprestimo\":\"").append(escaparJSON(emprestimo.getDataEmprestimo())).append("\",");
+        json.append("\"dataDevolucao\":");
+        if (emprestimo.getDataDevolucao() != null) {
+            json.append("\"").append(escaparJSON(emprestimo.getDataDevolucao())).append("\"");
+        } else {
+            json.append("null");
+        }
+        json.append("}");
+        return json.toString();
+    }
+    
+    private String converterEstatisticasParaJSON(EstatisticasDTO estatisticas) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"total\":").append(estatisticas.getTotal()).append(",");
+        json.append("\"disponiveis\":").append(estatisticas.getDisponiveis()).append(",");
+        json.append("\"emprestados\":").append(estatisticas.getEmprestados()).append(",");
+        json.append("\"porTipo\":{");
+        boolean primeiro = true;
+        for (Map.Entry<String, Long> tipo : estatisticas.getPorTipo().entrySet()) {
+            if (!primeiro) json.append(",");
+            json.append("\"").append(escaparJSON(tipo.getKey())).append("\":").append(tipo.getValue());
+            primeiro = false;
+        }
+        json.append("}}");
+        return json.toString();
+    }
+    
     private String escaparJSON(String texto) {
         if (texto == null) return "";
         return texto.replace("\\", "\\\\")
@@ -0,0 +1,59 @@
+package com.biblioteca.web.roteamento;
+
+import com.biblioteca.controller.AutenticacaoController;
+import com.biblioteca.exception.BibliotecaException;
+import com.biblioteca.model.usuario.Usuario;
+import com.biblioteca.web.response.ApiResponse;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+
+/**
+ * Valida o token Bearer do cabecalho Authorization conforme a
+ * Rota.Autenticacao da rota e deixa o usuario na requisicao
+ * (AutenticacaoMiddleware.usuario). Token invalido ou expirado responde 401.
+ */
+public class AutenticacaoMiddleware implements Middleware {
+
+    private static final String ATRIBUTO_USUARIO = "autenticacao.usuario";
+
+    private final AutenticacaoController autenticacaoController;
+
+    public AutenticacaoMiddleware(AutenticacaoController autenticacaoController) {
+        this.autenticacaoController = autenticacaoController;
+    }
+
+    /**
+     * Usuario autenticado da requisicao, ou null se ela for anonima
+     */
+    public static Usuario usuario(HttpExchange exchange) {
+        return (Usuario) exchange.getAttribute(ATRIBUTO_USUARIO);
+    }
+
+    @Override
+    public void processar(HttpExchange exchange, Rota rota, Cadeia cadeia) throws IOException {
+        if (rota.getAutenticacao() == Rota.Autenticacao.NENHUMA) {
+            cadeia.seguir(exchange);
+            return;
+        }
+
+        String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            if (rota.getAutenticacao() == Rota.Autenticacao.OBRIGATORIA) {
+                Roteador.enviarJson(exchange, 401, ApiResponse.erro("Token não fornecido").toJSON());
+                return;
+            }
+            cadeia.seguir(exchange);
+            return;
+        }
+
+        Usuario usuario;
+        try {
+            usuario = autenticacaoController.validarToken(authHeader.substring(7));
+        } catch (BibliotecaException e) {
+            Roteador.enviarJson(exchange, 401, ApiResponse.erro(e.getMessage()).toJSON());
+            return;
+        }
+        exchange.setAttribute(ATRIBUTO_USUARIO, usuario);
+        cadeia.seguir(exchange);
+    }
+}
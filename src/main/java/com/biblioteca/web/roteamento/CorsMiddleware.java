@@ -0,0 +1,53 @@
+package com.biblioteca.web.roteamento;
+
+import com.biblioteca.config.ConfigManager;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+
+/**
+ * Cabecalhos CORS em todas as respostas e resposta 204 aos preflights
+ * (OPTIONS), conforme cors.enabled e cors.allowed.origins
+ */
+public class CorsMiddleware implements Middleware {
+
+    private final boolean habilitado;
+    private final String origens;
+
+    public CorsMiddleware() {
+        this(ConfigManager.getInstance().getBoolean("cors.enabled", true),
+             ConfigManager.getInstance().get("cors.allowed.origins", "*"));
+    }
+
+    public CorsMiddleware(boolean habilitado, String origens) {
+        this.habilitado = habilitado;
+        this.origens = origens;
+    }
+
+    @Override
+    public void processar(HttpExchange exchange, Rota rota, Cadeia cadeia) throws IOException {
+        if (habilitado) {
+            aplicar(exchange);
+        }
+        if ("OPTIONS".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        cadeia.seguir(exchange);
+    }
+
+    /**
+     * Para respostas dadas fora da cadeia (ex.: 503 com o pool saturado)
+     */
+    public void aplicar(HttpExchange exchange) {
+        if (!habilitado) {
+            return;
+        }
+        Headers cabecalhos = exchange.getResponseHeaders();
+        cabecalhos.set("Access-Control-Allow-Origin", origens);
+        cabecalhos.set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        cabecalhos.set("Access-Control-Allow-Headers", "Content-Type, If-Match, Authorization");
+        cabecalhos.set("Access-Control-Expose-Headers", "ETag");
+    }
+}
@@ -0,0 +1,60 @@
+package com.biblioteca.web.roteamento;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contagem de requisicoes, erros (5xx ou excecao) e tempo medio por rota.
+ * Deve ser o primeiro middleware, para medir a cadeia inteira.
+ */
+public class MetricasMiddleware implements Middleware {
+
+    private final ConcurrentMap<String, Contadores> porRota = new ConcurrentHashMap<>();
+
+    @Override
+    public void processar(HttpExchange exchange, Rota rota, Cadeia cadeia) throws IOException {
+        Contadores contadores = porRota.computeIfAbsent(rota.toString(), r -> new Contadores());
+        long inicio = System.nanoTime();
+        boolean erro = true;
+        try {
+            cadeia.seguir(exchange);
+            erro = exchange.getResponseCode() >= 500;
+        } finally {
+            contadores.requisicoes.increment();
+            contadores.nanos.add(System.nanoTime() - inicio);
+            if (erro) {
+                contadores.erros.increment();
+            }
+        }
+    }
+
+    /**
+     * Por rota ("GET /api/itens/{codigo}"; "*" agrupa 404 e 405), em ordem alfabetica
+     */
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> dados = new TreeMap<>();
+        for (Map.Entry<String, Contadores> rota : porRota.entrySet()) {
+            Contadores contadores = rota.getValue();
+            long requisicoes = contadores.requisicoes.sum();
+            Map<String, Object> valores = new LinkedHashMap<>();
+            valores.put("requisicoes", requisicoes);
+            valores.put("erros", contadores.erros.sum());
+            valores.put("mediaMs", requisicoes == 0 ? 0.0
+                : Math.round(contadores.nanos.sum() / (double) requisicoes / 1000.0) / 1000.0);
+            dados.put(rota.getKey(), valores);
+        }
+        return dados;
+    }
+
+    private static class Contadores {
+        final LongAdder requisicoes = new LongAdder();
+        final LongAdder erros = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,21 @@
+package com.biblioteca.web.roteamento;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+
+/**
+ * Etapa executada em volta de todas as rotas do Roteador (CORS,
+ * autenticacao, metricas). Chama cadeia.seguir para passar adiante ou
+ * responde direto para interromper a cadeia.
+ */
+public interface Middleware {
+
+    void processar(HttpExchange exchange, Rota rota, Cadeia cadeia) throws IOException;
+
+    /**
+     * Restante da cadeia: os proximos middlewares e, por fim, o handler da rota
+     */
+    interface Cadeia {
+        void seguir(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,74 @@
+package com.biblioteca.web.roteamento;
+
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Rota registrada no Roteador: metodo, padrao de caminho e handler
+ * Os ajustes (autenticacao, execucao fora do pool) sao lidos pelos
+ * middlewares e pelo roteador a cada requisicao.
+ */
+public class Rota {
+
+    /**
+     * O que o AutenticacaoMiddleware exige do cabecalho Authorization
+     */
+    public enum Autenticacao {
+        /** O cabecalho nem e lido */
+        NENHUMA,
+        /** Token validado se vier; sem token a requisicao segue anonima */
+        OPCIONAL,
+        /** Sem token valido a resposta e 401 */
+        OBRIGATORIA
+    }
+
+    private final String metodo;
+    private final String padrao;
+    private final HttpHandler handler;
+    private Autenticacao autenticacao = Autenticacao.OPCIONAL;
+    private boolean usaPool = true;
+
+    Rota(String metodo, String padrao, HttpHandler handler) {
+        this.metodo = metodo;
+        this.padrao = padrao;
+        this.handler = handler;
+    }
+
+    public Rota autenticacao(Autenticacao autenticacao) {
+        this.autenticacao = autenticacao;
+        return this;
+    }
+
+    /**
+     * Atende na thread de despacho do motor, sem passar pelo pool de
+     * requisicoes (para respostas que nao podem esperar fila, como /health)
+     */
+    public Rota semPool() {
+        this.usaPool = false;
+        return this;
+    }
+
+    public String getMetodo() {
+        return metodo;
+    }
+
+    public String getPadrao() {
+        return padrao;
+    }
+
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+    public Autenticacao getAutenticacao() {
+        return autenticacao;
+    }
+
+    public boolean isUsaPool() {
+        return usaPool;
+    }
+
+    @Override
+    public String toString() {
+        return metodo + " " + padrao;
+    }
+}
@@ -0,0 +1,256 @@
+package com.biblioteca.web.roteamento;
+
+import com.biblioteca.util.Logger;
+import com.biblioteca.web.response.ApiResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Roteador HTTP registrado como contexto unico ("/") no motor
+ *
+ * As rotas formam uma arvore de prefixos por segmento de caminho; um
+ * segmento {nome} casa com qualquer valor e fica disponivel em
+ * Roteador.parametro. Caminhos sem parametros tambem ficam em um mapa
+ * exato, resolvidos com uma unica busca. Cada no guarda as rotas por
+ * metodo: caminho conhecido com metodo errado responde 405 com Allow, e
+ * caminho desconhecido responde 404 sem tocar no sistema de arquivos.
+ *
+ * Toda requisicao, inclusive 404/405, passa pelos middlewares na ordem em
+ * que foram registrados. A cadeia roda no executor (pool de requisicoes),
+ * exceto nas rotas marcadas com semPool. As rotas e middlewares devem ser
+ * registrados antes de o motor comecar a atender.
+ */
+public class Roteador implements HttpHandler {
+
+    private static final Logger logger = Logger.getLogger(Roteador.class);
+    private static final String ATRIBUTO_PARAMETROS = "roteador.parametros";
+
+    private final No raiz = new No();
+    private final Map<String, No> exatas = new HashMap<>();
+    private final List<Middleware> middlewares = new ArrayList<>();
+    private final Executor executor;
+    private final HttpHandler sobrecarga;
+
+    /**
+     * @param executor onde as rotas rodam (null = na thread do motor)
+     * @param sobrecarga chamado na thread do motor quando o executor recusa a requisicao
+     */
+    public Roteador(Executor executor, HttpHandler sobrecarga) {
+        this.executor = executor;
+        this.sobrecarga = sobrecarga;
+    }
+
+    public Roteador usar(Middleware middleware) {
+        middlewares.add(middleware);
+        return this;
+    }
+
+    public Rota get(String padrao, HttpHandler handler) {
+        return registrar("GET", padrao, handler);
+    }
+
+    public Rota post(String padrao, HttpHandler handler) {
+        return registrar("POST", padrao, handler);
+    }
+
+    /**
+     * @throws IllegalArgumentException se o metodo ja tiver rota nesse padrao,
+     *         ou se o padrao usar outro nome de parametro na mesma posicao
+     */
+    public synchronized Rota registrar(String metodo, String padrao, HttpHandler handler) {
+        No no = raiz;
+        boolean comParametros = false;
+        for (String segmento : segmentos(padrao)) {
+            if (segmento.startsWith("{") && segmento.endsWith("}")) {
+                String nome = segmento.substring(1, segmento.length() - 1);
+                if (no.parametro == null) {
+                    no.parametro = new No();
+                    no.nomeParametro = nome;
+                } else if (!no.nomeParametro.equals(nome)) {
+                    throw new IllegalArgumentException("Parametro {" + nome + "} conflita com {"
+                        + no.nomeParametro + "} em " + padrao);
+                }
+                no = no.parametro;
+                comParametros = true;
+            } else {
+                no = no.filhos.computeIfAbsent(segmento, s -> new No());
+            }
+        }
+        if (no.rotas.containsKey(metodo)) {
+            throw new IllegalArgumentException("Rota duplicada: " + metodo + " " + padrao);
+        }
+        Rota rota = new Rota(metodo, padrao, handler);
+        no.rotas.put(metodo, rota);
+        if (!comParametros) {
+            exatas.put(normalizar(padrao), no);
+        }
+        return rota;
+    }
+
+    /**
+     * Valor de um parametro {nome} do caminho da requisicao atual
+     */
+    @SuppressWarnings("unchecked")
+    public static String parametro(HttpExchange exchange, String nome) {
+        Map<String, String> parametros = (Map<String, String>) exchange.getAttribute(ATRIBUTO_PARAMETROS);
+        return parametros == null ? null : parametros.get(nome);
+    }
+
+    @Override
+    public void handle(HttpExchange original) throws IOException {
+        HttpExchange exchange = new TrocaRoteada(original);
+        String metodo = exchange.getRequestMethod();
+        String caminho = exchange.getRequestURI().getPath();
+        Map<String, String> parametros = new HashMap<>(4);
+        No no = localizar(caminho, parametros);
+
+        Rota rota;
+        if (no == null || no.rotas.isEmpty()) {
+            rota = new Rota(metodo, "*", this::responderNaoEncontrado).semPool();
+        } else {
+            rota = no.rotas.get(metodo);
+            if (rota == null && "HEAD".equals(metodo)) {
+                rota = no.rotas.get("GET");
+            }
+            if (rota == null) {
+                String permitidos = String.join(", ", no.rotas.keySet());
+                rota = new Rota(metodo, "*", troca -> responderMetodoNaoPermitido(troca, permitidos)).semPool();
+            }
+        }
+        exchange.setAttribute(ATRIBUTO_PARAMETROS, parametros);
+
+        final Rota escolhida = rota;
+        if (!escolhida.isUsaPool() || executor == null) {
+            atender(escolhida, exchange);
+            return;
+        }
+        try {
+            executor.execute(() -> atender(escolhida, exchange));
+        } catch (RejectedExecutionException e) {
+            sobrecarga.handle(exchange);
+        }
+    }
+
+    private void atender(Rota rota, HttpExchange exchange) {
+        try {
+            new CadeiaRota(rota).seguir(exchange);
+        } catch (Exception e) {
+            logger.error("Erro ao atender " + exchange.getRequestURI() + ": " + e.getMessage());
+            exchange.close();
+        }
+    }
+
+    /**
+     * No da rota do caminho; segmentos fixos tem prioridade sobre {parametros}
+     */
+    private No localizar(String caminho, Map<String, String> parametros) {
+        if (caminho == null) {
+            return null;
+        }
+        No exato = exatas.get(normalizar(caminho));
+        if (exato != null) {
+            return exato;
+        }
+        List<String> segmentos = segmentos(caminho);
+        return localizar(raiz, segmentos, 0, parametros);
+    }
+
+    private No localizar(No no, List<String> segmentos, int indice, Map<String, String> parametros) {
+        if (indice == segmentos.size()) {
+            return no.rotas.isEmpty() ? null : no;
+        }
+        String segmento = segmentos.get(indice);
+        No fixo = no.filhos.get(segmento);
+        if (fixo != null) {
+            No encontrado = localizar(fixo, segmentos, indice + 1, parametros);
+            if (encontrado != null) {
+                return encontrado;
+            }
+        }
+        if (no.parametro != null) {
+            No encontrado = localizar(no.parametro, segmentos, indice + 1, parametros);
+            if (encontrado != null) {
+                parametros.put(no.nomeParametro, segmento);
+                return encontrado;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> segmentos(String caminho) {
+        List<String> segmentos = new ArrayList<>();
+        for (String segmento : caminho.split("/")) {
+            if (!segmento.isEmpty()) {
+                segmentos.add(segmento);
+            }
+        }
+        return segmentos.isEmpty() ? Collections.emptyList() : segmentos;
+    }
+
+    private static String normalizar(String caminho) {
+        if (caminho.length() > 1 && caminho.endsWith("/")) {
+            return caminho.substring(0, caminho.length() - 1);
+        }
+        return caminho;
+    }
+
+    private void responderNaoEncontrado(HttpExchange exchange) throws IOException {
+        ApiResponse<Void> response = ApiResponse.erro("Recurso não encontrado: " + exchange.getRequestURI().getPath());
+        enviarJson(exchange, 404, response.toJSON());
+    }
+
+    private void responderMetodoNaoPermitido(HttpExchange exchange, String permitidos) throws IOException {
+        exchange.getResponseHeaders().set("Allow", permitidos);
+        ApiResponse<Void> response = ApiResponse.erro("Método não permitido. Use " + permitidos);
+        enviarJson(exchange, 405, response.toJSON());
+    }
+
+    static void enviarJson(HttpExchange exchange, int statusCode, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Percorre os middlewares e termina no handler da rota
+     */
+    private class CadeiaRota implements Middleware.Cadeia {
+        private final Rota rota;
+        private int proximo;
+
+        CadeiaRota(Rota rota) {
+            this.rota = rota;
+        }
+
+        @Override
+        public void seguir(HttpExchange exchange) throws IOException {
+            if (proximo < middlewares.size()) {
+                middlewares.get(proximo++).processar(exchange, rota, this);
+            } else {
+                rota.getHandler().handle(exchange);
+            }
+        }
+    }
+
+    private static class No {
+        final Map<String, No> filhos = new HashMap<>();
+        // Ordem de registro, usada no cabecalho Allow
+        final Map<String, Rota> rotas = new LinkedHashMap<>();
+        No parametro;
+        String nomeParametro;
+    }
+}
@@ -0,0 +1,115 @@
+package com.biblioteca.web.roteamento;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Troca entregue pelo Roteador aos middlewares e handlers: delega tudo a
+ * troca do motor, mas guarda os atributos (parametros do caminho, usuario)
+ * so desta requisicao. No HttpServer do JDK os atributos de HttpExchange
+ * pertencem ao HttpContext, compartilhado por todas as requisicoes do
+ * contexto unico.
+ */
+class TrocaRoteada extends HttpExchange {
+
+    private final HttpExchange troca;
+    private final Map<String, Object> atributos = new HashMap<>(4);
+
+    TrocaRoteada(HttpExchange troca) {
+        this.troca = troca;
+    }
+
+    @Override
+    public Object getAttribute(String nome) {
+        return atributos.get(nome);
+    }
+
+    @Override
+    public void setAttribute(String nome, Object valor) {
+        atributos.put(nome, valor);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return troca.getRequestHeaders();
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return troca.getResponseHeaders();
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return troca.getRequestURI();
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return troca.getRequestMethod();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return troca.getHttpContext();
+    }
+
+    @Override
+    public void close() {
+        troca.close();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return troca.getRequestBody();
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return troca.getResponseBody();
+    }
+
+    @Override
+    public void sendResponseHeaders(int codigo, long tamanho) throws IOException {
+        troca.sendResponseHeaders(codigo, tamanho);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return troca.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return troca.getResponseCode();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return troca.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return troca.getProtocol();
+    }
+
+    @Override
+    public void setStreams(InputStream entrada, OutputStream saida) {
+        troca.setStreams(entrada, saida);
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return troca.getPrincipal();
+    }
+}
@@ -10,6 +10,9 @@ CREATE TABLE IF NOT EXISTS itens_biblioteca (
     titulo VARCHAR(255) NOT NULL,
     tipo VARCHAR(20) NOT NULL CHECK (tipo IN ('LIVRO', 'REVISTA', 'DVD')),
     emprestado INTEGER DEFAULT 0,
+    -- Controle otimista: incrementada a cada gravacao. Bancos existentes
+    -- recebem a coluna na inicializacao (DatabaseConfig.migrarSchema)
+    version INTEGER NOT NULL DEFAULT 1,
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP
 );
@@ -44,10 +47,92 @@ CREATE TABLE IF NOT EXISTS dvds (
     FOREIGN KEY (item_id) REFERENCES itens_biblioteca(id) ON DELETE CASCADE
 );
 
+-- Registros de empréstimo: data_devolucao nula enquanto o empréstimo está ativo
+-- usuario_id referencia o usuário da aplicação (mantido fora do banco)
+CREATE TABLE IF NOT EXISTS emprestimos (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    usuario_id VARCHAR(64) NOT NULL,
+    item_codigo VARCHAR(50) NOT NULL,
+    data_emprestimo DATETIME NOT NULL,
+    data_devolucao DATETIME
+);
+
 -- Índices para melhorar performance
 CREATE INDEX IF NOT EXISTS idx_itens_codigo ON itens_biblioteca(codigo);
 CREATE INDEX IF NOT EXISTS idx_itens_tipo ON itens_biblioteca(tipo);
 CREATE INDEX IF NOT EXISTS idx_itens_emprestado ON itens_biblioteca(emprestado);
+CREATE INDEX IF NOT EXISTS idx_itens_tipo_emprestado ON itens_biblioteca(tipo, emprestado);
 CREATE INDEX IF NOT EXISTS idx_livros_item_id ON livros(item_id);
 CREATE INDEX IF NOT EXISTS idx_revistas_item_id ON revistas(item_id);
 CREATE INDEX IF NOT EXISTS idx_dvds_item_id ON dvds(item_id);
+CREATE INDEX IF NOT EXISTS idx_emprestimos_usuario ON emprestimos(usuario_id, data_devolucao);
+CREATE INDEX IF NOT EXISTS idx_emprestimos_item ON emprestimos(item_codigo);
+-- No máximo um empréstimo ativo por item
+CREATE UNIQUE INDEX IF NOT EXISTS idx_emprestimos_item_ativo ON emprestimos(item_codigo) WHERE data_devolucao IS NULL;
+
+-- Busca textual (FTS5): um documento por item, com rowid = itens_biblioteca.id
+-- Mantida pelos triggers abaixo; remove_diacritics faz "acao" casar com "ação"
+CREATE VIRTUAL TABLE IF NOT EXISTS itens_busca USING fts5(
+    titulo,
+    autor,
+    editora,
+    diretor,
+    genero,
+    tokenize = 'unicode61 remove_diacritics 2'
+);
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_item_insert AFTER INSERT ON itens_biblioteca
+BEGIN
+    INSERT INTO itens_busca (rowid, titulo) VALUES (new.id, new.titulo);
+END;
+
+-- So reindexa quando o titulo muda (emprestimos e devolucoes nao tocam o indice)
+CREATE TRIGGER IF NOT EXISTS trg_busca_item_update AFTER UPDATE OF titulo ON itens_biblioteca
+WHEN old.titulo IS NOT new.titulo
+BEGIN
+    UPDATE itens_busca SET titulo = new.titulo WHERE rowid = new.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_item_delete AFTER DELETE ON itens_biblioteca
+BEGIN
+    DELETE FROM itens_busca WHERE rowid = old.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_livro_insert AFTER INSERT ON livros
+BEGIN
+    UPDATE itens_busca SET autor = new.autor WHERE rowid = new.item_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_livro_update AFTER UPDATE OF autor ON livros
+BEGIN
+    UPDATE itens_busca SET autor = new.autor WHERE rowid = new.item_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_revista_insert AFTER INSERT ON revistas
+BEGIN
+    UPDATE itens_busca SET editora = new.editora WHERE rowid = new.item_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_revista_update AFTER UPDATE OF editora ON revistas
+BEGIN
+    UPDATE itens_busca SET editora = new.editora WHERE rowid = new.item_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_dvd_insert AFTER INSERT ON dvds
+BEGIN
+    UPDATE itens_busca SET diretor = new.diretor, genero = new.genero WHERE rowid = new.item_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_busca_dvd_update AFTER UPDATE OF diretor, genero ON dvds
+BEGIN
+    UPDATE itens_busca SET diretor = new.diretor, genero = new.genero WHERE rowid = new.item_id;
+END;
+
+-- Bancos criados antes da busca textual: indexa os itens que ainda nao estao no indice
+INSERT INTO itens_busca (rowid, titulo, autor, editora, diretor, genero)
+SELECT i.id, i.titulo, l.autor, r.editora, d.diretor, d.genero
+FROM itens_biblioteca i
+LEFT JOIN livros l ON l.item_id = i.id
+LEFT JOIN revistas r ON r.item_id = i.id
+LEFT JOIN dvds d ON d.item_id = i.id
+WHERE i.id NOT IN (SELECT rowid FROM itens_busca);
@@ -14,6 +14,7 @@ CREATE TABLE IF NOT EXISTS itens_biblioteca (
     titulo VARCHAR(255) NOT NULL,
     tipo VARCHAR(20) NOT NULL CHECK (tipo IN ('LIVRO', 'REVISTA', 'DVD')),
     emprestado BOOLEAN DEFAULT FALSE,
+    version BIGINT NOT NULL DEFAULT 1,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -48,13 +49,26 @@ CREATE TABLE IF NOT EXISTS dvds (
     FOREIGN KEY (item_id) REFERENCES itens_biblioteca(id) ON DELETE CASCADE
 );
 
+-- Tabela de registros de empréstimo (data_devolucao nula = ativo)
+CREATE TABLE IF NOT EXISTS emprestimos (
+    id SERIAL PRIMARY KEY,
+    usuario_id VARCHAR(64) NOT NULL,
+    item_codigo VARCHAR(50) NOT NULL,
+    data_emprestimo TIMESTAMP NOT NULL,
+    data_devolucao TIMESTAMP
+);
+
 -- Índices para melhorar performance
 CREATE INDEX IF NOT EXISTS idx_itens_codigo ON itens_biblioteca(codigo);
 CREATE INDEX IF NOT EXISTS idx_itens_tipo ON itens_biblioteca(tipo);
 CREATE INDEX IF NOT EXISTS idx_itens_emprestado ON itens_biblioteca(emprestado);
+CREATE INDEX IF NOT EXISTS idx_itens_tipo_emprestado ON itens_biblioteca(tipo, emprestado);
 CREATE INDEX IF NOT EXISTS idx_livros_item_id ON livros(item_id);
 CREATE INDEX IF NOT EXISTS idx_revistas_item_id ON revistas(item_id);
 CREATE INDEX IF NOT EXISTS idx_dvds_item_id ON dvds(item_id);
+CREATE INDEX IF NOT EXISTS idx_emprestimos_usuario ON emprestimos(usuario_id, data_devolucao);
+CREATE INDEX IF NOT EXISTS idx_emprestimos_item ON emprestimos(item_codigo);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_emprestimos_item_ativo ON emprestimos(item_codigo) WHERE data_devolucao IS NULL;
 
 -- Função para atualizar o campo updated_at automaticamente
 CREATE OR REPLACE FUNCTION update_updated_at_column()
@@ -76,3 +90,4 @@ COMMENT ON TABLE itens_biblioteca IS 'Tabela principal que armazena todos os ite
 COMMENT ON TABLE livros IS 'Tabela com informações específicas de livros';
 COMMENT ON TABLE revistas IS 'Tabela com informações específicas de revistas';
 COMMENT ON TABLE dvds IS 'Tabela com informações específicas de DVDs';
+COMMENT ON TABLE emprestimos IS 'Tabela com o histórico de empréstimos por usuário';
@@ -10,6 +10,8 @@ document.addEventListener('DOMContentLoaded', () => {
     carregarTodos();
     carregarDisponiveis();
     carregarEmprestados();
+    carregarEstatisticas();
+    configurarBusca();
 });
 
 // Verificar se usuário está autenticado
@@ -183,6 +185,34 @@ async function carregarTodos() {
     }
 }
 
+// Busca no servidor (indice textual) enquanto o usuario digita
+function configurarBusca() {
+    const campo = document.getElementById('search-todos');
+    if (!campo) return;
+    
+    let espera = null;
+    campo.addEventListener('input', () => {
+        clearTimeout(espera);
+        espera = setTimeout(() => buscarItens(campo.value.trim()), 250);
+    });
+}
+
+// Buscar itens por texto
+async function buscarItens(consulta) {
+    if (!consulta) {
+        carregarTodos();
+        return;
+    }
+    try {
+        const response = await fetch(`${API_URL}/api/itens/busca?q=${encodeURIComponent(consulta)}`);
+        const apiResponse = await response.json();
+        renderizarItens(apiResponse.dados || [], 'lista-todos', true);
+    } catch (error) {
+        console.error('Erro ao buscar itens:', error);
+        mostrarErroCarregamento('lista-todos');
+    }
+}
+
 // Carregar itens disponiveis
 async function carregarDisponiveis() {
     try {
@@ -190,7 +220,6 @@ async function carregarDisponiveis() {
         const apiResponse = await response.json();
         const itens = (apiResponse.dados || []).filter(item => !item.emprestado);
         renderizarItens(itens, 'lista-disponiveis', false);
-        document.getElementById('count-disponiveis').textContent = `${itens.length} itens`;
     } catch (error) {
         console.error('Erro ao carregar disponiveis:', error);
         mostrarErroCarregamento('lista-disponiveis');
@@ -204,13 +233,25 @@ async function carregarEmprestados() {
         const apiResponse = await response.json();
         const itens = (apiResponse.dados || []).filter(item => item.emprestado);
         renderizarItens(itens, 'lista-emprestados', false);
-        document.getElementById('count-emprestados').textContent = `${itens.length} itens`;
     } catch (error) {
         console.error('Erro ao carregar emprestados:', error);
         mostrarErroCarregamento('lista-emprestados');
     }
 }
 
+// Carregar contagens do acervo (agregadas no servidor)
+async function carregarEstatisticas() {
+    try {
+        const response = await fetch(`${API_URL}/api/estatisticas`);
+        const apiResponse = await response.json();
+        const estatisticas = apiResponse.dados || {};
+        document.getElementById('count-disponiveis').textContent = `${estatisticas.disponiveis || 0} itens`;
+        document.getElementById('count-emprestados').textContent = `${estatisticas.emprestados || 0} itens`;
+    } catch (error) {
+        console.error('Erro ao carregar estatisticas:', error);
+    }
+}
+
 // Renderizar itens na tela com Bootstrap
 function renderizarItens(itens, containerId, mostrarAcoes) {
     const container = document.getElementById(containerId);
@@ -320,6 +361,16 @@ function mostrarErroCarregamento(containerId) {
     `;
 }
 
+// Cabecalhos JSON com o token da sessao (o emprestimo fica registrado no usuario)
+function cabecalhosAutenticados() {
+    const headers = { 'Content-Type': 'application/json' };
+    const token = localStorage.getItem('token');
+    if (token) {
+        headers['Authorization'] = `Bearer ${token}`;
+    }
+    return headers;
+}
+
 // Emprestar item
 async function emprestar(codigo) {
     if (!temPermissao('EMPRESTAR_QUALQUER_ITEM') && !temPermissao('EMPRESTAR_PROPRIO_ITEM')) {
@@ -330,7 +381,7 @@ async function emprestar(codigo) {
     try {
         const response = await fetch(`${API_URL}/api/item/emprestar`, {
             method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
+            headers: cabecalhosAutenticados(),
             body: JSON.stringify({ id: codigo })
         });
         
@@ -357,7 +408,7 @@ async function devolver(codigo) {
     try {
         const response = await fetch(`${API_URL}/api/item/devolver`, {
             method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
+            headers: cabecalhosAutenticados(),
             body: JSON.stringify({ id: codigo })
         });
         
@@ -410,6 +461,7 @@ async function recarregarTudo() {
     await carregarTodos();
     await carregarDisponiveis();
     await carregarEmprestados();
+    await carregarEstatisticas();
 }
 
 // Mostrar toast de notificação